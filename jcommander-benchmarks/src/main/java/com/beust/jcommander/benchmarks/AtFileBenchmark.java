@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.benchmarks;
+
+import com.beust.jcommander.JCommander;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a command line read from an @file, one argument per line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AtFileBenchmark {
+  private static final int OPTIONS = 100;
+
+  @Param({ "100", "10000" })
+  public int args;
+
+  private File m_file;
+  private String[] m_argv;
+
+  @Setup
+  public void setUp() throws IOException {
+    m_file = File.createTempFile("jcommander-benchmarks", ".args");
+    Writer writer = new FileWriter(m_file);
+    try {
+      for (String arg : SyntheticClasses.generateArgs(OPTIONS, args)) {
+        writer.write(arg);
+        writer.write("\n");
+      }
+    } finally {
+      writer.close();
+    }
+    m_argv = new String[] { "@" + m_file.getPath() };
+  }
+
+  @TearDown
+  public void tearDown() {
+    m_file.delete();
+  }
+
+  @Benchmark
+  public Object parse() {
+    Object result = SyntheticClasses.newOptions(OPTIONS);
+    new JCommander(result).parse(m_argv);
+    return result;
+  }
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.benchmarks;
+
+import com.beust.jcommander.CdsArchiveGenerator;
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.internal.Lists;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the time to the first parse of short lived programs, which JMH can't
+ * measure since its JVMs are warmed up: every run forks a new JVM executing
+ * {@link ColdStartTarget}, which parses a command line once. It reports the
+ * medians of the time from the fork to the first parse, of the part of it spent
+ * in main() (loading JCommander and reflecting on the classes) and of the time
+ * until the JVM exits.
+ *
+ * With -cds, each scenario is also measured with an AppCDS archive generated by
+ * {@link CdsArchiveGenerator}. The archive can only be used with jars on the class
+ * path, so run it from the benchmarks jar:
+ * <pre>
+ * java -cp target/benchmarks.jar com.beust.jcommander.benchmarks.ColdStart -cds
+ * </pre>
+ */
+public class ColdStart {
+  @Parameter(description = "The scenarios, by default all of them: options, commands, parser, shell")
+  private List<String> m_scenarios = Lists.newArrayList();
+
+  @Parameter(names = "-runs", description = "The JVMs forked per scenario")
+  private int m_runs = 10;
+
+  @Parameter(names = "-cds", description = "Also measure each scenario with an AppCDS archive")
+  private boolean m_cds;
+
+  @Parameter(names = "-J", description = "An option of the forked JVMs, can be repeated")
+  private List<String> m_jvmOptions = Lists.newArrayList();
+
+  private final String m_java =
+      System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+  private final String m_classPath = System.getProperty("java.class.path");
+
+  public static void main(String[] args) throws IOException {
+    ColdStart coldStart = new ColdStart();
+    JCommander jc = new JCommander(coldStart);
+    jc.setProgramName(ColdStart.class.getName());
+    try {
+      jc.parse(args);
+    } catch (ParameterException e) {
+      System.err.println(e.getMessage());
+      jc.usage();
+      System.exit(1);
+    }
+    coldStart.run();
+  }
+
+  public void run() throws IOException {
+    List<String> scenarios = m_scenarios.isEmpty()
+        ? Arrays.asList(ColdStartTarget.SCENARIOS)
+        : m_scenarios;
+    File directory = null;
+    if (m_cds) {
+      directory = File.createTempFile("jcommander-cds", "");
+      directory.delete();
+      directory.mkdirs();
+    }
+
+    System.out.printf("%-10s %-8s %14s %10s %10s%n",
+        "scenario", "sharing", "first parse", "in main", "exit");
+    for (String scenario : scenarios) {
+      print(scenario, "default", measure(scenario, m_jvmOptions));
+      if (m_cds) {
+        File archive = generateArchive(scenario, directory);
+        List<String> options = Lists.newArrayList(m_jvmOptions);
+        options.add(CdsArchiveGenerator.getLaunchOption(archive));
+        print(scenario, "AppCDS", measure(scenario, options));
+      }
+    }
+  }
+
+  private File generateArchive(String scenario, File directory) throws IOException {
+    CdsArchiveGenerator generator =
+        new CdsArchiveGenerator(m_classPath, ColdStartTarget.class.getName());
+    for (String option : m_jvmOptions) {
+      generator.addJvmOption(option);
+    }
+    File classList = new File(directory, scenario + ".classlist");
+    File archive = new File(directory, scenario + ".jsa");
+    classList.deleteOnExit();
+    archive.deleteOnExit();
+    generator.generateClassList(classList, scenario);
+    generator.generateArchive(classList, archive);
+    return archive;
+  }
+
+  /**
+   * @return the median nanoseconds to the first parse, in main() and to the exit.
+   * The first fork isn't counted, it mostly measures the file system cache.
+   */
+  private long[] measure(String scenario, List<String> jvmOptions) throws IOException {
+    long[][] runs = new long[3][m_runs];
+    fork(scenario, jvmOptions);
+    for (int i = 0; i < m_runs; i++) {
+      long[] run = fork(scenario, jvmOptions);
+      for (int j = 0; j < run.length; j++) {
+        runs[j][i] = run[j];
+      }
+    }
+    long[] result = new long[runs.length];
+    for (int j = 0; j < runs.length; j++) {
+      Arrays.sort(runs[j]);
+      result[j] = runs[j][m_runs / 2];
+    }
+    return result;
+  }
+
+  private long[] fork(String scenario, List<String> jvmOptions) throws IOException {
+    List<String> command = Lists.newArrayList();
+    command.add(m_java);
+    command.addAll(jvmOptions);
+    command.add("-cp");
+    command.add(m_classPath);
+    command.add(ColdStartTarget.class.getName());
+    command.add(scenario);
+
+    ProcessBuilder builder = new ProcessBuilder(command);
+    builder.redirectErrorStream(true);
+    long start = System.nanoTime();
+    Process process = builder.start();
+    process.getOutputStream().close();
+
+    long firstParse = -1;
+    long inMain = -1;
+    List<String> output = Lists.newArrayList();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+    try {
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        int marker = line.indexOf(ColdStartTarget.MARKER);
+        if (marker != -1 && firstParse == -1) {
+          firstParse = System.nanoTime() - start;
+          inMain = Long.parseLong(line.substring(marker + ColdStartTarget.MARKER.length()).trim());
+        } else {
+          output.add(line);
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    int status;
+    try {
+      status = process.waitFor();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted");
+    }
+    long exit = System.nanoTime() - start;
+
+    if (status != 0 || firstParse == -1) {
+      throw new IllegalStateException("The scenario " + scenario + " failed with the status "
+          + status + ": " + output);
+    }
+    return new long[] { firstParse, inMain, exit };
+  }
+
+  private static void print(String scenario, String sharing, long[] result) {
+    System.out.printf("%-10s %-8s %11.1f ms %7.1f ms %7.1f ms%n", scenario, sharing,
+        result[0] / 1e6, result[1] / 1e6, result[2] / 1e6);
+  }
+}
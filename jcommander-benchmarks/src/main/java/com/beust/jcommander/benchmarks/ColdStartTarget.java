@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.benchmarks;
+
+import com.beust.jcommander.ICommandFactory;
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.JCommanderParser;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.beust.jcommander.internal.Lists;
+import com.beust.jcommander.shell.Shell;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+/**
+ * The program forked by {@link ColdStart}: it parses a representative command line
+ * once and prints "parsed" followed by the nanoseconds spent since main() started.
+ * Everything it needs is loaded by that first parse.
+ */
+public class ColdStartTarget {
+  public static final String MARKER = "parsed ";
+
+  static final String[] SCENARIOS = { "options", "commands", "parser", "shell" };
+
+  private static final String[] OPTIONS_ARGS =
+      { "-verbose", "-level", "2", "-groups", "unit", "-D", "a", "-D", "b", "A.java", "B.java" };
+
+  private static long start;
+
+  public static class Options {
+    @Parameter(description = "The files")
+    public List<String> files = Lists.newArrayList();
+
+    @Parameter(names = { "-verbose", "-v" }, description = "Verbose mode")
+    public boolean verbose;
+
+    @Parameter(names = "-level", description = "The level")
+    public int level;
+
+    @Parameter(names = "-groups", description = "The groups")
+    public String groups;
+
+    @Parameter(names = "-D", description = "A definition")
+    public List<String> definitions = Lists.newArrayList();
+  }
+
+  @Parameters(separators = "=")
+  public static class Commit {
+    @Parameter(description = "The files")
+    public List<String> files = Lists.newArrayList();
+
+    @Parameter(names = "--amend", description = "Amend")
+    public boolean amend;
+
+    @Parameter(names = "--author", description = "The author")
+    public String author;
+  }
+
+  public static class Add {
+    @Parameter(description = "The patterns")
+    public List<String> patterns = Lists.newArrayList();
+
+    @Parameter(names = "-i", description = "Interactive")
+    public boolean interactive;
+  }
+
+  public static class Echo implements Runnable {
+    @Parameter(description = "The words")
+    public List<String> words = Lists.newArrayList();
+
+    public void run() {
+      parsed();
+    }
+  }
+
+  public static class EchoShell extends Shell {
+    public EchoShell() {
+      addCommand("echo", new ICommandFactory() {
+        public Object createCommand() {
+          return new Echo();
+        }
+      }, "Echo the words");
+    }
+
+    @Override
+    public String getShellName() {
+      return "echo";
+    }
+  }
+
+  public static void main(String[] args) {
+    start = System.nanoTime();
+    String scenario = args[0];
+    if ("options".equals(scenario)) {
+      new JCommander(new Options()).parse(OPTIONS_ARGS);
+      parsed();
+    } else if ("commands".equals(scenario)) {
+      JCommander jc = new JCommander(new Options());
+      jc.addCommand("add", new Add());
+      jc.addCommand("commit", new Commit());
+      jc.parse("-v", "commit", "--amend", "--author=cbeust", "A.java");
+      parsed();
+    } else if ("parser".equals(scenario)) {
+      new JCommanderParser<Options>(Options.class).parse(new Options(), OPTIONS_ARGS);
+      parsed();
+    } else if ("shell".equals(scenario)) {
+      // An interactive session reading its line through jline, the Echo command
+      // prints the marker once the line is parsed
+      System.setProperty("jline.terminal", "jline.UnsupportedTerminal");
+      System.setIn(new ByteArrayInputStream("echo a b\n".getBytes()));
+      new EchoShell().run();
+    } else {
+      throw new IllegalArgumentException("Unknown scenario " + scenario);
+    }
+  }
+
+  private static void parsed() {
+    System.out.println(MARKER + (System.nanoTime() - start));
+    System.out.flush();
+  }
+}
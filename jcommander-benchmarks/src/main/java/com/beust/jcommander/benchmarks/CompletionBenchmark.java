@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.benchmarks;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.shell.CompletionResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completes option names and command names with tabComplete(). An option name
+ * that is complete isn't completed further, so the options are completed from
+ * "-o", which lists all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CompletionBenchmark {
+  @Param({ "10", "100", "1000", "10000" })
+  public int size;
+
+  private JCommander m_options;
+  private JCommander m_commands;
+
+  @Setup
+  public void setUp() {
+    m_options = new JCommander(SyntheticClasses.newOptions(size));
+    m_commands = SyntheticClasses.newCommands(size, 10);
+  }
+
+  @Benchmark
+  public List<String> option() {
+    CompletionResult result = new CompletionResult("-o");
+    m_options.tabComplete(new String[] { "-o" }, 0, result);
+    return result.getResults();
+  }
+
+  @Benchmark
+  public List<String> command() {
+    CompletionResult result = new CompletionResult("c1");
+    m_commands.tabComplete(new String[] { "c1" }, 0, result);
+    return result.getResults();
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.benchmarks;
+
+import com.beust.jcommander.internal.FieldAccessor;
+import com.beust.jcommander.internal.MethodHandleFieldAccessor;
+import com.beust.jcommander.internal.ReflectionFieldAccessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assigns a field with the reflective FieldAccessor, with the method handle one,
+ * with an accessor like the ones generated by jcommander-processor, and with
+ * Field.set() directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FieldBindingBenchmark {
+  public static class Target {
+    public String value;
+  }
+
+  private final Target m_target = new Target();
+  private final String m_value = "value";
+  private Field m_field;
+  private FieldAccessor m_reflection;
+  private FieldAccessor m_methodHandle;
+  private FieldAccessor m_generated;
+
+  @Setup
+  public void setUp() throws NoSuchFieldException, IllegalAccessException {
+    m_field = Target.class.getField("value");
+    m_reflection = new ReflectionFieldAccessor(m_field);
+    m_methodHandle = new MethodHandleFieldAccessor(m_field);
+    m_generated = new FieldAccessor() {
+      @Override
+      public Object get(Object object) {
+        return ((Target) object).value;
+      }
+
+      @Override
+      public void set(Object object, Object value) {
+        ((Target) object).value = (String) value;
+      }
+    };
+  }
+
+  @Benchmark
+  public Object reflectionAccessor() {
+    m_reflection.set(m_target, m_value);
+    return m_target;
+  }
+
+  @Benchmark
+  public Object methodHandleAccessor() {
+    m_methodHandle.set(m_target, m_value);
+    return m_target;
+  }
+
+  @Benchmark
+  public Object generatedAccessor() {
+    m_generated.set(m_target, m_value);
+    return m_target;
+  }
+
+  @Benchmark
+  public Object field() throws IllegalAccessException {
+    m_field.set(m_target, m_value);
+    return m_target;
+  }
+}
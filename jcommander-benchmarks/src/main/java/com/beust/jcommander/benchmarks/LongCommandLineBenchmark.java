@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.benchmarks;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses very long command lines mixing a repeated option and main parameters.
+ * The time should grow linearly with the number of tokens: going from 125,000
+ * to 1,000,000 tokens should multiply it by about 8.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LongCommandLineBenchmark {
+  public static class Args {
+    @Parameter(description = "The files")
+    public List<String> parameters = new ArrayList<String>();
+
+    @Parameter(names = "-host", description = "The host")
+    public List<String> hosts = new ArrayList<String>();
+  }
+
+  @Param({ "125000", "250000", "500000", "1000000" })
+  public int tokens;
+
+  private String[] m_argv;
+
+  @Setup
+  public void setUp() {
+    m_argv = new String[tokens];
+    for (int i = 0; i < tokens; i += 4) {
+      m_argv[i] = "-host";
+      m_argv[i + 1] = "host" + i;
+      m_argv[i + 2] = "file" + i;
+      m_argv[i + 3] = "/tmp/file" + i;
+    }
+  }
+
+  @Benchmark
+  public Args parse() {
+    Args result = new Args();
+    new JCommander(result).parse(m_argv);
+    return result;
+  }
+}
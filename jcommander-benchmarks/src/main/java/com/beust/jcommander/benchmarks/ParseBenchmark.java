@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.benchmarks;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.JCommanderParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a command line into a new object, with a new JCommander and with a
+ * shared JCommanderParser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParseBenchmark {
+  @Param({ "10", "100", "1000", "10000" })
+  public int options;
+
+  @Param({ "10", "100", "1000" })
+  public int args;
+
+  private String[] m_argv;
+  private JCommanderParser<Object> m_parser;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    m_argv = SyntheticClasses.generateArgs(options, args);
+    m_parser = new JCommanderParser<Object>(
+        (Class<Object>) SyntheticClasses.getOptionsClass(options));
+  }
+
+  @Benchmark
+  public Object jcommander() {
+    Object result = SyntheticClasses.newOptions(options);
+    new JCommander(result).parse(m_argv);
+    return result;
+  }
+
+  @Benchmark
+  public Object parser() {
+    Object result = SyntheticClasses.newOptions(options);
+    m_parser.parse(result, m_argv);
+    return result;
+  }
+}
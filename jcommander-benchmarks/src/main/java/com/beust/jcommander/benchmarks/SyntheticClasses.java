@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.benchmarks;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.internal.Lists;
+import com.beust.jcommander.internal.Maps;
+import com.beust.jcommander.internal.Sets;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Generates the classes and the command lines parsed by the benchmarks, so that
+ * every run measures exactly the same thing.
+ *
+ * The class with n options, named "Options&lt;n&gt;", declares the options "-o0" to
+ * "-o&lt;n-1&gt;", cycling through the types String, int, boolean and List&lt;String&gt;,
+ * plus a main parameter of type List&lt;Integer&gt;. The classes are compiled with
+ * javac the first time they are needed, so the benchmarks need a JDK.
+ */
+public class SyntheticClasses {
+  private static final String PACKAGE = "com.beust.jcommander.benchmarks.synthetic";
+
+  /** The seed of the command lines, changing it makes results incomparable */
+  private static final long SEED = 42;
+
+  private static final Map<Integer, Class<?>> CLASSES = Maps.newHashMap();
+
+  private SyntheticClasses() {
+  }
+
+  /**
+   * @return the class with the given number of options.
+   */
+  public static synchronized Class<?> getOptionsClass(int optionCount) {
+    Class<?> result = CLASSES.get(optionCount);
+    if (result == null) {
+      result = compile("Options" + optionCount, generateSource(optionCount));
+      CLASSES.put(optionCount, result);
+    }
+    return result;
+  }
+
+  public static Object newOptions(int optionCount) {
+    try {
+      return getOptionsClass(optionCount).getDeclaredConstructor().newInstance();
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return a command line of about argCount arguments made of options of a class
+   * with optionCount options and of main parameters. The same arguments always
+   * return the same command line. Since the single valued options can only be
+   * specified once, the options already used are replaced by the list option
+   * declared next to them, or by a main parameter.
+   */
+  public static String[] generateArgs(int optionCount, int argCount) {
+    Random random = new Random(SEED);
+    Set<Integer> used = Sets.newHashSet();
+    List<String> result = Lists.newArrayList();
+    while (result.size() < argCount) {
+      int option = random.nextInt(optionCount);
+      if (option % 4 != 3 && ! used.add(option)) {
+        option += 3 - option % 4;
+        if (option >= optionCount) {
+          result.add(String.valueOf(random.nextInt(1000)));
+          continue;
+        }
+      }
+      switch (option % 4) {
+        case 0:
+          result.add("-o" + option);
+          result.add("value" + random.nextInt(1000));
+          break;
+        case 1:
+          result.add("-o" + option);
+          result.add(String.valueOf(random.nextInt(1000)));
+          break;
+        case 2:
+          result.add("-o" + option);
+          break;
+        default:
+          result.add("-o" + option);
+          result.add("element" + random.nextInt(1000));
+          break;
+      }
+      if (random.nextInt(4) == 0) {
+        result.add(String.valueOf(random.nextInt(1000)));
+      }
+    }
+    return result.toArray(new String[result.size()]);
+  }
+
+  /**
+   * @return a command line that only contains main parameters.
+   */
+  public static String[] generateMainParameters(int count) {
+    Random random = new Random(SEED);
+    String[] result = new String[count];
+    for (int i = 0; i < count; i++) {
+      result[i] = String.valueOf(random.nextInt(Integer.MAX_VALUE));
+    }
+    return result;
+  }
+
+  /**
+   * @return a JCommander with the given number of commands, named "c0" to
+   * "c&lt;n-1&gt;", each parsing into a class with optionCount options.
+   */
+  public static JCommander newCommands(int commandCount, int optionCount) {
+    JCommander result = new JCommander(new Object());
+    for (int i = 0; i < commandCount; i++) {
+      result.addCommand("c" + i, newOptions(optionCount));
+    }
+    return result;
+  }
+
+  private static String generateSource(int optionCount) {
+    StringBuilder result = new StringBuilder();
+    result.append("package ").append(PACKAGE).append(";\n\n");
+    result.append("import com.beust.jcommander.Parameter;\n");
+    result.append("import java.util.List;\n\n");
+    result.append("public class Options").append(optionCount).append(" {\n");
+    result.append("  @Parameter(description = \"Numbers\")\n");
+    result.append("  public List<Integer> main;\n");
+    for (int i = 0; i < optionCount; i++) {
+      String[] types = { "String", "int", "boolean", "List<String>" };
+      result.append("  @Parameter(names = \"-o").append(i)
+          .append("\", description = \"Option number ").append(i).append("\")\n");
+      result.append("  public ").append(types[i % 4]).append(" o").append(i).append(";\n");
+    }
+    result.append("}\n");
+    return result.toString();
+  }
+
+  private static Class<?> compile(String simpleName, String source) {
+    try {
+      File dir = File.createTempFile("jcommander-benchmarks", "");
+      dir.delete();
+      File sourceDir = new File(dir, PACKAGE.replace('.', File.separatorChar));
+      sourceDir.mkdirs();
+      File file = new File(sourceDir, simpleName + ".java");
+      Writer writer = new FileWriter(file);
+      try {
+        writer.write(source);
+      } finally {
+        writer.close();
+      }
+
+      JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+      if (compiler == null) {
+        throw new IllegalStateException("The benchmarks must run on a JDK");
+      }
+      String classpath = new File(JCommander.class.getProtectionDomain().getCodeSource()
+          .getLocation().toURI()).getPath();
+      int status = compiler.run(null, null, null, "-proc:none", "-nowarn",
+          "-cp", classpath, "-d", dir.getPath(), file.getPath());
+      if (status != 0) {
+        throw new IllegalStateException("Couldn't compile " + simpleName);
+      }
+
+      ClassLoader loader = new URLClassLoader(new URL[] { dir.toURI().toURL() },
+          SyntheticClasses.class.getClassLoader());
+      return loader.loadClass(PACKAGE + "." + simpleName);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException(e);
+    } catch (URISyntaxException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
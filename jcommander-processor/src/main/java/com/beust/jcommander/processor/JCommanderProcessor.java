@@ -0,0 +1,385 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a ClassDescriptionFactory for every class that contains @Parameter or
+ * @Argument annotations, so that JCommander can describe these classes without
+ * reading their annotations with reflection.
+ *
+ * The generated class is named after the annotated class followed by "$$JCommander"
+ * and assigns the fields directly. Fields that can't be accessed from the package of
+ * the annotated class (e.g. private fields) are still accessed with reflection. If a
+ * class can't be described at all (e.g. it's a private nested class), nothing is
+ * generated and JCommander falls back to reflection.
+ *
+ * @author cbeust
+ */
+@SupportedAnnotationTypes({
+    JCommanderProcessor.PARAMETER,
+    JCommanderProcessor.ARGUMENT,
+    JCommanderProcessor.PARAMETERS,
+    JCommanderProcessor.COMMAND
+})
+public class JCommanderProcessor extends AbstractProcessor {
+  static final String PARAMETER = "com.beust.jcommander.Parameter";
+  static final String ARGUMENT = "com.beust.jcommander.Argument";
+  static final String PARAMETERS = "com.beust.jcommander.Parameters";
+  static final String RESOURCE_BUNDLE = "com.beust.jcommander.ResourceBundle";
+  static final String COMMAND = "com.beust.jcommander.Command";
+
+  /** Must match ClassDescription.GENERATED_SUFFIX */
+  static final String SUFFIX = "$$JCommander";
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    Set<TypeElement> types = new LinkedHashSet<TypeElement>();
+    for (TypeElement annotation : annotations) {
+      for (Element e : roundEnv.getElementsAnnotatedWith(annotation)) {
+        if (e.getKind() == ElementKind.FIELD) {
+          types.add((TypeElement) e.getEnclosingElement());
+        } else if (e.getKind() == ElementKind.CLASS) {
+          types.add((TypeElement) e);
+        }
+      }
+    }
+
+    for (TypeElement type : types) {
+      String source = generate(type);
+      if (source != null) {
+        write(type, source);
+      }
+    }
+
+    // Don't claim the annotations, other processors might be interested in them
+    return false;
+  }
+
+  private void write(TypeElement type, String source) {
+    String name = processingEnv.getElementUtils().getBinaryName(type) + SUFFIX;
+    try {
+      Writer writer = processingEnv.getFiler().createSourceFile(name, type).openWriter();
+      try {
+        writer.write(source);
+      } finally {
+        writer.close();
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "Couldn't write " + name + ": " + e.getMessage(), type);
+    }
+  }
+
+  /**
+   * @return the source of the factory for this class, or null if it can't be generated.
+   */
+  String generate(TypeElement type) {
+    if (type.getKind() != ElementKind.CLASS) return null;
+    String packageName = getPackageName(type);
+    if (! isAccessible(type, packageName)) {
+      note(type, "not accessible from its package, it will be described with reflection");
+      return null;
+    }
+
+    String className = type.getQualifiedName().toString();
+    String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+    String simpleName = (packageName.length() > 0
+        ? binaryName.substring(packageName.length() + 1) : binaryName) + SUFFIX;
+
+    StringBuilder fields = new StringBuilder();
+    String declaringClass = className + ".class";
+    TypeElement current = type;
+    while (current != null && ! "java.lang.Object".equals(current.getQualifiedName().toString())) {
+      for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+        AnnotationMirror parameter = findAnnotation(field, PARAMETER);
+        AnnotationMirror argument = findAnnotation(field, ARGUMENT);
+        if (parameter == null && argument == null) continue;
+
+        String description = generateField(declaringClass, current, field, parameter, argument,
+            packageName);
+        if (description == null) {
+          note(type, "field " + field.getSimpleName() + " has a type that is not accessible,"
+              + " the class will be described with reflection");
+          return null;
+        }
+        fields.append("    fields.add(").append(description).append(");\n");
+      }
+      TypeMirror superclass = current.getSuperclass();
+      current = superclass.getKind() == TypeKind.DECLARED
+          ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+      declaringClass = declaringClass + ".getSuperclass()";
+    }
+
+    String separators = " ";
+    String optionPrefixes = null;
+    String resourceBundle = null;
+    AnnotationMirror parameters = findAnnotation(type, PARAMETERS);
+    if (parameters != null) {
+      separators = (String) getValue(parameters, "separators");
+      optionPrefixes = (String) getValue(parameters, "optionPrefixes");
+      resourceBundle = (String) getValue(parameters, "resourceBundle");
+    }
+    if (resourceBundle == null || resourceBundle.length() == 0) {
+      AnnotationMirror bundle = findAnnotation(type, RESOURCE_BUNDLE);
+      resourceBundle = bundle != null ? (String) getValue(bundle, "value") : null;
+      if (resourceBundle != null && resourceBundle.length() == 0) resourceBundle = null;
+    }
+    AnnotationMirror command = findAnnotation(type, COMMAND);
+    String commandDescription = command != null ? (String) getValue(command, "description")
+        : null;
+
+    StringBuilder result = new StringBuilder();
+    if (packageName.length() > 0) {
+      result.append("package ").append(packageName).append(";\n\n");
+    }
+    result.append("import com.beust.jcommander.Parameters;\n")
+        .append("import com.beust.jcommander.internal.Annotations;\n")
+        .append("import com.beust.jcommander.internal.ClassDescription;\n")
+        .append("import com.beust.jcommander.internal.ClassDescriptionFactory;\n")
+        .append("import com.beust.jcommander.internal.FieldAccessor;\n")
+        .append("import com.beust.jcommander.internal.FieldDescription;\n")
+        .append("\n")
+        .append("import java.util.ArrayList;\n")
+        .append("import java.util.List;\n")
+        .append("\n")
+        .append("/**\n")
+        .append(" * Describes {@link ").append(className).append("}.\n")
+        .append(" * Generated by the JCommander annotation processor, do not edit.\n")
+        .append(" */\n")
+        .append("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })\n")
+        .append("public final class ").append(simpleName)
+        .append(" implements ClassDescriptionFactory {\n")
+        .append("  public ClassDescription createClassDescription() {\n")
+        .append("    List<FieldDescription> fields = new ArrayList<FieldDescription>();\n")
+        .append(fields)
+        .append("    return new ClassDescription(").append(className).append(".class, fields, ")
+        .append(constant(separators)).append(", ")
+        .append(optionPrefixes != null ? constant(optionPrefixes)
+            : "Parameters.DEFAULT_OPTION_PREFIXES").append(", ")
+        .append(resourceBundle != null ? constant(resourceBundle) : "null").append(", ")
+        .append(commandDescription != null ? constant(commandDescription) : "null")
+        .append(");\n")
+        .append("  }\n")
+        .append("}\n");
+    return result.toString();
+  }
+
+  /**
+   * @return the expression creating the FieldDescription of this field, or null if
+   * one of the types it needs isn't accessible.
+   */
+  private String generateField(String declaringClass, TypeElement owner, VariableElement field,
+      AnnotationMirror parameter, AnnotationMirror argument, String packageName) {
+    TypeMirror type = processingEnv.getTypeUtils().erasure(field.asType());
+    if (! isAccessible(type, packageName)) return null;
+
+    String elementType = "null";
+    if (field.asType().getKind() == TypeKind.DECLARED) {
+      List<? extends TypeMirror> arguments = ((DeclaredType) field.asType()).getTypeArguments();
+      if (arguments.size() > 0 && arguments.get(0).getKind() == TypeKind.DECLARED
+          && ((DeclaredType) arguments.get(0)).getTypeArguments().isEmpty()
+          && isAccessible(arguments.get(0), packageName)) {
+        elementType = arguments.get(0) + ".class";
+      }
+    }
+
+    String parameterExpression = "null";
+    if (parameter != null) {
+      String converter = getClassValue(parameter, "converter", packageName);
+      String completionProvider = getClassValue(parameter, "completionProvider", packageName);
+      if (converter == null || completionProvider == null) return null;
+      StringBuilder names = new StringBuilder("new String[] {");
+      List<?> values = (List<?>) getValue(parameter, "names");
+      for (int i = 0; i < values.size(); i++) {
+        names.append(i > 0 ? ", " : " ")
+            .append(constant((String) ((AnnotationValue) values.get(i)).getValue()));
+      }
+      names.append(values.isEmpty() ? "}" : " }");
+      parameterExpression = "Annotations.newParameter(" + names + ", "
+          + constant(getValue(parameter, "description")) + ", "
+          + getValue(parameter, "required") + ", "
+          + constant(getValue(parameter, "descriptionKey")) + ", "
+          + getValue(parameter, "arity") + ", "
+          + getValue(parameter, "password") + ", "
+          + converter + ", "
+          + getValue(parameter, "hidden") + ", "
+          + completionProvider + ")";
+    }
+
+    String argumentExpression = "null";
+    if (argument != null) {
+      String converter = getClassValue(argument, "converter", packageName);
+      String completionProvider = getClassValue(argument, "completionProvider", packageName);
+      if (converter == null || completionProvider == null) return null;
+      argumentExpression = "Annotations.newArgument("
+          + getValue(argument, "index") + ", "
+          + constant(getValue(argument, "name")) + ", "
+          + constant(getValue(argument, "description")) + ", "
+          + getValue(argument, "required") + ", "
+          + constant(getValue(argument, "descriptionKey")) + ", "
+          + converter + ", "
+          + completionProvider + ")";
+    }
+
+    return "new FieldDescription(" + declaringClass + ", "
+        + constant(field.getSimpleName().toString()) + ", " + type + ".class, "
+        + elementType + ",\n        " + parameterExpression + ",\n        "
+        + argumentExpression + ",\n        " + generateAccessor(owner, field, packageName)
+        + ")";
+  }
+
+  /**
+   * @return an anonymous FieldAccessor that reads and writes the field directly,
+   * or "null" if the field can't be accessed from the generated class.
+   */
+  private String generateAccessor(TypeElement owner, VariableElement field, String packageName) {
+    Set<Modifier> modifiers = field.getModifiers();
+    if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)
+        || modifiers.contains(Modifier.STATIC)
+        || ! isAccessible(owner, packageName)
+        || (! modifiers.contains(Modifier.PUBLIC)
+            && ! packageName.equals(getPackageName(owner)))) {
+      return "null";
+    }
+
+    TypeMirror type = field.asType();
+    String cast = type.getKind().isPrimitive()
+        ? processingEnv.getTypeUtils().boxedClass((javax.lang.model.type.PrimitiveType) type)
+            .getQualifiedName().toString()
+        : processingEnv.getTypeUtils().erasure(type).toString();
+    String target = "((" + owner.getQualifiedName() + ") object)." + field.getSimpleName();
+    return "new FieldAccessor() {\n"
+        + "          @Override\n"
+        + "          public Object get(Object object) {\n"
+        + "            return " + target + ";\n"
+        + "          }\n"
+        + "\n"
+        + "          @Override\n"
+        + "          public void set(Object object, Object value) {\n"
+        + "            " + target + " = (" + cast + ") value;\n"
+        + "          }\n"
+        + "        }";
+  }
+
+  private String getClassValue(AnnotationMirror annotation, String name, String packageName) {
+    TypeMirror type = (TypeMirror) getValue(annotation, name);
+    return isAccessible(type, packageName) ? type + ".class" : null;
+  }
+
+  private AnnotationMirror findAnnotation(Element element, String name) {
+    for (AnnotationMirror m : element.getAnnotationMirrors()) {
+      TypeElement annotation = (TypeElement) m.getAnnotationType().asElement();
+      if (annotation.getQualifiedName().contentEquals(name)) {
+        return m;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the value of this annotation attribute, or its default value.
+   */
+  private Object getValue(AnnotationMirror annotation, String name) {
+    Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+        processingEnv.getElementUtils().getElementValuesWithDefaults(annotation);
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e : values.entrySet()) {
+      if (e.getKey().getSimpleName().contentEquals(name)) {
+        return e.getValue().getValue();
+      }
+    }
+    return null;
+  }
+
+  private String constant(Object value) {
+    return processingEnv.getElementUtils().getConstantExpression(value);
+  }
+
+  private String getPackageName(Element element) {
+    PackageElement p = processingEnv.getElementUtils().getPackageOf(element);
+    return p.isUnnamed() ? "" : p.getQualifiedName().toString();
+  }
+
+  /**
+   * @return true if this type can be named from a class in the given package.
+   */
+  private boolean isAccessible(TypeMirror type, String packageName) {
+    if (type.getKind().isPrimitive()) return true;
+    if (type.getKind() == TypeKind.ARRAY) {
+      return isAccessible(((ArrayType) type).getComponentType(), packageName);
+    }
+    if (type.getKind() == TypeKind.DECLARED) {
+      return isAccessible((TypeElement) ((DeclaredType) type).asElement(), packageName);
+    }
+    return false;
+  }
+
+  private boolean isAccessible(TypeElement type, String packageName) {
+    boolean samePackage = packageName.equals(getPackageName(type));
+    Element e = type;
+    while (e instanceof TypeElement) {
+      TypeElement t = (TypeElement) e;
+      if (t.getNestingKind() != NestingKind.TOP_LEVEL && t.getNestingKind() != NestingKind.MEMBER) {
+        return false;
+      }
+      Set<Modifier> modifiers = t.getModifiers();
+      if (modifiers.contains(Modifier.PRIVATE)) return false;
+      if (! samePackage && ! modifiers.contains(Modifier.PUBLIC)) return false;
+      e = t.getEnclosingElement();
+    }
+    return true;
+  }
+
+  private void note(TypeElement type, String message) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+        type.getQualifiedName() + ": " + message, type);
+  }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.processor;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.completers.NoCompletionProvider;
+import com.beust.jcommander.internal.ClassDescription;
+import com.beust.jcommander.internal.FieldAccessor;
+import com.beust.jcommander.internal.FieldDescription;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+public class JCommanderProcessorTest {
+  private static final String SOURCE =
+      "package test;\n"
+      + "import com.beust.jcommander.Parameter;\n"
+      + "import com.beust.jcommander.Parameters;\n"
+      + "import java.util.ArrayList;\n"
+      + "import java.util.List;\n"
+      + "@Parameters(separators = \"=\")\n"
+      + "public class Args {\n"
+      + "  @Parameter\n"
+      + "  public List<Integer> numbers = new ArrayList<Integer>();\n"
+      + "  @Parameter(names = { \"-log\", \"-verbose\" }, description = \"Level \\\"of\\\" verbosity\")\n"
+      + "  int verbose = 1;\n"
+      + "  @Parameter(names = \"-debug\")\n"
+      + "  private boolean debug;\n"
+      + "  public boolean isDebug() { return debug; }\n"
+      + "}\n";
+
+  /**
+   * Compiles the source with the processor and returns the class loader of the result.
+   */
+  private ClassLoader compile(String className, String source) throws IOException {
+    File dir = File.createTempFile("jcommander", "");
+    dir.delete();
+    File sourceDir = new File(dir, "src");
+    File classDir = new File(dir, "classes");
+    File sourceFile = new File(sourceDir, className.replace('.', '/') + ".java");
+    sourceFile.getParentFile().mkdirs();
+    classDir.mkdirs();
+    FileWriter writer = new FileWriter(sourceFile);
+    writer.write(source);
+    writer.close();
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    int status = compiler.run(null, null, null,
+        "-classpath", System.getProperty("java.class.path"),
+        "-processor", JCommanderProcessor.class.getName(),
+        "-s", sourceDir.getPath(),
+        "-d", classDir.getPath(),
+        sourceFile.getPath());
+    Assert.assertEquals(status, 0);
+
+    return new URLClassLoader(new URL[] { classDir.toURI().toURL() },
+        getClass().getClassLoader());
+  }
+
+  @Test
+  public void generatedDescriptionIsUsed() throws Exception {
+    ClassLoader loader = compile("test.Args", SOURCE);
+    Class<?> cls = loader.loadClass("test.Args");
+    loader.loadClass("test.Args" + JCommanderProcessor.SUFFIX);
+
+    ClassDescription cd = ClassDescription.getClassDescription(cls);
+    Assert.assertEquals(cd.getSeparators(), "=");
+    List<FieldDescription> fields = cd.getFields();
+    Assert.assertEquals(fields.size(), 3);
+    Assert.assertEquals(fields.get(0).getElementType(), Integer.class);
+    Assert.assertEquals(fields.get(1).getNames(), "-log, -verbose");
+    Assert.assertEquals(fields.get(1).getParameter().description(), "Level \"of\" verbosity");
+    Assert.assertEquals(fields.get(1).getParameter().completionProvider(),
+        NoCompletionProvider.class);
+    Assert.assertFalse(fields.get(1).getAccessor().getClass()
+        == FieldAccessor.create(fields.get(1).getField()).getClass());
+    // Private fields get the accessor of the runtime, method handles or reflection
+    Assert.assertEquals(fields.get(2).getAccessor().getClass(),
+        FieldAccessor.create(fields.get(2).getField()).getClass());
+
+    Object args = cls.getDeclaredConstructor().newInstance();
+    new JCommander(args, "-log=3", "-debug", "5", "8");
+    Field verbose = cls.getDeclaredField("verbose");
+    verbose.setAccessible(true);
+    Assert.assertEquals(verbose.get(args), 3);
+    Assert.assertEquals(cls.getMethod("isDebug").invoke(args), true);
+    Assert.assertEquals(cls.getField("numbers").get(args), Arrays.asList(5, 8));
+  }
+
+  @Test
+  public void privateClassIsNotGenerated() throws Exception {
+    String source = "package test;\n"
+        + "import com.beust.jcommander.Parameter;\n"
+        + "public class Outer {\n"
+        + "  private static class Inner {\n"
+        + "    @Parameter(names = \"-a\") int a;\n"
+        + "  }\n"
+        + "}\n";
+    ClassLoader loader = compile("test.Outer", source);
+    try {
+      loader.loadClass("test.Outer$Inner" + JCommanderProcessor.SUFFIX);
+      Assert.fail("No factory should be generated for a private class");
+    } catch (ClassNotFoundException e) {
+      // expected
+    }
+  }
+}
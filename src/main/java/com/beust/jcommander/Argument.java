@@ -18,6 +18,7 @@
 
 package com.beust.jcommander;
 
+import com.beust.jcommander.completers.NoCompletionProvider;
 import com.beust.jcommander.converters.NoConverter;
 
 import java.lang.annotation.Retention;
@@ -63,4 +64,10 @@ public @interface Argument {
    * The string converter to use for this field.
    */
   Class<? extends IStringConverter<?>> converter() default NoConverter.class;
+
+  /**
+   * The provider of the values completed by the Shell for this argument. The
+   * constants are completed by default if the field is an enum.
+   */
+  Class<? extends ICompletionProvider> completionProvider() default NoCompletionProvider.class;
 }
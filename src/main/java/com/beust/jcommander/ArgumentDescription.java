@@ -19,22 +19,22 @@
 package com.beust.jcommander;
 
 
-import com.beust.jcommander.internal.Lists;
+import com.beust.jcommander.internal.FieldDescription;
 import com.beust.jcommander.internal.ResourceBundles;
 import com.beust.jcommander.shell.CompletionResult;
 
 import java.lang.reflect.Field;
 import java.util.Collection;
-import java.util.List;
 import java.util.ResourceBundle;
-import java.util.Set;
 
 import static com.beust.jcommander.internal.Strings.isEmpty;
 
 public class ArgumentDescription {
   private Object m_object;
   private Argument m_argumentAnnotation;
-  private Field m_field;
+  private FieldDescription m_fieldDescription;
+  /** The collection receiving the values, if the field is a collection */
+  private Collection<Object> m_collection;
   /** Keep track of whether a value was added to flag an error */
   private boolean m_assigned = false;
   private ResourceBundle m_bundle;
@@ -43,14 +43,20 @@ public class ArgumentDescription {
 
   public ArgumentDescription(Object object, Argument annotation, Field field,
       ResourceBundle bundle, JCommander jc) {
-    init(object, annotation, field, bundle, jc);
+    this(object, new FieldDescription(field, null, annotation), bundle, jc);
   }
 
-  private void init(Object object, Argument annotation, Field field, ResourceBundle bundle,
+  ArgumentDescription(Object object, FieldDescription fieldDescription, ResourceBundle bundle,
+      JCommander jc) {
+    init(object, fieldDescription, bundle, jc);
+  }
+
+  private void init(Object object, FieldDescription fieldDescription, ResourceBundle bundle,
       JCommander jCommander) {
+    Argument annotation = fieldDescription.getArgument();
     m_object = object;
     m_argumentAnnotation = annotation;
-    m_field = field;
+    m_fieldDescription = fieldDescription;
     m_bundle = bundle;
     if (m_bundle == null) {
       m_bundle = ResourceBundles.findResourceBundle(object);
@@ -82,18 +88,17 @@ public class ArgumentDescription {
   }
 
   public Field getField() {
-    return m_field;
+    return m_fieldDescription.getField();
+  }
+
+  FieldDescription getFieldDescription() {
+    return m_fieldDescription;
   }
 
   public boolean isRequired() {
     return m_argumentAnnotation.required();
   }
   
-  private boolean isMultiOption() {
-    Class<?> fieldType = m_field.getType();
-    return fieldType.equals(List.class) || fieldType.equals(Set.class);
-  }
-
   public void addValue(String value) {
     addValue(value, false /* not default */);
   }
@@ -110,65 +115,50 @@ public class ArgumentDescription {
    * any type converter, and if we can't find any, throw an exception.
    */
   public void addValue(String value, boolean isDefault) {
-    p("Adding " + (isDefault ? "default " : "") + "value:" + value
-        + " to parameter:" + m_field.getName());
-    if (m_assigned && ! isMultiOption()) {
+    if (JCommander.isDebug()) {
+      p("Adding " + (isDefault ? "default " : "") + "value:" + value
+          + " to parameter:" + m_fieldDescription.getName());
+    }
+    if (m_assigned && ! m_fieldDescription.isMultiOption()) {
       throw new ParameterException("Can only specify argument " + getName()
           + " once.");
     }
 
-    Class<?> type = m_field.getType();
-
     if (! isDefault) m_assigned = true;
-    Object convertedValue = m_jCommander.convertValue(m_field, m_field.getType(), value);
-    boolean isCollection = Collection.class.isAssignableFrom(type);
-
-    try {
-      if (isCollection) {
-        @SuppressWarnings("unchecked")
-        List<Object> l = (List<Object>) m_field.get(m_object);
-        if (l == null) {
-          l = Lists.newArrayList();
-          m_field.set(m_object, l);
-        }
-        if (convertedValue instanceof Collection) {
-          l.addAll((Collection) convertedValue);
-        } else { // if (isMainArgument || m_argumentAnnotation.arity() > 1) {
-          l.add(convertedValue);
-//        } else {
-//          l.
-        }
+    Object convertedValue = m_jCommander.convertValue(this, value);
+
+    if (m_fieldDescription.isCollection()) {
+      if (m_collection == null) {
+        m_collection = m_fieldDescription.getOrCreateCollection(m_object);
+      }
+      if (convertedValue instanceof Collection) {
+        m_collection.addAll((Collection<?>) convertedValue);
       } else {
-        m_field.set(m_object, convertedValue);
+        m_collection.add(convertedValue);
       }
-    }
-    catch(IllegalAccessException ex) {
-      ex.printStackTrace();
+    } else {
+      m_fieldDescription.getAccessor().set(m_object, convertedValue);
     }
   }
 
   public String getName() {
     String a = m_argumentAnnotation.name();
     if (isEmpty(a)) {
-      return getField().getName();
+      return m_fieldDescription.getName();
     }
     return a;
   }
 
   private void p(String string) {
-    if (System.getProperty(JCommander.DEBUG_PROPERTY) != null) {
-      System.out.println("[ArgumentDescription] " + string);
-    }
+    System.out.println("[ArgumentDescription] " + string);
   }
 
   @Override
   public String toString() {
-    return "[ArgumentDescription " + m_field.getName() + "]";
+    return "[ArgumentDescription " + m_fieldDescription.getName() + "]";
   }
 
   public void tabComplete(String[] args, int cursorPosition, CompletionResult candidates) {
-    // TODO
-    // Lets try to tab complete the current command based on this argument's possible set of values 
-
+    candidates.complete(m_fieldDescription.getCompletionProvider());
   }
 }
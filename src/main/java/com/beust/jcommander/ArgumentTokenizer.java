@@ -0,0 +1,210 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import com.beust.jcommander.internal.ClassDescription;
+import com.beust.jcommander.internal.Lists;
+import com.beust.jcommander.internal.ResponseFileReader;
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Turns the command line parameters into the tokens consumed by the parser, in
+ * one pass and only as they are requested:
+ * <ul>
+ * <li>@file parameters are replaced with the lines of the file, which are read
+ * lazily ("@-" reads the standard input). Each line is one argument, unless the
+ * shell syntax is enabled, in which case the lines are split by a
+ * {@link CommandLineLexer}. This can be turned off, in which case the @file
+ * parameters are kept as they are</li>
+ * <li>options whose class specifies separators are split, e.g. "-log=3" becomes
+ * "-log" and "3"</li>
+ * </ul>
+ * The options are recognized by the parser that is currently consuming the
+ * tokens, which changes when the parsing is handed over to a command.
+ *
+ * @author cbeust
+ */
+class ArgumentTokenizer {
+  /**
+   * The options of the parser consuming the tokens.
+   */
+  interface Options {
+    /**
+     * @return the description of the class that declares the option this argument
+     * starts with, or null if this argument is not an option.
+     */
+    ClassDescription findOptionClassDescription(String arg);
+  }
+
+  private final String[] m_argv;
+  private int m_argvIndex = 0;
+
+  /**
+   * The lines of the @file being expanded, if any.
+   */
+  private ResponseFileReader m_fileLines;
+
+  /**
+   * Splits the lines of the @file being expanded, null unless m_shellSyntax is set.
+   */
+  private CommandLineLexer m_lineLexer;
+
+  private final Charset m_charset;
+
+  private final boolean m_shellSyntax;
+
+  private final boolean m_expandAtSign;
+
+  /**
+   * The tokens produced by splitting an option on its separators.
+   */
+  private final List<String> m_pending = Lists.newArrayList();
+  private int m_pendingIndex = 0;
+
+  private Options m_options;
+
+  /**
+   * @param shellSyntax true to split the lines of the @files like a shell does,
+   * false to read each line as one argument.
+   * @param expandAtSign false to keep the @file parameters as they are.
+   */
+  public ArgumentTokenizer(String[] argv, Charset charset, boolean shellSyntax,
+      boolean expandAtSign) {
+    m_argv = argv;
+    m_charset = charset;
+    m_shellSyntax = shellSyntax;
+    m_expandAtSign = expandAtSign;
+  }
+
+  /**
+   * Set the options that decide how the next tokens are split.
+   */
+  public void setOptions(Options options) {
+    m_options = options;
+  }
+
+  public boolean hasNext() {
+    return fill();
+  }
+
+  /**
+   * @return the next token, without consuming it, or null if there are no more tokens.
+   */
+  public String peek() {
+    return fill() ? m_pending.get(m_pendingIndex) : null;
+  }
+
+  public String next() {
+    if (! fill()) {
+      throw new IllegalStateException("No more tokens");
+    }
+    return m_pending.get(m_pendingIndex++);
+  }
+
+  /**
+   * Make sure m_pending contains at least one token.
+   *
+   * @return false if there are no more tokens.
+   */
+  private boolean fill() {
+    if (m_pendingIndex < m_pending.size()) return true;
+
+    m_pending.clear();
+    m_pendingIndex = 0;
+    String arg = nextArg();
+    if (arg == null) return false;
+
+    ClassDescription cd = m_options.findOptionClassDescription(arg);
+    if (cd != null && cd.hasSeparators()) {
+      split(arg, cd);
+    } else {
+      m_pending.add(arg);
+    }
+    return true;
+  }
+
+  /**
+   * @return the next parameter from the command line or from the @file being
+   * expanded, or null if there are none left.
+   */
+  private String nextArg() {
+    while (true) {
+      if (m_fileLines != null) {
+        if (! m_shellSyntax) {
+          if (m_fileLines.hasNext()) return m_fileLines.next();
+          m_fileLines = null;
+          continue;
+        }
+        if (m_lineLexer.hasNext()) return m_lineLexer.next();
+        if (m_fileLines.hasNext()) {
+          m_lineLexer.reset(m_fileLines.next());
+          continue;
+        }
+        m_fileLines = null;
+      }
+      if (m_argvIndex == m_argv.length) return null;
+
+      String arg = m_argv[m_argvIndex++];
+      if (m_expandAtSign && arg.startsWith("@")) {
+        m_fileLines = new ResponseFileReader(arg.substring(1), m_charset);
+        if (! m_shellSyntax) continue;
+        if (m_lineLexer == null) {
+          m_lineLexer = new CommandLineLexer("");
+        } else {
+          m_lineLexer.reset("");
+        }
+      } else {
+        return arg;
+      }
+    }
+  }
+
+  /**
+   * Split the option on every separator of its class, ignoring trailing empty
+   * values like String.split() does.
+   */
+  private void split(String arg, ClassDescription cd) {
+    int start = 0;
+    int length = arg.length();
+    for (int i = 0; i < length; i++) {
+      if (cd.isSeparator(arg.charAt(i))) {
+        m_pending.add(arg.substring(start, i));
+        start = i + 1;
+      }
+    }
+    if (start < length) {
+      m_pending.add(arg.substring(start));
+    }
+    while (m_pending.size() > 1 && m_pending.get(m_pending.size() - 1).length() == 0) {
+      m_pending.remove(m_pending.size() - 1);
+    }
+  }
+
+  /**
+   * Release the @file being read, if any.
+   */
+  public void close() {
+    if (m_fileLines != null) {
+      m_fileLines.close();
+      m_fileLines = null;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+/**
+ * The outcome of the parsing of one of the command lines passed to
+ * {@link JCommanderParser#parseAll(Iterable, IObjectFactory)}: either the result
+ * of the parsing or the exception it threw.
+ *
+ * @author cbeust
+ */
+public class BatchParseResult<T> {
+  private final T m_object;
+  private final ParseResult m_parseResult;
+  private final RuntimeException m_exception;
+
+  BatchParseResult(T object, ParseResult parseResult, RuntimeException exception) {
+    m_object = object;
+    m_parseResult = parseResult;
+    m_exception = exception;
+  }
+
+  /**
+   * @return true if this command line was parsed without error.
+   */
+  public boolean isSuccess() {
+    return m_exception == null;
+  }
+
+  /**
+   * @return the object that received the values. If the parsing failed, it might
+   * only have received some of them, and it's null if the factory failed to create it.
+   */
+  public T getObject() {
+    return m_object;
+  }
+
+  /**
+   * @return the result of the parsing, or null if it failed.
+   */
+  public ParseResult getParseResult() {
+    return m_parseResult;
+  }
+
+  /**
+   * @return the exception thrown while creating the object or parsing, usually a
+   * {@link ParameterException}, or null if the parsing succeeded.
+   */
+  public RuntimeException getException() {
+    return m_exception;
+  }
+}
@@ -0,0 +1,228 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import com.beust.jcommander.internal.Lists;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates an application class data sharing (AppCDS) archive for a program, so
+ * that the JVM maps the classes of the program, of JCommander and of the JDK from
+ * the archive instead of loading and verifying them on every launch. Short lived
+ * command line programs spend most of their time doing that.
+ *
+ * The program is run once with training arguments and
+ * -XX:DumpLoadedClassList, then the classes it loaded are dumped with
+ * -Xshare:dump. Launch the program with {@link #getLaunchOption(File)} to use the
+ * archive. This needs a JDK 10 or later, the class path can only contain jars and
+ * the program must be launched with the same class path.
+ *
+ * From the command line:
+ * <pre>
+ * java -cp app.jar:jcommander.jar com.beust.jcommander.CdsArchiveGenerator \
+ *     -cp app.jar:jcommander.jar -archive app.jsa com.example.Main -- --help
+ * java -XX:SharedArchiveFile=app.jsa -cp app.jar:jcommander.jar com.example.Main ...
+ * </pre>
+ *
+ * @author cbeust
+ */
+public class CdsArchiveGenerator {
+  private final String m_classPath;
+  private final String m_mainClass;
+  private String m_javaCommand =
+      System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+  private final List<String> m_jvmOptions = Lists.newArrayList();
+
+  public CdsArchiveGenerator(String classPath, String mainClass) {
+    m_classPath = classPath;
+    m_mainClass = mainClass;
+  }
+
+  /**
+   * Set the java executable, by default the one running this JVM. The archive
+   * can only be used by the JVM that created it.
+   */
+  public void setJavaCommand(String javaCommand) {
+    m_javaCommand = javaCommand;
+  }
+
+  /**
+   * Add an option to both JVMs, e.g. a system property read by the program.
+   */
+  public void addJvmOption(String option) {
+    m_jvmOptions.add(option);
+  }
+
+  /**
+   * Run the program with the given arguments and write the classes it loaded to
+   * the class list. The standard input of the program is closed, so that a
+   * {@link com.beust.jcommander.shell.Shell} reads the end of its input, and its
+   * exit status is ignored, since showing the usage is a fine training run.
+   */
+  public void generateClassList(File classList, String... trainingArgs) throws IOException {
+    run(getClassListCommand(classList, trainingArgs));
+    if (! classList.isFile()) {
+      throw new IOException("The JVM didn't write the class list " + classList
+          + ", it probably doesn't support -XX:DumpLoadedClassList");
+    }
+  }
+
+  /**
+   * Dump the classes of the class list to the archive.
+   */
+  public void generateArchive(File classList, File archive) throws IOException {
+    for (String path : m_classPath.split(File.pathSeparator)) {
+      if (new File(path).isDirectory()) {
+        throw new IOException("The class path of an archive can only contain jars, found the"
+            + " directory " + path);
+      }
+    }
+    int status = run(getArchiveCommand(classList, archive));
+    if (status != 0 || ! archive.isFile()) {
+      throw new IOException("Couldn't dump the archive " + archive + ", the JVM exited with "
+          + status);
+    }
+  }
+
+  /**
+   * @return the JVM option that launches a program with the archive.
+   */
+  public static String getLaunchOption(File archive) {
+    return "-XX:SharedArchiveFile=" + archive.getPath();
+  }
+
+  List<String> getClassListCommand(File classList, String[] trainingArgs) {
+    List<String> result = Lists.newArrayList();
+    result.add(m_javaCommand);
+    result.addAll(m_jvmOptions);
+    result.add("-Xshare:off");
+    result.add("-XX:DumpLoadedClassList=" + classList.getPath());
+    result.add("-cp");
+    result.add(m_classPath);
+    result.add(m_mainClass);
+    result.addAll(Arrays.asList(trainingArgs));
+    return result;
+  }
+
+  List<String> getArchiveCommand(File classList, File archive) {
+    List<String> result = Lists.newArrayList();
+    result.add(m_javaCommand);
+    result.addAll(m_jvmOptions);
+    result.add("-Xshare:dump");
+    result.add("-XX:SharedClassListFile=" + classList.getPath());
+    result.add(getLaunchOption(archive));
+    result.add("-cp");
+    result.add(m_classPath);
+    return result;
+  }
+
+  private static int run(List<String> command) throws IOException {
+    ProcessBuilder builder = new ProcessBuilder(command);
+    builder.redirectErrorStream(true);
+    Process process = builder.start();
+    process.getOutputStream().close();
+    InputStream output = process.getInputStream();
+    try {
+      byte[] buffer = new byte[4096];
+      for (int n = output.read(buffer); n != -1; n = output.read(buffer)) {
+        System.out.write(buffer, 0, n);
+      }
+      System.out.flush();
+    } finally {
+      output.close();
+    }
+    try {
+      return process.waitFor();
+    } catch (InterruptedException e) {
+      process.destroy();
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while running " + command.get(0));
+    }
+  }
+
+  private static class Args {
+    @Parameter(names = "-cp", description = "The class path of the program", required = true)
+    private String classPath;
+
+    @Parameter(names = "-archive", description = "The archive to generate", required = true)
+    private File archive;
+
+    @Parameter(names = "-classlist",
+        description = "The class list to generate, by default <archive>.classlist")
+    private File classList;
+
+    @Parameter(names = "-java", description = "The java executable, by default the current one")
+    private String java;
+
+    @Parameter(names = "-J", description = "An option of the JVMs, can be repeated")
+    private List<String> jvmOptions = Lists.newArrayList();
+
+    @Parameter(description = "<main class> [-- <training arguments>]")
+    private List<String> mainClass = Lists.newArrayList();
+  }
+
+  /**
+   * The arguments after "--" are the training arguments of the program.
+   */
+  public static void main(String[] argv) throws IOException {
+    int separator = Arrays.asList(argv).indexOf("--");
+    String[] options = argv;
+    String[] trainingArgs = new String[0];
+    if (separator != -1) {
+      options = new String[separator];
+      System.arraycopy(argv, 0, options, 0, separator);
+      trainingArgs = new String[argv.length - separator - 1];
+      System.arraycopy(argv, separator + 1, trainingArgs, 0, trainingArgs.length);
+    }
+
+    Args args = new Args();
+    JCommander jc = new JCommander(args);
+    jc.setProgramName(CdsArchiveGenerator.class.getName());
+    try {
+      jc.parse(options);
+      if (args.mainClass.size() != 1) {
+        throw new ParameterException("Expected one main class, got " + args.mainClass);
+      }
+    } catch (ParameterException e) {
+      System.err.println(e.getMessage());
+      jc.usage();
+      System.exit(1);
+    }
+
+    CdsArchiveGenerator generator = new CdsArchiveGenerator(args.classPath, args.mainClass.get(0));
+    if (args.java != null) {
+      generator.setJavaCommand(args.java);
+    }
+    for (String option : args.jvmOptions) {
+      generator.addJvmOption(option);
+    }
+    File classList = args.classList != null
+        ? args.classList
+        : new File(args.archive.getPath() + ".classlist");
+    generator.generateClassList(classList, trainingArgs);
+    generator.generateArchive(classList, args.archive);
+    System.out.println("Launch " + args.mainClass.get(0) + " with "
+        + getLaunchOption(args.archive));
+  }
+}
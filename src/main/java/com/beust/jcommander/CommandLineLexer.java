@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import com.beust.jcommander.internal.Lists;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits a command line into arguments the way a Unix shell does:
+ * <ul>
+ * <li>arguments are separated by whitespace</li>
+ * <li>characters between single quotes are kept as they are</li>
+ * <li>characters between double quotes are kept as they are, except that \" and \\
+ * stand for " and \</li>
+ * <li>outside of quotes, a backslash keeps the next character as it is</li>
+ * <li>a # at the beginning of an argument starts a comment that runs to the end
+ * of the line</li>
+ * </ul>
+ * The input is scanned once. An argument without quotes or escapes is a plain
+ * substring of the input, the other ones are built in a buffer that is reused for
+ * all the arguments. A lexer can be {@link #reset(CharSequence)} to split another
+ * line without creating a new one.
+ *
+ * @author cbeust
+ */
+public class CommandLineLexer {
+  private CharSequence m_input;
+  private int m_length;
+  private int m_position;
+  private final StringBuilder m_buffer = new StringBuilder();
+  private boolean m_quoted;
+
+  public CommandLineLexer(CharSequence input) {
+    reset(input);
+  }
+
+  /**
+   * @return the arguments found in this command line.
+   */
+  public static String[] split(CharSequence input) {
+    List<String> result = Lists.newArrayList();
+    CommandLineLexer lexer = new CommandLineLexer(input);
+    while (lexer.hasNext()) {
+      result.add(lexer.next());
+    }
+    return result.toArray(new String[result.size()]);
+  }
+
+  /**
+   * Start splitting another command line.
+   */
+  public void reset(CharSequence input) {
+    m_input = input;
+    m_length = input.length();
+    m_position = 0;
+  }
+
+  public boolean hasNext() {
+    while (m_position < m_length) {
+      char c = m_input.charAt(m_position);
+      if (c == '#') {
+        while (m_position < m_length && m_input.charAt(m_position) != '\n') {
+          m_position++;
+        }
+      } else if (Character.isWhitespace(c)) {
+        m_position++;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public String next() {
+    if (! hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    // Most arguments don't contain any quote or escape
+    m_quoted = false;
+    int start = m_position;
+    while (m_position < m_length) {
+      char c = m_input.charAt(m_position);
+      if (Character.isWhitespace(c)) {
+        return m_input.subSequence(start, m_position).toString();
+      }
+      if (c == '\'' || c == '"' || c == '\\') break;
+      m_position++;
+    }
+    if (m_position == m_length) {
+      return m_input.subSequence(start, m_length).toString();
+    }
+
+    m_quoted = true;
+    m_buffer.setLength(0);
+    m_buffer.append(m_input, start, m_position);
+    while (m_position < m_length) {
+      char c = m_input.charAt(m_position);
+      if (Character.isWhitespace(c)) {
+        break;
+      } else if (c == '\'') {
+        int end = indexOf('\'', m_position + 1, start);
+        m_buffer.append(m_input, m_position + 1, end);
+        m_position = end + 1;
+      } else if (c == '"') {
+        m_position = appendDoubleQuoted(m_position + 1, start);
+      } else if (c == '\\' && m_position + 1 < m_length) {
+        m_buffer.append(m_input.charAt(m_position + 1));
+        m_position += 2;
+      } else {
+        m_buffer.append(c);
+        m_position++;
+      }
+    }
+    return m_buffer.toString();
+  }
+
+  /**
+   * @return true if the last argument returned by {@link #next()} contained quotes or
+   * escapes, e.g. "&amp;" or \&amp; rather than &amp;.
+   */
+  public boolean isQuoted() {
+    return m_quoted;
+  }
+
+  /**
+   * Append the characters that follow a double quote to the buffer.
+   *
+   * @return the position after the closing double quote.
+   */
+  private int appendDoubleQuoted(int position, int start) {
+    while (position < m_length) {
+      char c = m_input.charAt(position);
+      if (c == '"') return position + 1;
+      if (c == '\\' && position + 1 < m_length) {
+        char n = m_input.charAt(position + 1);
+        if (n == '"' || n == '\\') {
+          m_buffer.append(n);
+          position += 2;
+          continue;
+        }
+      }
+      m_buffer.append(c);
+      position++;
+    }
+    throw unterminated('"', start);
+  }
+
+  private int indexOf(char quote, int position, int start) {
+    for (int i = position; i < m_length; i++) {
+      if (m_input.charAt(i) == quote) return i;
+    }
+    throw unterminated(quote, start);
+  }
+
+  private ParameterException unterminated(char quote, int start) {
+    return new ParameterException("Missing closing " + quote + " in "
+        + m_input.subSequence(start, m_length));
+  }
+}
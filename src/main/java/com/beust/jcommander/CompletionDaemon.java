@@ -0,0 +1,458 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import com.beust.jcommander.internal.Lists;
+import com.beust.jcommander.internal.Maps;
+import com.beust.jcommander.shell.CompletionResult;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A daemon that keeps the JCommanders of one or more programs in a warm JVM and
+ * answers completion and validation requests on a loopback TCP port, so that the
+ * shell can use {@link JCommander#tabComplete} (and the dynamic completion
+ * providers) without starting a JVM on every TAB.
+ *
+ * The port is reachable by all the users of the machine, so the first line of every
+ * connection must be a random token, which {@link #start(int)} writes to a file that
+ * only the user running the daemon can read (see {@link #setTokenFile(File)}). The
+ * connections that don't start with it are closed. At most {@link #MAX_CONNECTIONS}
+ * connections are served at the same time, and idle connections are closed after
+ * 30 seconds.
+ *
+ * The protocol is line based and encoded in UTF-8. A request is made of fields
+ * separated by tabs, in which backslashes, tabs and newlines are escaped as "\\",
+ * "\t" and "\n":
+ * <pre>
+ * complete &lt;program&gt; &lt;cursor index&gt; &lt;arg&gt;...
+ * validate &lt;program&gt; &lt;arg&gt;...
+ * </pre>
+ * The arguments are parsed without expanding the @files, "@-" and the password
+ * options are rejected, so a request never reads a file or the console.
+ * The response is "OK" followed by one completed word per line, or "ERROR", a tab
+ * and a message. It ends with an empty line. A connection can send any number of
+ * requests.
+ *
+ * {@link #generateBashClient(Appendable, String, int)} writes a bash script that
+ * completes a program with the daemon.
+ *
+ * @author cbeust
+ */
+public class CompletionDaemon {
+  public static final int DEFAULT_PORT = 7766;
+
+  /** The connections served at the same time, the next ones are refused */
+  public static final int MAX_CONNECTIONS = 16;
+
+  /** The milliseconds a connection can stay idle before it's closed */
+  private static final int IDLE_TIMEOUT = 30000;
+
+  private final Semaphore m_connections = new Semaphore(MAX_CONNECTIONS);
+
+  private final Map<String, Program> m_programs = Maps.newHashMap();
+  private long m_completionTimeBudget = 200;
+  private volatile ServerSocket m_serverSocket;
+  private File m_tokenFile;
+  private volatile String m_token;
+
+  /**
+   * Host a program. The factory is called once to create the JCommander used by
+   * completion, and once per validation request so that the values parsed by a
+   * request never leak into the next one.
+   */
+  public synchronized void addProgram(String name, IObjectFactory<JCommander> factory) {
+    m_programs.put(name, new Program(factory));
+  }
+
+  /**
+   * Set the milliseconds a completion request waits for the completion providers.
+   */
+  public void setCompletionTimeBudget(long millis) {
+    m_completionTimeBudget = millis;
+  }
+
+  /**
+   * Set the file the token is written to. The default is
+   * {@link #getDefaultTokenFile(int)} for the port of the daemon.
+   */
+  public void setTokenFile(File file) {
+    m_tokenFile = file;
+  }
+
+  /**
+   * @return ~/.jcommander/completion-daemon-&lt;port&gt;.token
+   */
+  public static File getDefaultTokenFile(int port) {
+    return new File(new File(System.getProperty("user.home"), ".jcommander"),
+        "completion-daemon-" + port + ".token");
+  }
+
+  /**
+   * Start listening on the loopback interface and write a new token to the token
+   * file. A port of 0 picks any free port, see {@link #getPort()}.
+   */
+  public void start(int port) throws IOException {
+    final ServerSocket serverSocket =
+        new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+    try {
+      m_token = createToken();
+      writeToken(getTokenFile(serverSocket.getLocalPort()), m_token);
+    } catch (IOException e) {
+      serverSocket.close();
+      throw e;
+    }
+    m_serverSocket = serverSocket;
+    Thread acceptor = new Thread("JCommander completion daemon") {
+      @Override
+      public void run() {
+        while (! serverSocket.isClosed()) {
+          try {
+            serve(serverSocket.accept());
+          } catch (IOException e) {
+            // The socket was closed by stop()
+          }
+        }
+      }
+    };
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  public int getPort() {
+    return m_serverSocket.getLocalPort();
+  }
+
+  public void stop() throws IOException {
+    if (m_serverSocket != null) {
+      getTokenFile(m_serverSocket.getLocalPort()).delete();
+      m_serverSocket.close();
+    }
+  }
+
+  private File getTokenFile(int port) {
+    return m_tokenFile != null ? m_tokenFile : getDefaultTokenFile(port);
+  }
+
+  private static String createToken() {
+    byte[] bytes = new byte[16];
+    new SecureRandom().nextBytes(bytes);
+    StringBuilder result = new StringBuilder();
+    for (byte b : bytes) {
+      result.append(String.format("%02x", b & 0xff));
+    }
+    return result.toString();
+  }
+
+  /**
+   * Write the token to a new file that only the owner can read and write, in a
+   * directory that only the owner can list if it doesn't exist yet.
+   */
+  private static void writeToken(File file, String token) throws IOException {
+    File directory = file.getAbsoluteFile().getParentFile();
+    if (! directory.isDirectory()) {
+      if (! directory.mkdirs()) throw new IOException("Couldn't create " + directory);
+      restrictToOwner(directory);
+      directory.setExecutable(false, false);
+      directory.setExecutable(true, true);
+    }
+    // Create it empty and restrict it before the token is written
+    file.delete();
+    if (! file.createNewFile()) throw new IOException("Couldn't create " + file);
+    restrictToOwner(file);
+    Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      out.write(token + "\n");
+    } finally {
+      out.close();
+    }
+  }
+
+  private static void restrictToOwner(File file) throws IOException {
+    // Removing the permissions of the others isn't supported everywhere, e.g. Windows
+    file.setReadable(false, false);
+    file.setWritable(false, false);
+    if (! file.setReadable(true, true) || ! file.setWritable(true, true)) {
+      throw new IOException("Couldn't restrict the permissions of " + file);
+    }
+  }
+
+  /**
+   * @return true if the line is the token, compared in constant time.
+   */
+  private boolean isToken(String line) throws IOException {
+    String token = m_token;
+    return token != null
+        && MessageDigest.isEqual(line.getBytes("UTF-8"), token.getBytes("UTF-8"));
+  }
+
+  private void serve(final Socket socket) {
+    if (! m_connections.tryAcquire()) {
+      try {
+        socket.getOutputStream().write(error("Too many connections").getBytes("UTF-8"));
+        socket.close();
+      } catch (IOException e) {
+      }
+      return;
+    }
+    Thread connection = new Thread("JCommander completion daemon connection") {
+      @Override
+      public void run() {
+        try {
+          socket.setSoTimeout(IDLE_TIMEOUT);
+          BufferedReader in =
+              new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+          Writer out = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+          String token = in.readLine();
+          if (token == null || ! isToken(token)) {
+            out.write(error("Invalid token"));
+            out.flush();
+            return;
+          }
+          String request;
+          while ((request = in.readLine()) != null) {
+            out.write(handle(request));
+            out.flush();
+          }
+        } catch (IOException e) {
+          // The client went away or stayed idle for too long
+        } finally {
+          m_connections.release();
+          try {
+            socket.close();
+          } catch (IOException e) {
+          }
+        }
+      }
+    };
+    connection.setDaemon(true);
+    connection.start();
+  }
+
+  /**
+   * @return the response to the request, including its terminating empty line.
+   */
+  String handle(String request) {
+    String[] fields = request.split("\t", -1);
+    for (int i = 0; i < fields.length; i++) {
+      fields[i] = unescape(fields[i]);
+    }
+    try {
+      String verb = fields[0];
+      Program program = fields.length > 1 ? getProgram(fields[1]) : null;
+      if ("complete".equals(verb) && fields.length > 2) {
+        String[] args = checkArgs(subArray(fields, 3));
+        int cursor = Integer.parseInt(fields[2]);
+        if (cursor < 0 || cursor > args.length) {
+          return error("Invalid cursor index: " + cursor);
+        }
+        return ok(program.complete(cursor, args));
+      } else if ("validate".equals(verb) && fields.length > 1) {
+        program.validate(checkArgs(subArray(fields, 2)));
+        return ok(null);
+      }
+      return error("Invalid request: " + verb);
+    } catch (NumberFormatException e) {
+      return error("Invalid cursor index: " + fields[2]);
+    } catch (ParameterException e) {
+      return error(e.getMessage());
+    } catch (RuntimeException e) {
+      return error(e.toString());
+    }
+  }
+
+  private synchronized Program getProgram(String name) {
+    Program result = m_programs.get(name);
+    if (result == null) {
+      throw new ParameterException("Unknown program: " + name);
+    }
+    return result;
+  }
+
+  /**
+   * The @files aren't expanded, but make sure the daemon never waits for its own
+   * standard input.
+   */
+  private static String[] checkArgs(String[] args) {
+    for (String arg : args) {
+      if ("@-".equals(arg)) {
+        throw new ParameterException("@- isn't allowed");
+      }
+    }
+    return args;
+  }
+
+  private static String[] subArray(String[] fields, int index) {
+    String[] result = new String[fields.length - index];
+    System.arraycopy(fields, index, result, 0, result.length);
+    return result;
+  }
+
+  private static String ok(List<String> lines) {
+    StringBuilder result = new StringBuilder("OK\n");
+    if (lines != null) {
+      for (String line : lines) {
+        result.append(escape(line)).append("\n");
+      }
+    }
+    return result.append("\n").toString();
+  }
+
+  private static String error(String message) {
+    return "ERROR\t" + escape(String.valueOf(message)) + "\n\n";
+  }
+
+  static String escape(String s) {
+    StringBuilder result = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '\\': result.append("\\\\"); break;
+        case '\t': result.append("\\t"); break;
+        case '\n': result.append("\\n"); break;
+        default: result.append(c);
+      }
+    }
+    return result.toString();
+  }
+
+  static String unescape(String s) {
+    if (s.indexOf('\\') == -1) return s;
+
+    StringBuilder result = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '\\' && i + 1 < s.length()) {
+        c = s.charAt(++i);
+        result.append(c == 't' ? '\t' : c == 'n' ? '\n' : c);
+      } else {
+        result.append(c);
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * Write a bash script that completes the program with the daemon listening on
+   * the given port, with the default token file. The script needs bash 4.1 or later.
+   */
+  public static void generateBashClient(Appendable out, String programName, int port)
+      throws IOException {
+    generateBashClient(out, programName, port, getDefaultTokenFile(port));
+  }
+
+  /**
+   * Write a bash script that completes the program with the daemon listening on
+   * the given port, reading the token from the given file. The script needs bash 4.1
+   * or later.
+   */
+  public static void generateBashClient(Appendable out, String programName, int port,
+      File tokenFile) throws IOException {
+    String function = "_" + programName.replaceAll("[^A-Za-z0-9_]", "_") + "_daemon_complete";
+    out.append("# bash completion for ").append(programName)
+        .append(" using the JCommander completion daemon\n\n");
+    out.append(function).append("() {\n");
+    // COMP_WORDS splits "--mode=value" in three words, split the line on spaces instead
+    out.append("  local request word line fd i token cur broken\n");
+    out.append("  local -a words\n");
+    out.append("  line=\"${COMP_LINE:0:COMP_POINT}\"\n");
+    out.append("  read -ra words <<< \"$line\"\n");
+    out.append("  [[ ${#words[@]} -eq 0 || \"$line\" == *[[:space:]] ]] && words+=(\"\")\n");
+    out.append("  request=complete$'\\t'").append(quote(escape(programName)))
+        .append("$'\\t'\"$((${#words[@]} - 2))\"\n");
+    out.append("  for ((i = 1; i < ${#words[@]}; i++)); do\n");
+    out.append("    word=\"${words[i]//\\\\/\\\\\\\\}\"\n");
+    out.append("    word=\"${word//$'\\t'/\\\\t}\"\n");
+    out.append("    request+=$'\\t'\"${word//$'\\n'/\\\\n}\"\n");
+    out.append("  done\n");
+    // bash only replaces what follows the last COMP_WORDBREAKS character of the word
+    out.append("  cur=\"${words[${#words[@]} - 1]}\"\n");
+    out.append("  broken=\"${cur%\"${cur##*[$COMP_WORDBREAKS]}\"}\"\n");
+    out.append("  COMPREPLY=()\n");
+    out.append("  IFS= read -r token 2>/dev/null < ")
+        .append(quote(tokenFile.getAbsolutePath())).append(" || return\n");
+    out.append("  exec {fd}<>/dev/tcp/127.0.0.1/").append(String.valueOf(port))
+        .append(" 2>/dev/null || return\n");
+    out.append("  printf '%s\\n' \"$token\" \"$request\" >&$fd\n");
+    out.append("  if IFS= read -r line <&$fd && [ \"$line\" = OK ]; then\n");
+    out.append("    while IFS= read -r line <&$fd && [ -n \"$line\" ]; do\n");
+    out.append("      printf -v word '%b' \"$line\"\n");
+    out.append("      COMPREPLY+=(\"${word#\"$broken\"}\")\n");
+    out.append("    done\n");
+    out.append("  fi\n");
+    out.append("  exec {fd}>&-\n");
+    out.append("}\n\n");
+    out.append("complete -o default -F ").append(function).append(" ")
+        .append(quote(programName)).append("\n");
+  }
+
+  private static String quote(String s) {
+    return "'" + s.replace("'", "'\\''") + "'";
+  }
+
+  private class Program {
+    private final IObjectFactory<JCommander> m_factory;
+    private JCommander m_completionJCommander;
+
+    Program(IObjectFactory<JCommander> factory) {
+      m_factory = factory;
+    }
+
+    /**
+     * @return the complete words that can replace the one at the cursor.
+     */
+    synchronized List<String> complete(int cursor, String[] args) {
+      if (m_completionJCommander == null) {
+        m_completionJCommander = m_factory.createObject();
+        m_completionJCommander.setExpandAtSign(false);
+      }
+      String prefix = cursor < args.length && args[cursor].length() > 0 ? args[cursor] : null;
+      CompletionResult results = new CompletionResult(prefix);
+      results.setTimeBudget(m_completionTimeBudget);
+      m_completionJCommander.tabComplete(args, cursor, results);
+
+      List<String> result = Lists.newArrayList();
+      for (String remaining : results.getResults()) {
+        result.add(prefix != null ? prefix + remaining : remaining);
+      }
+      return result;
+    }
+
+    void validate(String[] args) {
+      JCommander jc = m_factory.createObject();
+      jc.setExpandAtSign(false);
+      jc.setPasswordPrompt(false);
+      jc.parse(args);
+    }
+  }
+}
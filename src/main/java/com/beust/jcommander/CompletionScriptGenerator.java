@@ -0,0 +1,447 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import com.beust.jcommander.completers.EnumCompletionProvider;
+import com.beust.jcommander.completers.FileCompletionProvider;
+import com.beust.jcommander.internal.FieldDescription;
+import com.beust.jcommander.internal.Lists;
+import com.beust.jcommander.shell.CompletionResult;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Generates bash and zsh completion scripts for a program parsed by a JCommander.
+ * The scripts contain the tables of the options and commands (hidden options are
+ * left out), so completing a command line doesn't start a JVM.
+ *
+ * Values are completed for the fields whose completion provider is known statically:
+ * enums complete their constants and {@link FileCompletionProvider} completes file
+ * names. The other providers are only used by the Shell. With the separators of
+ * {@link Parameters#separators()}, the value is completed after the separator too,
+ * e.g. "--mode=".
+ *
+ * <pre>
+ * new CompletionScriptGenerator(jc, "git").generateBash(System.out);
+ * </pre>
+ *
+ * @author cbeust
+ */
+public class CompletionScriptGenerator {
+  private final String m_programName;
+  private final String m_functionName;
+
+  /** One node per JCommander, the main one first and then its commands */
+  private final List<Node> m_nodes = Lists.newArrayList();
+
+  /**
+   * @param programName the name of the command the scripts complete.
+   */
+  public CompletionScriptGenerator(JCommander jc, String programName) {
+    m_programName = programName;
+    m_functionName = "_" + programName.replaceAll("[^A-Za-z0-9_]", "_") + "_complete";
+    addNodes("", jc);
+  }
+
+  private void addNodes(String path, JCommander jc) {
+    Node node = new Node(path);
+    m_nodes.add(node);
+
+    for (ParameterDescription pd : jc.getParameters()) {
+      Parameter parameter = pd.getParameter();
+      if (parameter.hidden()) continue;
+      // With separators, the values are either in the same word as the option or in
+      // the next words
+      String separators = pd.getClassDescription().hasSeparators()
+          ? pd.getClassDescription().getSeparators() : "";
+      int arity = getArity(pd);
+      Values values = getValues(pd.getFieldDescription());
+      for (String name : parameter.names()) {
+        node.options.add(new Option(name, pd.getDescription(), arity, values, separators));
+      }
+    }
+    Collections.sort(node.options, new Comparator<Option>() {
+      public int compare(Option o1, Option o2) {
+        return o1.name.compareTo(o2.name);
+      }
+    });
+
+    for (ArgumentDescription ad : jc.getArgumentList()) {
+      node.arguments.add(getValues(ad.getFieldDescription()));
+    }
+    FieldDescription main = jc.getMainParameterFieldDescription();
+    node.mainParameter = main != null ? getValues(main) : null;
+
+    for (String name : jc.getCommandNames()) {
+      String description = jc.getCommandDescription(name);
+      node.commands.add(new Option(name, description != null ? description : "", 0, null, ""));
+      addNodes(path.length() > 0 ? path + " " + name : name, jc.getCommand(name));
+    }
+  }
+
+  private static int getArity(ParameterDescription pd) {
+    int arity = pd.getParameter().arity();
+    if (arity != -1) return arity;
+    Class<?> type = pd.getFieldDescription().getType();
+    return type == boolean.class || type == Boolean.class ? 0 : 1;
+  }
+
+  /**
+   * @return the values of the field that can be completed by a script, or null.
+   */
+  private static Values getValues(FieldDescription field) {
+    ICompletionProvider provider = field.getCompletionProvider();
+    if (provider instanceof FileCompletionProvider) {
+      return new Values(true, null);
+    }
+    if (provider instanceof EnumCompletionProvider) {
+      CompletionResult result = new CompletionResult(null);
+      provider.complete(null, result);
+      return new Values(false, result.getResults());
+    }
+    return null;
+  }
+
+  /**
+   * A script to source from ~/.bashrc or to install in the bash_completion.d directory.
+   */
+  public void generateBash(Appendable out) throws IOException {
+    out.append("# bash completion for ").append(m_programName)
+        .append(", generated by JCommander\n\n");
+    out.append(m_functionName).append("() {\n");
+    // COMP_WORDS splits "--mode=value" in three words, split the line on spaces instead
+    out.append("  local line=\"${COMP_LINE:0:COMP_POINT}\" prefix\n");
+    out.append("  local -a words\n");
+    out.append("  read -ra words <<< \"$line\"\n");
+    out.append("  [[ ${#words[@]} -eq 0 || \"$line\" == *[[:space:]] ]] && words+=(\"\")\n");
+    out.append("  local cur=\"${words[${#words[@]} - 1]}\"\n");
+    generateWordLoop(out, "for ((i = 1; i < ${#words[@]} - 1; i++)); do", "${words[i]}");
+    out.append("  COMPREPLY=()\n");
+
+    // Value of an option
+    out.append("  if [ $skip -gt 0 ]; then\n");
+    out.append("    case \"$node|$option\" in\n");
+    for (Node node : m_nodes) {
+      for (Option option : node.options) {
+        if (option.arity > 0 && option.values != null) {
+          out.append("      ").append(quote(node.path + "|" + option.name)).append(") ");
+          appendBashValues(out, option.values);
+          out.append(" ;;\n");
+        }
+      }
+    }
+    out.append("    esac\n");
+    out.append("    return\n");
+    out.append("  fi\n");
+
+    // Value after a separator. Unless the separator is in COMP_WORDBREAKS, bash replaces
+    // the whole word, so the option is prepended to the values
+    out.append("  case \"$node|$cur\" in\n");
+    for (Node node : m_nodes) {
+      for (Option option : node.options) {
+        for (String prefix : getSeparatorPrefixes(option)) {
+          out.append("    ").append(quote(node.path + "|" + prefix)).append("*) prefix=")
+              .append(quote(prefix)).append("; cur=\"${cur:${#prefix}}\"\n      ");
+          appendBashValues(out, option.values);
+          out.append("\n      [[ \"$COMP_WORDBREAKS\" == *")
+              .append(quote(prefix.substring(prefix.length() - 1)))
+              .append("* ]] || COMPREPLY=(\"${COMPREPLY[@]/#/$prefix}\")\n");
+          out.append("      return ;;\n");
+        }
+      }
+    }
+    out.append("  esac\n");
+
+    // Option names
+    out.append("  if [[ \"$cur\" == -* ]]; then\n");
+    out.append("    case \"$node\" in\n");
+    for (Node node : m_nodes) {
+      if (node.options.isEmpty()) continue;
+      out.append("      ").append(quote(node.path)).append(") COMPREPLY=($(compgen -W ")
+          .append(quote(join(node.options))).append(" -- \"$cur\")) ;;\n");
+    }
+    out.append("    esac\n");
+    out.append("    return\n");
+    out.append("  fi\n");
+
+    // Command names, arguments and main parameter
+    out.append("  case \"$node|$position\" in\n");
+    for (Node node : m_nodes) {
+      if (! node.commands.isEmpty()) {
+        out.append("    ").append(quote(node.path + "|")).append("*) COMPREPLY=($(compgen -W ")
+            .append(quote(join(node.commands))).append(" -- \"$cur\")) ;;\n");
+        continue;
+      }
+      for (int i = 0; i < node.arguments.size(); i++) {
+        if (node.arguments.get(i) == null) continue;
+        out.append("    ").append(quote(node.path + "|" + i)).append(") ");
+        appendBashValues(out, node.arguments.get(i));
+        out.append(" ;;\n");
+      }
+      if (node.mainParameter != null) {
+        out.append("    ").append(quote(node.path + "|")).append("*) ");
+        appendBashValues(out, node.mainParameter);
+        out.append(" ;;\n");
+      }
+    }
+    out.append("  esac\n");
+    out.append("}\n\n");
+    out.append("complete -F ").append(m_functionName).append(" ")
+        .append(quote(m_programName)).append("\n");
+  }
+
+  private void appendBashValues(Appendable out, Values values) throws IOException {
+    if (values.files) {
+      out.append("compopt -o filenames 2>/dev/null; COMPREPLY=($(compgen -f -- \"$cur\"))");
+    } else {
+      out.append("COMPREPLY=($(compgen -W ").append(quote(join(values.words, " ")))
+          .append(" -- \"$cur\"))");
+    }
+  }
+
+  /**
+   * A script to install as "_programName" in a directory of $fpath, or to source
+   * from ~/.zshrc after compinit.
+   */
+  public void generateZsh(Appendable out) throws IOException {
+    out.append("#compdef ").append(m_programName).append("\n");
+    out.append("# zsh completion for ").append(m_programName)
+        .append(", generated by JCommander\n\n");
+    out.append(m_functionName).append("() {\n");
+    out.append("  local cur=\"${words[CURRENT]}\"\n");
+    out.append("  local -a candidates\n");
+    generateWordLoop(out, "for ((i = 2; i < CURRENT; i++)); do", "${words[i]}");
+
+    // Value of an option
+    out.append("  if [ $skip -gt 0 ]; then\n");
+    out.append("    case \"$node|$option\" in\n");
+    for (Node node : m_nodes) {
+      for (Option option : node.options) {
+        if (option.arity > 0 && option.values != null) {
+          out.append("      ").append(quote(node.path + "|" + option.name)).append(") ");
+          appendZshValues(out, option.values);
+          out.append(" ;;\n");
+        }
+      }
+    }
+    out.append("    esac\n");
+    out.append("    return\n");
+    out.append("  fi\n");
+
+    // Value after a separator
+    out.append("  case \"$node|$cur\" in\n");
+    for (Node node : m_nodes) {
+      for (Option option : node.options) {
+        for (String prefix : getSeparatorPrefixes(option)) {
+          out.append("    ").append(quote(node.path + "|" + prefix)).append("*) compset -P ")
+              .append(quote(prefix)).append("; ");
+          appendZshValues(out, option.values);
+          out.append("; return ;;\n");
+        }
+      }
+    }
+    out.append("  esac\n");
+
+    // Option names
+    out.append("  if [[ \"$cur\" == -* ]]; then\n");
+    out.append("    case \"$node\" in\n");
+    for (Node node : m_nodes) {
+      if (node.options.isEmpty()) continue;
+      out.append("      ").append(quote(node.path)).append(") candidates=(");
+      appendZshDescriptions(out, node.options);
+      out.append(") ;;\n");
+    }
+    out.append("    esac\n");
+    out.append("    _describe 'option' candidates\n");
+    out.append("    return\n");
+    out.append("  fi\n");
+
+    // Command names, arguments and main parameter
+    out.append("  case \"$node|$position\" in\n");
+    for (Node node : m_nodes) {
+      if (! node.commands.isEmpty()) {
+        out.append("    ").append(quote(node.path + "|")).append("*) candidates=(");
+        appendZshDescriptions(out, node.commands);
+        out.append("); _describe 'command' candidates ;;\n");
+        continue;
+      }
+      for (int i = 0; i < node.arguments.size(); i++) {
+        if (node.arguments.get(i) == null) continue;
+        out.append("    ").append(quote(node.path + "|" + i)).append(") ");
+        appendZshValues(out, node.arguments.get(i));
+        out.append(" ;;\n");
+      }
+      if (node.mainParameter != null) {
+        out.append("    ").append(quote(node.path + "|")).append("*) ");
+        appendZshValues(out, node.mainParameter);
+        out.append(" ;;\n");
+      }
+    }
+    out.append("  esac\n");
+    out.append("}\n\n");
+    out.append("if [ \"$funcstack[1]\" = ").append(quote("_" + m_programName))
+        .append(" ]; then\n");
+    out.append("  ").append(m_functionName).append(" \"$@\"\n");
+    out.append("else\n");
+    out.append("  compdef ").append(m_functionName).append(" ")
+        .append(quote(m_programName)).append("\n");
+    out.append("fi\n");
+  }
+
+  private void appendZshValues(Appendable out, Values values) throws IOException {
+    if (values.files) {
+      out.append("_files");
+    } else {
+      out.append("compadd --");
+      for (String word : values.words) {
+        out.append(" ").append(quote(word));
+      }
+    }
+  }
+
+  private void appendZshDescriptions(Appendable out, List<Option> options)
+      throws IOException {
+    for (int i = 0; i < options.size(); i++) {
+      Option option = options.get(i);
+      String description = option.description != null
+          ? option.description.replace('\n', ' ') : "";
+      if (i > 0) out.append(" ");
+      out.append(quote(option.name.replace(":", "\\:")
+          + (description.length() > 0 ? ":" + description : "")));
+    }
+  }
+
+  /**
+   * @return the option name followed by each of its separators, e.g. "--mode=", if its
+   * values can be completed after a separator.
+   */
+  private static List<String> getSeparatorPrefixes(Option option) {
+    List<String> result = Lists.newArrayList();
+    if (option.arity > 0 && option.values != null) {
+      for (int i = 0; i < option.separators.length(); i++) {
+        result.add(option.name + option.separators.charAt(i));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * The loop that finds the command being completed and the position of the word
+   * under the cursor. The values of the options are skipped according to their arity,
+   * unless they follow a separator in the same word.
+   */
+  private void generateWordLoop(Appendable out, String loop, String word) throws IOException {
+    out.append("  local node=\"\" option=\"\" word i\n");
+    out.append("  local -i skip=0 position=0\n");
+    out.append("  ").append(loop).append("\n");
+    out.append("    word=\"").append(word).append("\"\n");
+    out.append("    if [ $skip -gt 0 ]; then\n");
+    out.append("      skip=$((skip - 1))\n");
+    out.append("      continue\n");
+    out.append("    fi\n");
+    out.append("    case \"$node|$word\" in\n");
+    for (Node node : m_nodes) {
+      for (Option option : node.options) {
+        if (option.arity > 0) {
+          out.append("      ").append(quote(node.path + "|" + option.name))
+              .append(") option=\"$word\"; skip=").append(String.valueOf(option.arity))
+              .append(" ;;\n");
+        }
+      }
+      for (Option command : node.commands) {
+        String path = node.path.length() > 0 ? node.path + " " + command.name : command.name;
+        out.append("      ").append(quote(node.path + "|" + command.name))
+            .append(") node=").append(quote(path)).append("; position=0 ;;\n");
+      }
+    }
+    out.append("      *'|-'*) ;;\n");
+    out.append("      *) position=$((position + 1)) ;;\n");
+    out.append("    esac\n");
+    out.append("  done\n");
+  }
+
+  private static String join(List<Option> options) {
+    List<String> names = Lists.newArrayList();
+    for (Option option : options) {
+      names.add(option.name);
+    }
+    return join(names, " ");
+  }
+
+  private static String join(List<String> strings, String separator) {
+    StringBuilder result = new StringBuilder();
+    for (String s : strings) {
+      if (result.length() > 0) result.append(separator);
+      result.append(s);
+    }
+    return result.toString();
+  }
+
+  /**
+   * @return the string in single quotes, which prevents any expansion by the shell.
+   */
+  private static String quote(String s) {
+    return "'" + s.replace("'", "'\\''") + "'";
+  }
+
+  private static class Node {
+    private final String path;
+    private final List<Option> options = Lists.newArrayList();
+    private final List<Option> commands = Lists.newArrayList();
+    /** The values of the @Arguments, per index (null elements if they can't be completed) */
+    private final List<Values> arguments = Lists.newArrayList();
+    private Values mainParameter;
+
+    Node(String path) {
+      this.path = path;
+    }
+  }
+
+  private static class Option {
+    private final String name;
+    private final String description;
+    private final int arity;
+    private final Values values;
+    /** The separators of the class of the option, empty if it doesn't have any */
+    private final String separators;
+
+    Option(String name, String description, int arity, Values values, String separators) {
+      this.name = name;
+      this.description = description;
+      this.arity = arity;
+      this.values = values;
+      this.separators = separators;
+    }
+  }
+
+  private static class Values {
+    /** Complete file names */
+    private final boolean files;
+    /** Or complete one of these words */
+    private final List<String> words;
+
+    Values(boolean files, List<String> words) {
+      this.files = files;
+      this.words = words;
+    }
+  }
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+/**
+ * Receives the results of
+ * {@link JCommanderParser#parseAll(Iterable, IObjectFactory, java.util.concurrent.ExecutorService, IBatchResultHandler)}
+ * one at a time, in the order of the command lines. It's always called from the thread
+ * that called parseAll(), so it doesn't need to be thread safe.
+ *
+ * @author cbeust
+ */
+public interface IBatchResultHandler<T> {
+  void onResult(BatchParseResult<T> result);
+}
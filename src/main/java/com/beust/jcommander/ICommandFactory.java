@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+/**
+ * Creates the object of a command the first time it's needed, so that commands
+ * that are never used don't need to be loaded or instantiated.
+ *
+ * @see JCommander#addCommand(String, ICommandFactory, String)
+ *
+ * @author cbeust
+ */
+public interface ICommandFactory {
+
+  /**
+   * @return a new command object, annotated like the ones passed to
+   * {@link JCommander#addCommand(String, Object)}.
+   */
+  Object createCommand();
+}
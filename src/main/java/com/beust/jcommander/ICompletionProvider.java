@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import com.beust.jcommander.shell.CompletionResult;
+
+/**
+ * Provides the values that can be tab completed for an option or an argument,
+ * specified with {@link Parameter#completionProvider()} or
+ * {@link Argument#completionProvider()}.
+ *
+ * Providers are called by the tab completion of the Shell with a time budget. A
+ * provider that can be slow should check {@link CompletionResult#isTimeUp()} and
+ * return the candidates found so far once it is true. Providers that don't are
+ * abandoned when the budget is exhausted, and the candidates they added until
+ * then are used.
+ *
+ * A provider is created once per field with its no-arg constructor and can be
+ * called by several threads.
+ *
+ * @author cbeust
+ */
+public interface ICompletionProvider {
+  /**
+   * Add the values starting with the given prefix to the results.
+   *
+   * @param prefix the value typed so far, or null.
+   */
+  void complete(String prefix, CompletionResult results);
+}
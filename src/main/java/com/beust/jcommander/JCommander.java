@@ -18,30 +18,28 @@
 
 package com.beust.jcommander;
 
-import com.beust.jcommander.converters.NoConverter;
-import com.beust.jcommander.converters.StringConverter;
-import com.beust.jcommander.internal.DefaultConverterFactory;
+import com.beust.jcommander.internal.ClassDescription;
+import com.beust.jcommander.internal.ConverterRegistry;
+import com.beust.jcommander.internal.FieldDescription;
 import com.beust.jcommander.internal.Lists;
 import com.beust.jcommander.internal.Maps;
+import com.beust.jcommander.internal.OptionIndex;
+import com.beust.jcommander.internal.PrefixIndex;
 import com.beust.jcommander.shell.CompletionResult;
 
-import java.io.BufferedReader;
-import java.io.Console;
-import java.io.FileReader;
 import java.io.IOException;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * The main class for JCommander. It's responsible for parsing the object that contains
@@ -60,6 +58,12 @@ public class JCommander {
 
   private Map<String, ParameterDescription> m_descriptions;
 
+  /**
+   * The same descriptions as m_descriptions, indexed so that we can quickly find
+   * which option a command line token starts with.
+   */
+  private OptionIndex<ParameterDescription> m_optionIndex;
+
   private Map<Integer, ArgumentDescription> m_arguments;
 
   private List<ArgumentDescription> m_argumentList;
@@ -73,7 +77,12 @@ public class JCommander {
    * This field will contain whatever command line parameter is not an option.
    * It is expected to be a List<String>.
    */
-  private Field m_mainParameterField = null;
+  private FieldDescription m_mainParameterDescription;
+
+  /**
+   * The collection receiving the main parameters, once we looked it up.
+   */
+  private Collection<Object> m_mainParameterValues;
 
   /**
    * The object on which we found the main parameter field.
@@ -93,12 +102,12 @@ public class JCommander {
    * then some required fields did not receive a value and an exception is
    * thrown.
    */
-  private Map<Field, ParameterDescription> m_requiredFields = Maps.newHashMap();
+  private Map<FieldDescription, ParameterDescription> m_requiredFields = Maps.newHashMap();
 
   /**
    * A map of all the annotated fields.
    */
-  private Map<Field, ParameterDescription> m_fields = Maps.newHashMap();
+  private Map<FieldDescription, ParameterDescription> m_fields = Maps.newHashMap();
 
   private ResourceBundle m_bundle;
 
@@ -110,7 +119,19 @@ public class JCommander {
   /**
    * List of commands and their instance.
    */
-  private Map<String, JCommander> m_commands = Maps.newHashMap();
+  private Map<String, CommandEntry> m_commands = Maps.newHashMap();
+
+  /**
+   * The option names and the command names, sorted for tab completion. Created
+   * lazily, the command names are reset whenever a command is added.
+   */
+  private PrefixIndex m_optionNames;
+  private PrefixIndex m_commandNames;
+
+  /**
+   * The help displayed by usage(), created lazily and reset whenever it could change.
+   */
+  private String m_usage;
 
   /**
    * The name of the command after the parsing has run.
@@ -120,12 +141,125 @@ public class JCommander {
   private String m_programName;
 
   /**
-   * The factories used to look up string converters.
+   * The charset used to read @files.
+   */
+  private Charset m_atFileCharset = Charset.defaultCharset();
+
+  /**
+   * Whether the lines of the @files are split like a shell does.
    */
-  private static List<IStringConverterFactory> CONVERTER_FACTORIES = Lists.newArrayList();
+  private boolean m_atFileShellSyntax = false;
+
+  /**
+   * Whether the @file parameters are replaced with the content of the files.
+   */
+  private boolean m_expandAtSign = true;
+
+  /**
+   * Whether the values of the password options are asked for on the console.
+   */
+  private boolean m_passwordPrompt = true;
+
+  /**
+   * The converters created so far, per converter class and option name.
+   */
+  private Map<Class<?>, Map<String, IStringConverter<?>>> m_converters = Maps.newHashMap();
+
+  /**
+   * The constructor used to create each converter class.
+   */
+  private Map<Class<?>, Constructor<IStringConverter<?>>> m_converterConstructors =
+      Maps.newHashMap();
+
+  private boolean m_cacheConverters = true;
+
+  /**
+   * The factories used to look up string converters, shared with the commands.
+   */
+  private ConverterRegistry m_converterRegistry = new ConverterRegistry();
+
+  /**
+   * Lets the tokenizer recognize our options.
+   */
+  private final ArgumentTokenizer.Options m_tokenizerOptions = new ArgumentTokenizer.Options() {
+    public ClassDescription findOptionClassDescription(String arg) {
+      return JCommander.this.findOptionClassDescription(arg);
+    }
+  };
+
+  /**
+   * Receives the values found by the parse loop.
+   */
+  private final ParseCore.Target<ParameterDescription> m_parseTarget =
+      new ParseCore.Target<ParameterDescription>() {
+    public ParameterDescription findOption(String name) {
+      return getDescriptions().get(name);
+    }
+
+    public String getOptionPrefixes(String arg) {
+      return JCommander.this.getOptionPrefixes(arg);
+    }
+
+    public FieldDescription getFieldDescription(ParameterDescription option) {
+      return option.getFieldDescription();
+    }
+
+    public String getDescription(ParameterDescription option) {
+      return option.getDescription();
+    }
+
+    public boolean isPasswordPromptEnabled() {
+      return m_passwordPrompt;
+    }
+
+    public void addValue(ParameterDescription option, String value, boolean isDefault) {
+      option.addValue(value, isDefault);
+      if (! isDefault) m_requiredFields.remove(option.getFieldDescription());
+    }
+
+    public int getArgumentCount() {
+      return getArguments().size();
+    }
+
+    public void addArgumentValue(int index, String value) {
+      getArgument(index).addValue(value);
+    }
+
+    public boolean isArgumentRequired(int index) {
+      return getArgument(index).isRequired();
+    }
+
+    public String getArgumentName(int index) {
+      return getArgument(index).getName();
+    }
+
+    public boolean hasMainParameter() {
+      return m_mainParameterDescription != null;
+    }
+
+    public void addMainParameterValue(String value) {
+      Collection<Object> mp = getMainParameter(value);
+      Object convertedValue = value;
+      Class<?> cls = m_mainParameterDescription.getElementType();
+      if (cls != null) {
+        convertedValue = convertValue(m_mainParameterDescription.getName(),
+            m_mainParameterAnnotation, null, cls, value);
+      }
+      mp.add(convertedValue);
+    }
+
+    public boolean hasCommands() {
+      return ! m_commands.isEmpty();
+    }
 
-  static {
-    CONVERTER_FACTORIES.add(new DefaultConverterFactory());
+    public boolean parseCommand(String name, ArgumentTokenizer tokens) {
+      JCommander jc = getCommand(name);
+      if (jc == null) return false;
+      m_parsedCommand = name;
+      if (! m_passwordPrompt) jc.setPasswordPrompt(false);
+      jc.parse(tokens);
+      return true;
+    }
   };
 
   /**
@@ -199,18 +333,27 @@ public class JCommander {
    * Parse the command line parameters.
    */
   public void parse(String... args) {
-    StringBuilder sb = new StringBuilder("Parsing \"");
-    sb.append(join(args).append("\"\n  with:").append(join(m_objects.toArray())));
-    p(sb.toString());
-
-    m_descriptions = Maps.newHashMap();
+    if (isDebug()) {
+      p("Parsing \"" + join(args) + "\"\n  with:" + join(m_objects.toArray()));
+    }
 
-    // Create the ParameterDescriptions for all the @Parameter found.
-    for (Object object : m_objects) {
-      addDescription(object);
+    ArgumentTokenizer tokens = new ArgumentTokenizer(args, m_atFileCharset, m_atFileShellSyntax,
+        m_expandAtSign);
+    try {
+      parse(tokens);
+    } finally {
+      tokens.close();
     }
+  }
+
+  /**
+   * Parse the tokens, which might have been partly consumed by a parent JCommander.
+   */
+  private void parse(ArgumentTokenizer tokens) {
+    createDescriptions();
     initializeDefaultValues();
-    parseValues(expandArgs(args));
+    tokens.setOptions(m_tokenizerOptions);
+    ParseCore.parse(tokens, m_parseTarget);
     validateOptions();
   }
 
@@ -225,9 +368,8 @@ public class JCommander {
 
   private void initializeDefaultValues() {
     if (m_defaultProvider != null) {
-      for (ParameterDescription pd : getDescriptions().values()) {
-        initializeDefaultValue(pd);
-      }
+      ParseCore.initializeDefaultValues(m_defaultProvider, getDescriptions().values(),
+          m_parseTarget);
     }
   }
 
@@ -246,143 +388,42 @@ public class JCommander {
   }
   
   /**
-   * Expand the command line parameters to take @ parameters into account.
-   * When @ is encountered, the content of the file that follows is inserted
-   * in the command line.
-   * 
-   * @param originalArgv the original command line parameters
-   * @return the new and enriched command line parameters
+   * @return the description of the option that this argument starts with, or null if
+   * it doesn't start with any option name. The longest matching option name wins.
    */
-  private String[] expandArgs(String[] originalArgv) {
-    List<String> vResult1 = Lists.newArrayList();
-
-    //
-    // Expand @
-    //
-    for (String arg : originalArgv) {
-
-      if (arg.startsWith("@")) {
-        String fileName = arg.substring(1);
-        vResult1.addAll(readFile(fileName));
-      }
-      else {
-        vResult1.add(arg);
-      }
-    }
-
-    //
-    // Expand separators
-    //
-    List<String> vResult2 = Lists.newArrayList();
-    for (int i = 0; i < vResult1.size(); i++) {
-      String arg = vResult1.get(i);
-      String[] v1 = vResult1.toArray(new String[0]);
-      if (isOption(v1, arg)) {
-        String sep = getSeparatorFor(v1, arg);
-        if (! " ".equals(sep)) {
-          String[] sp = arg.split("[" + sep + "]");
-          for (String ssp : sp) {
-            vResult2.add(ssp);
-          }
-        } else {
-          vResult2.add(arg);
-        }
-      } else {
-        vResult2.add(arg);
-      }
-    }
-
-    return vResult2.toArray(new String[vResult2.size()]);
-  }
-
-  private boolean isOption(String[] args, String arg) {
-    String prefixes = getOptionPrefixes(args, arg);
-    return prefixes.indexOf(arg.charAt(0)) >= 0;
-  }
-
   private ParameterDescription getPrefixDescriptionFor(String arg) {
-    for (Map.Entry<String, ParameterDescription> es : getDescriptions().entrySet()) {
-      if (arg.startsWith(es.getKey())) return es.getValue();
-    }
-
-    return null;
+    getDescriptions(); // force lazy create
+    return m_optionIndex.findLongestPrefixOf(arg);
   }
 
   /**
-   * If arg is an option, we can look it up directly, but if it's a value,
-   * we need to find the description for the option that precedes it.
+   * @return the description of the class that declares the option this argument
+   * starts with, or null if this argument is not one of our options.
    */
-  private ParameterDescription getDescriptionFor(String[] args, String arg) {
-    ParameterDescription result = getPrefixDescriptionFor(arg);
-    if (result != null) return result;
+  ClassDescription findOptionClassDescription(String arg) {
+    if (arg.length() == 0) return null;
+    ParameterDescription pd = getPrefixDescriptionFor(arg);
+    if (pd == null) return null;
 
-    for (String a : args) {
-      ParameterDescription pd = getPrefixDescriptionFor(arg);
-      if (pd != null) result = pd;
-      if (a.equals(arg)) return result;
-    }
-
-    throw new ParameterException("Unknown parameter: " + arg);
+    ClassDescription result = pd.getClassDescription();
+    return result.getOptionPrefixes().indexOf(arg.charAt(0)) >= 0 ? result : null;
   }
 
-  private String getSeparatorFor(String[] args, String arg) {
-    ParameterDescription pd = getDescriptionFor(args, arg);
+  private String getOptionPrefixes(String arg) {
+    ParameterDescription pd = getPrefixDescriptionFor(arg);
 
     // Could be null if only main parameters were passed
     if (pd != null) {
-      Parameters p = pd.getObject().getClass().getAnnotation(Parameters.class);
-      if (p != null) return p.separators();
-    }
-
-    return " ";
-  }
-
-  private String getOptionPrefixes(String[] args, String arg) {
-    ParameterDescription pd = getDescriptionFor(args, arg);
-
-    // Could be null if only main parameters were passed
-    if (pd != null) {
-      Parameters p = pd.getObject().getClass()
-          .getAnnotation(Parameters.class);
-      if (p != null) return p.optionPrefixes();
+      return pd.getClassDescription().getOptionPrefixes();
     }
 
     return Parameters.DEFAULT_OPTION_PREFIXES;
   }
 
-  /**
-   * Reads the file specified by filename and returns the file content as a string.
-   * End of lines are replaced by a space.
-   * 
-   * @param fileName the command line filename
-   * @return the file content as a string.
-   */
-  private static List<String> readFile(String fileName) {
-    List<String> result = Lists.newArrayList();
-
-    try {
-      BufferedReader bufRead = new BufferedReader(new FileReader(fileName));
-
-      String line;
-
-      // Read through file one line at time. Print line # and line
-      while ((line = bufRead.readLine()) != null) {
-        result.add(line);
-      }
-
-      bufRead.close();
-    }
-    catch (IOException e) {
-      throw new ParameterException("Could not read file " + fileName + ": " + e);
-    }
-
-    return result;
-  }
-
   /**
    * Remove spaces at both ends and handle double quotes.
    */
-  private static String trim(String string) {
+  static String trim(String string) {
     String result = string.trim();
     if (result.startsWith("\"")) {
       if (result.endsWith("\"")) {
@@ -394,192 +435,48 @@ public class JCommander {
   }
 
   private void addDescription(Object object) {
-    Class<?> cls = object.getClass();
-
-    while (!Object.class.equals(cls)) {
-      for (Field f : cls.getDeclaredFields()) {
-        p("Field:" + cls.getSimpleName() + "." + f.getName());
-        f.setAccessible(true);
-        Annotation annotation = f.getAnnotation(Parameter.class);
-        if (annotation != null) {
-          Parameter p = (Parameter) annotation;
-          if (p.names().length == 0) {
-            p("Found main parameter:" + f);
-            if (m_mainParameterField != null) {
-              throw new ParameterException("Only one @Parameter with no names attribute is"
-                  + " allowed, found:" + m_mainParameterField + " and " + f);
-            }
-            m_mainParameterField = f;
-            m_mainParameterObject = object;
-            m_mainParameterAnnotation = p;
-          } else {
-            for (String name : p.names()) {
-              if (getDescriptions().containsKey(name)) {
-                throw new ParameterException("Found the option " + name + " multiple times");
-              }
-              p("Adding description for " + name);
-              ParameterDescription pd = new ParameterDescription(object, p, f, m_bundle, this);
-              m_fields.put(f, pd);
-              getDescriptions().put(name, pd);
-
-              if (p.required()) m_requiredFields.put(f, pd);
-            }
-          }
-        }
-        Argument a = f.getAnnotation(Argument.class);
-        if (a != null) {
-          Integer index = a.index();
-          if (getArguments().containsKey(index)) {
-            throw new ParameterException("Found the argument at index " + index + " multiple times");
-          }
-          p("Adding argument for " + index);
-          ArgumentDescription pd = new ArgumentDescription(object, a, f, m_bundle, this);
-          getArguments().put(index, pd);
-        }
-      }
-      // Traverse the super class until we find Object.class
-      cls = cls.getSuperclass();
-    }
-  }
-
-  private void initializeDefaultValue(ParameterDescription pd) {
-    String optionName = pd.getParameter().names()[0];
-    String def = m_defaultProvider.getDefaultValueFor(optionName);
-    if (def != null) {
-      p("Initializing " + optionName + " with default value:" + def);
-      pd.addValue(def, true /* default */);
-    }
-  }
-
-  /**
-   * Main method that parses the values and initializes the fields accordingly.
-   */
-  private void parseValues(String[] args) {
-    // This boolean becomes true if we encounter a command, which indicates we need
-    // to stop parsing (the parsing of the command will be done in a sub JCommander
-    // object)
-    boolean commandParsed = false;
-    int i = 0;
-    int argIndex = 0;
-    while (i < args.length && ! commandParsed) {
-      String arg = args[i];
-      String a = trim(arg);
-      p("Parsing arg:" + a);
-
-      if (isOption(args, a)) {
-        //
-        // Option
-        //
-        ParameterDescription pd = getDescriptions().get(a);
-
-        if (pd != null) {
-          if (pd.getParameter().password()) {
-            //
-            // Password option, use the Console to retrieve the password
-            //
-            Console console = System.console();
-            if (console == null) {
-              throw new ParameterException("No console is available to get parameter " + a);
-            }
-            System.out.print("Value for " + a + " (" + pd.getDescription() + "):");
-            char[] password = console.readPassword();
-            pd.addValue(new String(password));
-          } else {
-            //
-            // Regular option
-            //
-            Class<?> fieldType = pd.getField().getType();
-            
-            // Boolean, set to true as soon as we see it, unless it specified
-            // an arity of 1, in which case we need to read the next value
-            if ((fieldType == boolean.class || fieldType == Boolean.class)
-                && pd.getParameter().arity() == -1) {
-              pd.addValue("true");
-              m_requiredFields.remove(pd.getField());
-            } else {
-              // Regular parameter, use the arity to tell use how many values
-              // we need to consume
-              int arity = pd.getParameter().arity();
-              int n = (arity != -1 ? arity : 1);
-
-              int offset = "--".equals(args[i + 1]) ? 1 : 0;
-
-              if (i + n < args.length) {
-                for (int j = 1; j <= n; j++) {
-                  pd.addValue(trim(args[i + j + offset]));
-                  m_requiredFields.remove(pd.getField());
-                }
-                i += n + offset;
-              } else {
-                throw new ParameterException(n + " parameters expected after " + arg);
-              }
-            }
+    ClassDescription cd = ClassDescription.getClassDescription(object.getClass());
+
+    for (FieldDescription fd : cd.getFields()) {
+      Parameter p = fd.getParameter();
+      if (p != null) {
+        if (fd.isMainParameter()) {
+          if (isDebug()) p("Found main parameter:" + fd);
+          if (m_mainParameterDescription != null) {
+            throw new ParameterException("Only one @Parameter with no names attribute is"
+                + " allowed, found:" + m_mainParameterDescription + " and " + fd);
           }
+          m_mainParameterDescription = fd;
+          m_mainParameterObject = object;
+          m_mainParameterAnnotation = p;
         } else {
-          throw new ParameterException("Unknown option: " + a);
-        }
-      }
-      else {
-        //
-        // Main parameter
-        //
-        if (! isStringEmpty(arg)) {
-          if (m_commands.isEmpty()) {
-            //
-            // Regular (non-command) parsing
-            //
-
-            // Do we have any arguments to eat up arguments
-            // TODO
-            if (getArguments().size() > argIndex) {
-              ArgumentDescription ad = getArgument(argIndex);
-              ad.addValue(arg);
-              argIndex++;
-            }
-            else {
-              // lets pass any remaining arguments into the main parameter
-              List mp = getMainParameter(arg);
-              String value = arg;
-              Object convertedValue = value;
-
-              if (m_mainParameterField.getGenericType() instanceof ParameterizedType) {
-                ParameterizedType p = (ParameterizedType) m_mainParameterField.getGenericType();
-                Type cls = p.getActualTypeArguments()[0];
-                if (cls instanceof Class) {
-                  convertedValue = convertValue(m_mainParameterField, (Class) cls, value);
-                }
-              }
-
-              mp.add(convertedValue);
+          for (String name : p.names()) {
+            if (getDescriptions().containsKey(name)) {
+              throw new ParameterException("Found the option " + name + " multiple times");
             }
-          }
-          else {
-            //
-            // Command parsing
-            //
-            JCommander jc = m_commands.get(arg);
-            if (jc == null) throw new ParameterException("Expected a command, got " + arg);
-            m_parsedCommand = arg;
+            if (isDebug()) p("Adding description for " + name);
+            ParameterDescription pd = new ParameterDescription(object, fd, m_bundle, this);
+            m_fields.put(fd, pd);
+            getDescriptions().put(name, pd);
+            m_optionIndex.put(name, pd);
 
-            // Found a valid command, ask it to parse the remainder of the arguments.
-            // Setting the boolean commandParsed to true will force the current
-            // loop to end.
-            jc.parse(subArray(args, i + 1));
-            commandParsed = true;
+            if (p.required()) m_requiredFields.put(fd, pd);
           }
         }
       }
-      i++;
-    }
-    if (getArguments().size() > argIndex) {
-      ArgumentDescription ad = getArgument(argIndex);
-      if (ad.isRequired()) {
-        throw new ParameterException("Missing " + ad.getName() + " argument");
+      Argument a = fd.getArgument();
+      if (a != null) {
+        Integer index = a.index();
+        if (getArguments().containsKey(index)) {
+          throw new ParameterException("Found the argument at index " + index + " multiple times");
+        }
+        if (isDebug()) p("Adding argument for " + index);
+        ArgumentDescription ad = new ArgumentDescription(object, fd, m_bundle, this);
+        getArguments().put(index, ad);
       }
     }
   }
 
-
   /**
    * Attempts to perform tab completion in a shell
    * or maybe using some kind of bash completion mechanism.
@@ -592,6 +489,7 @@ public class JCommander {
    * into the result object which will filter and record the results
    */
   public void tabComplete(String[] args, int cursorPosition, CompletionResult results) {
+    getDescriptions(); // force lazy create
     int i = 0;
     int argIndex = 0;
     while (i <= cursorPosition) {
@@ -603,7 +501,7 @@ public class JCommander {
       if (i < args.length) {
         String arg = args[i];
         a = trim(arg);
-        option = isOption(args, a);
+        option = ParseCore.isOption(a, m_parseTarget);
       }
       if (option) {
         //
@@ -611,21 +509,23 @@ public class JCommander {
         //
         ParameterDescription pd = getDescriptions().get(a);
         if (i == cursorPosition) {
-          if (pd != null) {
-            // nothing to complete
-            break;
-          } else {
+          if (pd == null) {
             // find all the options which start with the arg
-            for (ParameterDescription d : getDescriptions().values()) {
-              String[] names = d.getParameter().names();
-              for (String name : names) {
-                results.addCandidate(name);
-              }
+            if (m_optionNames == null) {
+              m_optionNames = new PrefixIndex(getDescriptions().keySet());
             }
+            results.addCandidates(m_optionNames.startingWith(results.getPrefix()));
           }
+          break;
         }
         if (pd != null) {
-          // TODO need to figure out arity here to detect values after a parameter
+          // Skip the values of the option, unless the cursor is on one of them
+          int arity = getArity(pd);
+          if (cursorPosition <= i + arity) {
+            results.complete(pd.getFieldDescription().getCompletionProvider());
+            break;
+          }
+          i += arity;
         }
       } else {
         //
@@ -643,27 +543,33 @@ public class JCommander {
               ad.tabComplete(args, cursorPosition, results);
               break;
             }
-          } else {
-            // TODO deal with main parameter
+          } else if (i == cursorPosition) {
             // lets pass any remaining arguments into the main parameter
+            if (m_mainParameterDescription != null) {
+              results.complete(m_mainParameterDescription.getCompletionProvider());
+            }
+            break;
           }
         } else {
           if (i == cursorPosition) {
             // Lets complete on all command names
-            results.addCandidates(m_commands.keySet());
+            if (m_commandNames == null) {
+              m_commandNames = new PrefixIndex(m_commands.keySet());
+            }
+            results.addCandidates(m_commandNames.startingWith(results.getPrefix()));
             break;
           }
           if (a != null) {
             //
             // Command parsing
             //
-            JCommander jc = m_commands.get(a);
+            JCommander jc = getCommand(a);
             if (jc == null) throw new ParameterException("Expected a command, got " + a);
 
             // Found a valid command, ask it to parse the remainder of the arguments.
             // Setting the boolean commandParsed to true will force the current
             // loop to end.
-            jc.tabComplete(subArray(args, i + 1), cursorPosition - 1, results);
+            jc.tabComplete(subArray(args, i + 1), cursorPosition - i - 1, results);
             break;
           }
         }
@@ -672,6 +578,15 @@ public class JCommander {
     }
   }
 
+  /**
+   * @return the number of values following the option, as consumed by parse().
+   */
+  private static int getArity(ParameterDescription pd) {
+    int arity = pd.getParameter().arity();
+    if (arity != -1) return arity;
+    return ParseCore.isSwitch(pd.getFieldDescription()) ? 0 : 1;
+  }
+
   protected ArgumentDescription getArgument(int argIndex) {
     ArgumentDescription ad = getArguments().get(argIndex);
     if (ad == null) {
@@ -688,34 +603,23 @@ public class JCommander {
     return result;
   }
 
-  private static boolean isStringEmpty(String s) {
-    return s == null || "".equals(s);
-  }
-
   /**
    * @return the field that's meant to receive all the parameters that are not options.
    * 
    * @param arg the arg that we're about to add (only passed here to ouput a meaningful
    * error message).
    */
-  private List<?> getMainParameter(String arg) {
-    if (m_mainParameterField == null) {
+  private Collection<Object> getMainParameter(String arg) {
+    if (m_mainParameterDescription == null) {
       throw new ParameterException(
           "Was passed main parameter '" + arg + "' but no main parameter was defined");
     }
 
-    try {
-      @SuppressWarnings("unchecked")
-      List<?> result = (List<?>) m_mainParameterField.get(m_mainParameterObject);
-      if (result == null) {
-        result = Lists.newArrayList();
-        m_mainParameterField.set(m_mainParameterObject, result);
-      }
-      return result;
-    }
-    catch(IllegalAccessException ex) {
-      throw new ParameterException("Couldn't access main parameter: " + ex.getMessage());
+    if (m_mainParameterValues == null) {
+      m_mainParameterValues = m_mainParameterDescription.getOrCreateCollection(
+          m_mainParameterObject);
     }
+    return m_mainParameterValues;
   }
 
   public String getMainParameterDescription() {
@@ -724,6 +628,14 @@ public class JCommander {
         : null;
   }
 
+  /**
+   * @return the field receiving the main parameter, or null if there is none.
+   */
+  FieldDescription getMainParameterFieldDescription() {
+    getDescriptions(); // force lazy create
+    return m_mainParameterDescription;
+  }
+
   private int longestName(Collection<?> objects) {
     int result = 0;
     for (Object o : objects) {
@@ -739,6 +651,7 @@ public class JCommander {
    */
   public void setProgramName(String name) {
     m_programName = name;
+    m_usage = null;
   }
 
   /**
@@ -754,8 +667,10 @@ public class JCommander {
    * Store the help for the command in the passed string builder.
    */
   public void usage(String commandName, StringBuilder out) {
-    JCommander jc = m_commands.get(commandName);
-    String description = jc.getCommandDescription();
+    CommandEntry command = m_commands.get(commandName);
+    JCommander jc = command.getJCommander();
+    String description = command.m_description != null ? command.m_description
+        : jc.getCommandDescription();
     if (description != null) {
       out.append(description);
       out.append("\n");
@@ -767,30 +682,61 @@ public class JCommander {
    * Display a the help on System.out.
    */
   public void usage() {
-    StringBuilder sb = new StringBuilder();
-    usage(sb);
-    System.out.println(sb.toString());
+    System.out.print(getUsage());
+    if (hasUsageReporters()) {
+      StringBuilder sb = new StringBuilder();
+      appendUsageReporters(sb);
+      System.out.print(sb);
+    }
+    System.out.println();
   }
 
   /**
    * Store the help in the passed string builder.
    */
   public void usage(StringBuilder out) {
-    if (getDescriptions() == null) {
-      m_descriptions = Maps.newHashMap();
+    out.append(getUsage());
+    appendUsageReporters(out);
+  }
 
-      // Create the ParameterDescriptions for all the @Parameter found.
-      for (Object object : m_objects) {
-        addDescription(object);
-      }
+  /**
+   * Write the help to the passed Appendable, e.g. a Writer, without building a
+   * copy of it first.
+   */
+  public void usage(Appendable out) throws IOException {
+    out.append(getUsage());
+    if (hasUsageReporters()) {
+      StringBuilder sb = new StringBuilder();
+      appendUsageReporters(sb);
+      out.append(sb);
+    }
+  }
+
+  /**
+   * @return the help, rendered the first time it's needed and then reused until the
+   * options, the commands or the program name change. The output of the UsageReporters
+   * is not part of it since it can change from one call to the next.
+   */
+  private String getUsage() {
+    getDescriptions(); // force lazy create
+    String result = m_usage;
+    if (result == null) {
+      StringBuilder sb = new StringBuilder();
+      renderUsage(sb);
+      result = sb.toString();
+      m_usage = result;
     }
+    return result;
+  }
+
+  private void renderUsage(StringBuilder out) {
     boolean hasCommands = ! m_commands.isEmpty();
 
     //
     // First line of the usage
     //
     String programName = m_programName != null ? m_programName : "<main class>";
-    out.append("Usage: " + programName + " [options]");
+    out.append("Usage: ").append(programName).append(" [options]");
     if (hasCommands) out.append(" [command] [command options]");
     List<ArgumentDescription> adList = getArgumentList();
     int longestArg = 0;
@@ -799,32 +745,34 @@ public class JCommander {
       if (name.length() > longestArg) {
         longestArg = name.length();
       }
-      out.append(" " + ad.getName());
+      out.append(" ").append(name);
     }
     longestArg += 2; // use 2 space at least
     if (m_mainParameterAnnotation != null) {
-      out.append(" " + m_mainParameterAnnotation.description());
+      out.append(" ").append(m_mainParameterAnnotation.description());
     }
     for (ArgumentDescription ad : adList) {
       String name = ad.getName();
-      int spaceCount = longestArg - name.length();
-      out.append("\n    " + name + s(spaceCount) + ad.getDescription());
+      out.append("\n    ").append(name);
+      spaces(out, longestArg - name.length());
+      out.append(ad.getDescription());
     }
     if (!adList.isEmpty()) {
       out.append("\n");
     }
     out.append("\n  Options:\n");
 
-    // 
+    //
     // Align the descriptions at the "longestName" column
     //
     int longestName = 0;
-    List<ParameterDescription> sorted = Lists.newArrayList();
+    List<UsageOption> sorted = Lists.newArrayList();
     for (ParameterDescription pd : m_fields.values()) {
       if (! pd.getParameter().hidden()) {
-        sorted.add(pd);
+        UsageOption option = new UsageOption(pd);
+        sorted.add(option);
         // + to have an extra space between the name and the description
-        int length = pd.getNames().length() + 2;
+        int length = option.m_names.length() + 2;
         if (length > longestName) {
           longestName = length;
         }
@@ -834,23 +782,19 @@ public class JCommander {
     //
     // Sort the options
     //
-    Collections.sort(sorted, new Comparator<ParameterDescription>() {
-      public int compare(ParameterDescription arg0, ParameterDescription arg1) {
-        return arg0.getNames().toLowerCase().compareTo(arg1.getNames().toLowerCase());
-      }
-    });
+    Collections.sort(sorted);
 
     //
     // Display all the names and descriptions
     //
-    for (ParameterDescription pd : sorted) {
-      int l = pd.getNames().length();
-      int spaceCount = longestName - l;
-      out.append("  "
-          + (pd.getParameter().required() ? "* " : "  ")
-          + pd.getNames() + s(spaceCount) + pd.getDescription());
+    for (UsageOption option : sorted) {
+      ParameterDescription pd = option.m_description;
+      out.append("  ").append(pd.getParameter().required() ? "* " : "  ")
+          .append(option.m_names);
+      spaces(out, longestName - option.m_names.length());
+      out.append(pd.getDescription());
       Object def = pd.getDefault();
-      if (def != null) out.append(" (default: " + def + ")");
+      if (def != null) out.append(" (default: ").append(def).append(")");
       out.append("\n");
     }
 
@@ -860,34 +804,58 @@ public class JCommander {
     if (hasCommands) {
       out.append("  Commands:\n");
       int ln = longestName(m_commands.keySet()) + 3;
-      for (Map.Entry<String, JCommander> commands : m_commands.entrySet()) {
+      for (Map.Entry<String, CommandEntry> commands : m_commands.entrySet()) {
         String name = commands.getKey();
-        int spaceCount  = ln - name.length();
-        JCommander jc = commands.getValue();
-        String description = jc.getCommandDescription();
-        if (description == null) {
-          description = jc.getMainParameterDescription();
-        }
-        out.append("    " + name + s(spaceCount) + description + "\n");
+        out.append("    ").append(name);
+        spaces(out, ln - name.length());
+        out.append(commands.getValue().getDescription()).append("\n");
       }
     }
+  }
 
-    //
-    // If a UsageReporter is being used, include it's usage as well.
-    //
+  private boolean hasUsageReporters() {
+    for (Object o : m_objects) {
+      if (o instanceof UsageReporter) return true;
+    }
+    return false;
+  }
+
+  /**
+   * If a UsageReporter is being used, include it's usage as well.
+   */
+  private void appendUsageReporters(StringBuilder out) {
     for(Object o:m_objects) {
       if( o instanceof UsageReporter) {
         ((UsageReporter) o).usage(out);
       }
     }
+  }
+
+  /**
+   * An option displayed by usage(), with its sort key computed once.
+   */
+  private static class UsageOption implements Comparable<UsageOption> {
+    private final ParameterDescription m_description;
+    private final String m_names;
+    private final String m_sortKey;
+
+    UsageOption(ParameterDescription description) {
+      m_description = description;
+      m_names = description.getNames();
+      m_sortKey = m_names.toLowerCase();
+    }
 
+    public int compareTo(UsageOption other) {
+      return m_sortKey.compareTo(other.m_sortKey);
+    }
   }
 
   public String getCommandDescription() {
     for (Object object : m_objects) {
-      Command command = object.getClass().getAnnotation(Command.class);
-      if (command != null) {
-        return command.description();
+      String description =
+          ClassDescription.getClassDescription(object.getClass()).getCommandDescription();
+      if (description != null) {
+        return description;
       }
     }
     return null;
@@ -899,13 +867,57 @@ public class JCommander {
    * format (e.g. HTML).
    */
   public List<ParameterDescription> getParameters() {
+    getDescriptions(); // force lazy create
     return new ArrayList<ParameterDescription>(m_fields.values());
   }
 
+  /**
+   * @return true if the debug messages are printed. The callers check it before
+   * building their message, so that parsing doesn't allocate them otherwise.
+   */
+  static boolean isDebug() {
+    return System.getProperty(DEBUG_PROPERTY) != null;
+  }
+
   private void p(String string) {
-    if (System.getProperty(JCommander.DEBUG_PROPERTY) != null) {
-      System.out.println("[JCommander] " + string);
-    }
+    System.out.println("[JCommander] " + string);
+  }
+
+  /**
+   * Set the charset used to read the @files found on the command line. The default
+   * is the platform charset.
+   */
+  public void setAtFileCharset(Charset charset) {
+    m_atFileCharset = charset;
+  }
+
+  /**
+   * By default, each line of an @file is one parameter, kept as is. If shellSyntax
+   * is true, the lines are split into parameters the way a Unix shell would, see
+   * {@link CommandLineLexer}: quotes group words, a backslash escapes the next
+   * character and # starts a comment.
+   */
+  public void setAtFileShellSyntax(boolean shellSyntax) {
+    m_atFileShellSyntax = shellSyntax;
+  }
+
+  /**
+   * By default, a parameter starting with @ is replaced with the content of the file
+   * it names ("@-" reads the standard input). If expandAtSign is false, it's kept as
+   * it is, which is what a program parsing untrusted command lines wants.
+   */
+  public void setExpandAtSign(boolean expandAtSign) {
+    m_expandAtSign = expandAtSign;
+  }
+
+  /**
+   * By default, the value of a password option is asked for on the console. If
+   * passwordPrompt is false, a password option on the command line, of this object or
+   * of its commands, makes the parsing fail with a ParameterException instead, which
+   * is what a program parsing command lines it didn't receive from its user wants.
+   */
+  public void setPasswordPrompt(boolean passwordPrompt) {
+    m_passwordPrompt = passwordPrompt;
   }
 
   /**
@@ -915,21 +927,43 @@ public class JCommander {
     m_defaultProvider = defaultProvider;
   }
 
+  /**
+   * Add a factory used to find the converters of the types that don't specify one
+   * in their annotation. The factory is also used by the commands of this object.
+   */
   public void addConverterFactory(IStringConverterFactory converterFactory) {
-    CONVERTER_FACTORIES.add(converterFactory);
+    m_converterRegistry.addConverterFactory(converterFactory);
   }
 
   public <T> Class<? extends IStringConverter<T>> findConverter(Class<T> cls) {
-    for (IStringConverterFactory f : CONVERTER_FACTORIES) {
-      Class<? extends IStringConverter<T>> result = f.getConverter(cls);
-      if (result != null) return result;
-    }
+    return m_converterRegistry.findConverter(cls);
+  }
 
-    return null;
+  /**
+   * @return the converter factories of this JCommander, which NativeImageConfigGenerator
+   * asks for the converters to list, like parse() does.
+   */
+  ConverterRegistry getConverterRegistry() {
+    return m_converterRegistry;
+  }
+
+  /**
+   * @return the converter classes instantiated so far by this JCommander. Only used by
+   * NativeImageConfigGeneratorTest, to check that the generated configuration lists the
+   * converters that parsing actually created.
+   */
+  Set<Class<?>> getConverterClasses() {
+    return m_converterConstructors.keySet();
   }
 
   public Object convertValue(ParameterDescription pd, String value) {
-    return convertValue(pd.getField(), pd.getField().getType(), value);
+    FieldDescription fd = pd.getFieldDescription();
+    return convertValue(fd.getName(), pd.getParameter(), null, fd.getType(), value);
+  }
+
+  public Object convertValue(ArgumentDescription ad, String value) {
+    FieldDescription fd = ad.getFieldDescription();
+    return convertValue(fd.getName(), null, ad.getArgument(), fd.getType(), value);
   }
 
   /**
@@ -937,97 +971,208 @@ public class JCommander {
    * @param value The value to convert
    */
   public Object convertValue(Field field, Class type, String value) {
+    return convertValue(field.getName(), field.getAnnotation(Parameter.class),
+        field.getAnnotation(Argument.class), type, value);
+  }
+
+  /**
+   * @param annotation The @Parameter annotation of the field, if any
+   * @param argAnn The @Argument annotation of the field, used if there is no @Parameter
+   * @param type The class of the field
+   * @param value The value to convert
+   */
+  private Object convertValue(String fieldName, Parameter annotation, Argument argAnn,
+      Class<?> type, String value) {
     Class<? extends IStringConverter<?>> converterClass;
     String optionName;
-    Parameter annotation = field.getAnnotation(Parameter.class);
     if (annotation != null) {
       converterClass = annotation.converter();
       String[] names = annotation.names();
       optionName = names.length > 0 ? names[0] : "[Main class]";
     }
     else {
-      Argument argAnn = field.getAnnotation(Argument.class);
       converterClass = argAnn.converter();
-      optionName = field.getName();
+      optionName = fieldName;
     }
 
-    //
-    // Try to find a converter on the annotation
-    //
-    if (converterClass == null || converterClass == NoConverter.class) {
-      converterClass = findConverter(type);
-    }
-    if (converterClass == null) {
-      converterClass = StringConverter.class;
-    }
-    if (converterClass == null && Collection.class.isAssignableFrom(type)) {
-      converterClass = StringConverter.class;
-    }
+    converterClass = ParseCore.findConverterClass(converterClass, type, m_converterRegistry);
+    return ParseCore.convert(getConverter(optionName, converterClass), optionName, value);
+  }
 
-    //
-//    //
-//    // Try to find a converter in the factory
-//    //
-//    IStringConverter<?> converter = null;
-//    if (converterClass == null && m_converterFactories != null) {
-//      // Mmmh, javac requires a cast here
-//      converter = (IStringConverter) m_converterFactories.getConverter(type);
-//    }
-
-    if (converterClass == null) {
-      throw new ParameterException("Don't know how to convert " + value
-          + " to type " + type + " (field: " + field.getName() + ")");
+  /**
+   * @return the converter for this option, reusing the one created for a previous value
+   * unless converter caching was disabled.
+   */
+  private IStringConverter<?> getConverter(String optionName,
+      Class<? extends IStringConverter<?>> converterClass) {
+    if (! m_cacheConverters) {
+      return instantiateConverter(optionName, converterClass);
     }
 
-    IStringConverter<?> converter;
-    Object result = null;
-    try {
-      converter = instantiateConverter(optionName, converterClass);
-      result = converter.convert(value);
-    } catch (IllegalArgumentException e) {
-      e.printStackTrace();
-    } catch (InstantiationException e) {
-      e.printStackTrace();
-    } catch (IllegalAccessException e) {
-      e.printStackTrace();
-    } catch (InvocationTargetException e) {
-      e.printStackTrace();
+    Map<String, IStringConverter<?>> converters = m_converters.get(converterClass);
+    if (converters == null) {
+      converters = Maps.newHashMap();
+      m_converters.put(converterClass, converters);
+    }
+    IStringConverter<?> result = converters.get(optionName);
+    if (result == null) {
+      result = instantiateConverter(optionName, converterClass);
+      converters.put(optionName, result);
     }
-
     return result;
   }
 
   private IStringConverter<?> instantiateConverter(String optionName,
-      Class<? extends IStringConverter<?>> converterClass)
-      throws IllegalArgumentException, InstantiationException, IllegalAccessException,
-      InvocationTargetException {
-    Constructor<IStringConverter<?>> ctor = null;
-    Constructor<IStringConverter<?>> stringCtor = null;
-    Constructor<IStringConverter<?>>[] ctors
-        = (Constructor<IStringConverter<?>>[]) converterClass.getDeclaredConstructors();
-    for (Constructor<IStringConverter<?>> c : ctors) {
-      Class<?>[] types = c.getParameterTypes();
-      if (types.length == 1 && types[0].equals(String.class)) {
-        stringCtor = c;
-      } else if (types.length == 0) {
-        ctor = c;
-      }
+      Class<? extends IStringConverter<?>> converterClass) {
+    Constructor<IStringConverter<?>> ctor = m_converterConstructors.get(converterClass);
+    if (ctor == null) {
+      ctor = ParseCore.getConverterConstructor(converterClass);
+      m_converterConstructors.put(converterClass, ctor);
     }
+    return ParseCore.newConverter(ctor, optionName);
+  }
 
-    IStringConverter<?> result = stringCtor != null
-        ? stringCtor.newInstance(optionName)
-        : ctor.newInstance();
-
-        return result;
+  /**
+   * Converters are instantiated once per option and reused for all its values.
+   * Disable this if your converters keep some state between two conversions.
+   */
+  public void setCacheConverters(boolean cacheConverters) {
+    m_cacheConverters = cacheConverters;
   }
 
   /**
    * Add a command object.
    */
   public void addCommand(String name, Object object) {
+    m_commands.put(name, new CommandEntry(name, createCommand(name, object)));
+    m_commandNames = null;
+    m_usage = null;
+  }
+
+  /**
+   * Add a command whose object is only created by the factory when this command
+   * is parsed, or when the usage needs its description.
+   *
+   * @param description the description displayed by usage(), or null to use the
+   * one found on the command object.
+   */
+  public void addCommand(String name, ICommandFactory factory, String description) {
+    m_commands.put(name, new CommandEntry(name, factory, description));
+    m_commandNames = null;
+    m_usage = null;
+  }
+
+  /**
+   * Add a command whose class is only loaded and instantiated with its no-arg
+   * constructor when this command is parsed, or when the usage needs its description.
+   *
+   * @param description the description displayed by usage(), or null to use the
+   * one found on the command object.
+   */
+  public void addCommand(String name, final String className, String description) {
+    addCommand(name, new ICommandFactory() {
+      public Object createCommand() {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader == null) loader = JCommander.class.getClassLoader();
+        try {
+          return Class.forName(className, true, loader).getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+          throw new ParameterException("Couldn't find the command class " + className);
+        } catch (InvocationTargetException e) {
+          if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+          if (e.getCause() instanceof Error) throw (Error) e.getCause();
+          throw new ParameterException("Couldn't instantiate the command class " + className
+              + ": " + e.getCause());
+        } catch (NoSuchMethodException e) {
+          throw new ParameterException("The command class " + className
+              + " needs a no-arg constructor");
+        } catch (InstantiationException e) {
+          throw new ParameterException("Couldn't instantiate the command class " + className
+              + ": " + e.getMessage());
+        } catch (IllegalAccessException e) {
+          throw new ParameterException("Couldn't instantiate the command class " + className
+              + ": " + e.getMessage());
+        }
+      }
+    }, description);
+  }
+
+  /**
+   * @return the JCommander parsing the given command, creating it if the command was
+   * added lazily, or null if there is no such command.
+   */
+  public JCommander getCommand(String name) {
+    CommandEntry command = m_commands.get(name);
+    return command != null ? command.getJCommander() : null;
+  }
+
+  /**
+   * @return the names of the commands, in alphabetical order.
+   */
+  public Set<String> getCommandNames() {
+    return Collections.unmodifiableSet(new TreeSet<String>(m_commands.keySet()));
+  }
+
+  /**
+   * @return the description of the command displayed by usage(), or null.
+   */
+  String getCommandDescription(String name) {
+    CommandEntry command = m_commands.get(name);
+    return command != null ? command.getDescription() : null;
+  }
+
+  private JCommander createCommand(String name, Object object) {
     JCommander jc = new JCommander(object);
     jc.setProgramName(name);
-    m_commands.put(name, jc);
+    jc.m_converterRegistry = m_converterRegistry;
+    return jc;
+  }
+
+  /**
+   * A command added with one of the addCommand() methods. Its JCommander is
+   * created the first time it's needed if the command was added lazily.
+   */
+  private class CommandEntry {
+    private final String m_name;
+    private final ICommandFactory m_factory;
+    private final String m_description;
+    private JCommander m_jCommander;
+
+    CommandEntry(String name, JCommander jCommander) {
+      m_name = name;
+      m_factory = null;
+      m_description = null;
+      m_jCommander = jCommander;
+    }
+
+    CommandEntry(String name, ICommandFactory factory, String description) {
+      m_name = name;
+      m_factory = factory;
+      m_description = description;
+    }
+
+    JCommander getJCommander() {
+      if (m_jCommander == null) {
+        Object object = m_factory.createCommand();
+        if (object == null) {
+          throw new ParameterException("The factory of the command " + m_name
+              + " returned null");
+        }
+        m_jCommander = createCommand(m_name, object);
+      }
+      return m_jCommander;
+    }
+
+    /**
+     * @return the description displayed by usage() in the list of commands.
+     */
+    String getDescription() {
+      if (m_description != null) return m_description;
+
+      JCommander jc = getJCommander();
+      String result = jc.getCommandDescription();
+      return result != null ? result : jc.getMainParameterDescription();
+    }
   }
 
   public String getParsedCommand() {
@@ -1035,15 +1180,12 @@ public class JCommander {
   }
 
   /**
-   * @return n spaces
+   * Append n spaces.
    */
-  private String s(int count) {
-    StringBuilder result = new StringBuilder();
+  private static void spaces(StringBuilder out, int count) {
     for (int i = 0; i < count; i++) {
-      result.append(" ");
+      out.append(' ');
     }
-
-    return result.toString();
   }
 
   public List<Object> getObjects() {
@@ -1084,14 +1226,30 @@ public class JCommander {
    */
   protected Map<String, ParameterDescription> getDescriptions() {
     if (m_descriptions == null) {
-      m_descriptions = Maps.newHashMap();
-
-      // Create the ParameterDescriptions for all the @Parameter found.
-      for (Object object : m_objects) {
-        addDescription(object);
-      }
+      createDescriptions();
     }
     return m_descriptions;
   }
+
+  /**
+   * Create the ParameterDescriptions for all the @Parameter found.
+   */
+  private void createDescriptions() {
+    m_descriptions = Maps.newHashMap();
+    m_optionIndex = new OptionIndex<ParameterDescription>();
+    m_fields = Maps.newHashMap();
+    m_requiredFields = Maps.newHashMap();
+    m_arguments = null;
+    m_argumentList = null;
+    m_mainParameterDescription = null;
+    m_mainParameterObject = null;
+    m_mainParameterAnnotation = null;
+    m_mainParameterValues = null;
+    m_parsedCommand = null;
+    m_usage = null;
+    for (Object object : m_objects) {
+      addDescription(object);
+    }
+  }
 }
 
@@ -0,0 +1,632 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import com.beust.jcommander.internal.ClassDescription;
+import com.beust.jcommander.internal.ConverterRegistry;
+import com.beust.jcommander.internal.FieldDescription;
+import com.beust.jcommander.internal.Lists;
+import com.beust.jcommander.internal.Maps;
+import com.beust.jcommander.internal.OptionIndex;
+import com.beust.jcommander.internal.ResourceBundles;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable parser for the command lines of one annotated class, and optionally
+ * of its commands.
+ *
+ * Unlike {@link JCommander}, which is bound to the objects it was created with and
+ * keeps the state of the last parsing, a JCommanderParser is built once and only
+ * keeps the description of the class: each call of {@link #parse(Object, String...)}
+ * assigns the values to the object it receives and keeps its state in a small context
+ * that is thrown away when it returns. A parser can therefore be shared by threads
+ * that parse at the same time, as long as each of them passes its own object.
+ *
+ * The syntax is the same as the one accepted by JCommander, both being parsed by the
+ * same code. The default provider and the @file settings are set with the with...()
+ * methods, which return a new parser. usage() is only supported by JCommander.
+ *
+ * @author cbeust
+ */
+public class JCommanderParser<T> {
+  /**
+   * The number of command lines parsed by each task of parseAll().
+   */
+  static final int BATCH_SIZE = 256;
+
+  /**
+   * The maximum number of batches of parseAll() submitted to the executor and not
+   * handled yet. Reading the command lines stops when it's reached, so the memory
+   * used doesn't depend on the number of command lines.
+   */
+  static final int MAX_PENDING_BATCHES =
+      Math.max(2, 2 * Runtime.getRuntime().availableProcessors());
+
+  private final Class<T> m_type;
+
+  private final ClassDescription m_classDescription;
+
+  /**
+   * All the options, arguments and the main parameter, Binding.m_index being their
+   * position in this array.
+   */
+  private final Binding[] m_bindings;
+
+  /**
+   * The options, per name.
+   */
+  private final Map<String, Binding> m_options;
+
+  /**
+   * The same options, indexed to find which one a token starts with.
+   */
+  private final OptionIndex<Binding> m_optionIndex;
+
+  private final Binding[] m_requiredOptions;
+
+  /**
+   * The arguments, ordered by their @Argument index.
+   */
+  private final Binding[] m_arguments;
+
+  private final Binding m_mainParameter;
+
+  private final Map<String, JCommanderParser<?>> m_commands;
+
+  /**
+   * The options, each of them once.
+   */
+  private final List<Binding> m_optionList;
+
+  private final IDefaultProvider m_defaultProvider;
+
+  private final Charset m_atFileCharset;
+
+  private final boolean m_atFileShellSyntax;
+
+  private final ArgumentTokenizer.Options m_tokenizerOptions = new ArgumentTokenizer.Options() {
+    public ClassDescription findOptionClassDescription(String arg) {
+      if (arg.length() == 0 || m_optionIndex.findLongestPrefixOf(arg) == null) return null;
+      return m_classDescription.getOptionPrefixes().indexOf(arg.charAt(0)) >= 0
+          ? m_classDescription : null;
+    }
+  };
+
+  public JCommanderParser(Class<T> type) {
+    this(type, null, null);
+  }
+
+  /**
+   * @param commands the parsers of the commands, per command name, or null. The objects
+   * of the commands are created with their no-arg constructor each time they are parsed.
+   * @param converterFactories the factories used to find the converters of the types
+   * that don't specify one, or null.
+   */
+  public JCommanderParser(Class<T> type, Map<String, JCommanderParser<?>> commands,
+      List<IStringConverterFactory> converterFactories) {
+    m_type = type;
+    m_classDescription = ClassDescription.getClassDescription(type);
+
+    ConverterRegistry registry = new ConverterRegistry();
+    if (converterFactories != null) {
+      for (IStringConverterFactory factory : converterFactories) {
+        registry.addConverterFactory(factory);
+      }
+    }
+
+    List<Binding> bindings = Lists.newArrayList();
+    List<Binding> optionList = Lists.newArrayList();
+    Map<String, Binding> options = Maps.newHashMap();
+    m_optionIndex = new OptionIndex<Binding>();
+    List<Binding> requiredOptions = Lists.newArrayList();
+    Map<Integer, Binding> arguments = Maps.newHashMap();
+    Binding mainParameter = null;
+
+    for (FieldDescription fd : m_classDescription.getFields()) {
+      Parameter p = fd.getParameter();
+      if (p != null) {
+        if (fd.isMainParameter()) {
+          if (mainParameter != null) {
+            throw new ParameterException("Only one @Parameter with no names attribute is"
+                + " allowed, found:" + mainParameter.m_field + " and " + fd);
+          }
+          Class<?> elementType = fd.getElementType();
+          mainParameter = new Binding(bindings.size(), fd, "[Main class]",
+              elementType != null ? findConverterConstructor(p.converter(), elementType, registry)
+                  : null);
+          bindings.add(mainParameter);
+        } else {
+          Binding b = new Binding(bindings.size(), fd, p.names()[0],
+              findConverterConstructor(p.converter(), fd.getType(), registry));
+          bindings.add(b);
+          optionList.add(b);
+          for (String name : p.names()) {
+            if (options.containsKey(name)) {
+              throw new ParameterException("Found the option " + name + " multiple times");
+            }
+            options.put(name, b);
+            m_optionIndex.put(name, b);
+          }
+          if (p.required()) requiredOptions.add(b);
+        }
+      }
+      Argument a = fd.getArgument();
+      if (a != null) {
+        if (arguments.containsKey(a.index())) {
+          throw new ParameterException("Found the argument at index " + a.index()
+              + " multiple times");
+        }
+        Binding b = new Binding(bindings.size(), fd, fd.getName(),
+            findConverterConstructor(a.converter(), fd.getType(), registry));
+        bindings.add(b);
+        arguments.put(a.index(), b);
+      }
+    }
+
+    m_arguments = new Binding[arguments.size()];
+    for (int i = 0; i < m_arguments.length; i++) {
+      Binding b = arguments.get(i);
+      if (b == null) {
+        throw new ParameterException("Missing @Argument annotation for index " + i);
+      }
+      if (i > 0 && ! m_arguments[i - 1].isRequiredArgument() && b.isRequiredArgument()) {
+        throw new ParameterException("Argument " + b.getArgumentName() + " at index " + i
+            + " is required when argument " + m_arguments[i - 1].getArgumentName()
+            + " before it is optional");
+      }
+      m_arguments[i] = b;
+    }
+
+    m_bindings = bindings.toArray(new Binding[bindings.size()]);
+    m_options = Collections.unmodifiableMap(options);
+    m_requiredOptions = requiredOptions.toArray(new Binding[requiredOptions.size()]);
+    m_mainParameter = mainParameter;
+    m_optionList = Collections.unmodifiableList(optionList);
+
+    Map<String, JCommanderParser<?>> commandMap = Maps.newHashMap();
+    if (commands != null) commandMap.putAll(commands);
+    m_commands = Collections.unmodifiableMap(commandMap);
+
+    m_defaultProvider = null;
+    m_atFileCharset = Charset.defaultCharset();
+    m_atFileShellSyntax = false;
+  }
+
+  /**
+   * A copy of the parser with other settings.
+   */
+  private JCommanderParser(JCommanderParser<T> parser, IDefaultProvider defaultProvider,
+      Charset atFileCharset, boolean atFileShellSyntax) {
+    m_type = parser.m_type;
+    m_classDescription = parser.m_classDescription;
+    m_bindings = parser.m_bindings;
+    m_options = parser.m_options;
+    m_optionIndex = parser.m_optionIndex;
+    m_requiredOptions = parser.m_requiredOptions;
+    m_arguments = parser.m_arguments;
+    m_mainParameter = parser.m_mainParameter;
+    m_commands = parser.m_commands;
+    m_optionList = parser.m_optionList;
+    m_defaultProvider = defaultProvider;
+    m_atFileCharset = atFileCharset;
+    m_atFileShellSyntax = atFileShellSyntax;
+  }
+
+  private static Constructor<IStringConverter<?>> findConverterConstructor(
+      Class<? extends IStringConverter<?>> converterClass, Class<?> type,
+      ConverterRegistry registry) {
+    return ParseCore.getConverterConstructor(
+        ParseCore.findConverterClass(converterClass, type, registry));
+  }
+
+  /**
+   * @return a parser that assigns the values returned by the default provider before
+   * parsing each command line, see {@link JCommander#setDefaultProvider(IDefaultProvider)}.
+   */
+  public JCommanderParser<T> withDefaultProvider(IDefaultProvider defaultProvider) {
+    return new JCommanderParser<T>(this, defaultProvider, m_atFileCharset, m_atFileShellSyntax);
+  }
+
+  /**
+   * @return a parser that reads the @files with this charset, see
+   * {@link JCommander#setAtFileCharset(Charset)}.
+   */
+  public JCommanderParser<T> withAtFileCharset(Charset charset) {
+    return new JCommanderParser<T>(this, m_defaultProvider, charset, m_atFileShellSyntax);
+  }
+
+  /**
+   * @return a parser that splits the lines of the @files like a shell does, see
+   * {@link JCommander#setAtFileShellSyntax(boolean)}.
+   */
+  public JCommanderParser<T> withAtFileShellSyntax(boolean shellSyntax) {
+    return new JCommanderParser<T>(this, m_defaultProvider, m_atFileCharset, shellSyntax);
+  }
+
+  public Class<T> getType() {
+    return m_type;
+  }
+
+  /**
+   * Parse the command line and assign the values found to the given object.
+   *
+   * @return what was found on the command line, including the command and its object.
+   */
+  public ParseResult parse(T object, String... args) {
+    ArgumentTokenizer tokens = new ArgumentTokenizer(args, m_atFileCharset, m_atFileShellSyntax,
+        true /* expand @files */);
+    try {
+      return parse(object, tokens);
+    } finally {
+      tokens.close();
+    }
+  }
+
+  /**
+   * Parse all the command lines in parallel on an executor shared by all the parsers,
+   * which has as many threads as there are processors. It's created the first time it's
+   * needed and is never shut down: its threads are daemon threads, which don't keep the
+   * JVM running. Use {@link #parseAll(Iterable, IObjectFactory, ExecutorService)} to
+   * control the threads.
+   *
+   * @see #parseAll(Iterable, IObjectFactory, ExecutorService)
+   */
+  public List<BatchParseResult<T>> parseAll(Iterable<String[]> commandLines,
+      IObjectFactory<T> factory) throws InterruptedException {
+    return parseAll(commandLines, factory, SharedExecutor.INSTANCE);
+  }
+
+  /**
+   * Parse all the command lines in parallel on the given executor, each of them into
+   * a new object created by the factory. The command lines are read from the iterable
+   * while the first ones are already being parsed.
+   *
+   * The executor is not shut down, this is left to the caller.
+   *
+   * @return one result per command line, in the same order as the command lines. The
+   * exceptions thrown while creating an object or parsing a command line are reported
+   * in the result of that command line instead of being thrown.
+   *
+   * @see #parseAll(Iterable, IObjectFactory, ExecutorService, IBatchResultHandler)
+   */
+  public List<BatchParseResult<T>> parseAll(Iterable<String[]> commandLines,
+      IObjectFactory<T> factory, ExecutorService executor) throws InterruptedException {
+    final List<BatchParseResult<T>> result = Lists.newArrayList();
+    parseAll(commandLines, factory, executor, new IBatchResultHandler<T>() {
+      public void onResult(BatchParseResult<T> r) {
+        result.add(r);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Like {@link #parseAll(Iterable, IObjectFactory, ExecutorService)}, but pass each
+   * result to the handler, in the same order as the command lines, instead of keeping
+   * them all. At most {@link #MAX_PENDING_BATCHES} batches of command lines are read
+   * ahead of the handler, so this can go through an iterable of any size.
+   */
+  public void parseAll(Iterable<String[]> commandLines, IObjectFactory<T> factory,
+      ExecutorService executor, IBatchResultHandler<T> handler) throws InterruptedException {
+    LinkedList<Future<List<BatchParseResult<T>>>> pending = Lists.newLinkedList();
+    try {
+      List<String[]> batch = Lists.newArrayList(BATCH_SIZE);
+      for (String[] args : commandLines) {
+        batch.add(args);
+        if (batch.size() == BATCH_SIZE) {
+          if (pending.size() == MAX_PENDING_BATCHES) {
+            handleBatchResult(pending.removeFirst(), handler);
+          }
+          pending.add(executor.submit(newBatchTask(batch, factory)));
+          batch = Lists.newArrayList(BATCH_SIZE);
+        }
+      }
+      if (! batch.isEmpty()) {
+        pending.add(executor.submit(newBatchTask(batch, factory)));
+      }
+      while (! pending.isEmpty()) {
+        handleBatchResult(pending.removeFirst(), handler);
+      }
+    } finally {
+      // Only does something if we're leaving because of an exception
+      for (Future<?> future : pending) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private Callable<List<BatchParseResult<T>>> newBatchTask(final List<String[]> batch,
+      final IObjectFactory<T> factory) {
+    return new Callable<List<BatchParseResult<T>>>() {
+      public List<BatchParseResult<T>> call() {
+        List<BatchParseResult<T>> result = Lists.newArrayList(batch.size());
+        for (String[] args : batch) {
+          T object = null;
+          try {
+            object = factory.createObject();
+            result.add(new BatchParseResult<T>(object, parse(object, args), null));
+          } catch (RuntimeException e) {
+            result.add(new BatchParseResult<T>(object, null, e));
+          }
+        }
+        return result;
+      }
+    };
+  }
+
+  private void handleBatchResult(Future<List<BatchParseResult<T>>> future,
+      IBatchResultHandler<T> handler) throws InterruptedException {
+    List<BatchParseResult<T>> results;
+    try {
+      results = future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new ParameterException(cause);
+    }
+    for (BatchParseResult<T> result : results) {
+      handler.onResult(result);
+    }
+  }
+
+  /**
+   * Parse the tokens, which might have been partly consumed by the parser of
+   * the parent command.
+   */
+  private ParseResult parse(Object object, ArgumentTokenizer tokens) {
+    tokens.setOptions(m_tokenizerOptions);
+    Context context = new Context(object);
+    if (m_defaultProvider != null) {
+      ParseCore.initializeDefaultValues(m_defaultProvider, m_optionList, context);
+    }
+    ParseCore.parse(tokens, context);
+    validate(context);
+
+    return new ParseResult(object, context.m_parsedCommand, context.m_commandResult);
+  }
+
+  /**
+   * Make sure that all the required options have received a value.
+   */
+  private void validate(Context context) {
+    StringBuilder missing = null;
+    for (Binding b : m_requiredOptions) {
+      if (! context.m_assigned[b.m_index]) {
+        if (missing == null) missing = new StringBuilder();
+        missing.append(b.m_field.getNames()).append(" ");
+      }
+    }
+    if (missing != null) {
+      throw new ParameterException("The following options are required: " + missing);
+    }
+  }
+
+  private void addValue(Context context, Binding b, String value, boolean isDefault) {
+    FieldDescription fd = b.m_field;
+    if (context.m_assigned[b.m_index] && b != m_mainParameter && ! fd.isMultiOption()) {
+      throw new ParameterException("Can only specify "
+          + (fd.getArgument() != null ? "argument " + b.getArgumentName() : "option " + b.m_name)
+          + " once.");
+    }
+    if (! isDefault) context.m_assigned[b.m_index] = true;
+
+    Object convertedValue = convert(context, b, value);
+    if (fd.isCollection()) {
+      Collection<Object> collection = context.m_collections[b.m_index];
+      if (collection == null) {
+        collection = fd.getOrCreateCollection(context.m_object);
+        context.m_collections[b.m_index] = collection;
+      }
+      if (convertedValue instanceof Collection) {
+        collection.addAll((Collection<?>) convertedValue);
+      } else {
+        collection.add(convertedValue);
+      }
+    } else {
+      fd.getAccessor().set(context.m_object, convertedValue);
+    }
+  }
+
+  private Object convert(Context context, Binding b, String value) {
+    if (b.m_converterConstructor == null) return value;
+
+    IStringConverter<?> converter = context.m_converters[b.m_index];
+    if (converter == null) {
+      converter = ParseCore.newConverter(b.m_converterConstructor, b.m_name);
+      context.m_converters[b.m_index] = converter;
+    }
+    return ParseCore.convert(converter, b.m_name, value);
+  }
+
+  private T newObject() {
+    try {
+      return m_type.getDeclaredConstructor().newInstance();
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      if (e.getCause() instanceof Error) throw (Error) e.getCause();
+      throw new ParameterException("Couldn't instantiate " + m_type.getName() + ": "
+          + e.getCause());
+    } catch (NoSuchMethodException e) {
+      throw new ParameterException("The class " + m_type.getName()
+          + " needs a no-arg constructor");
+    } catch (InstantiationException e) {
+      throw new ParameterException("Couldn't instantiate " + m_type.getName() + ": "
+          + e.getMessage());
+    } catch (IllegalAccessException e) {
+      throw new ParameterException("Couldn't instantiate " + m_type.getName() + ": "
+          + e.getMessage());
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "[JCommanderParser " + m_type.getName() + "]";
+  }
+
+  /**
+   * The executor of {@link #parseAll(Iterable, IObjectFactory)}, created when this class
+   * is first used.
+   */
+  private static class SharedExecutor {
+    static final ExecutorService INSTANCE = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+          private final AtomicInteger m_count = new AtomicInteger();
+
+          public Thread newThread(Runnable r) {
+            Thread result = new Thread(r, "jcommander-parser-" + m_count.incrementAndGet());
+            result.setDaemon(true);
+            return result;
+          }
+        });
+  }
+
+  /**
+   * An option, argument or main parameter of the class, with the converter of its values.
+   */
+  private static class Binding {
+    private final int m_index;
+    private final FieldDescription m_field;
+
+    /**
+     * The name passed to the converters.
+     */
+    private final String m_name;
+
+    /**
+     * Null if the values are assigned without being converted.
+     */
+    private final Constructor<IStringConverter<?>> m_converterConstructor;
+
+    Binding(int index, FieldDescription field, String name,
+        Constructor<IStringConverter<?>> converterConstructor) {
+      m_index = index;
+      m_field = field;
+      m_name = name;
+      m_converterConstructor = converterConstructor;
+    }
+
+    boolean isRequiredArgument() {
+      return m_field.getArgument().required();
+    }
+
+    String getArgumentName() {
+      String result = m_field.getArgument().name();
+      return result.length() > 0 ? result : m_field.getName();
+    }
+  }
+
+  /**
+   * The state of one parsing, which receives the values found by the parse loop.
+   */
+  private class Context implements ParseCore.Target<Binding> {
+    private final Object m_object;
+    private final boolean[] m_assigned;
+    private final Collection<Object>[] m_collections;
+    private final IStringConverter<?>[] m_converters;
+    private String m_parsedCommand;
+    private ParseResult m_commandResult;
+
+    @SuppressWarnings("unchecked")
+    Context(Object object) {
+      m_object = object;
+      m_assigned = new boolean[m_bindings.length];
+      m_collections = (Collection<Object>[]) new Collection<?>[m_bindings.length];
+      m_converters = new IStringConverter<?>[m_bindings.length];
+    }
+
+    public Binding findOption(String name) {
+      return m_options.get(name);
+    }
+
+    public String getOptionPrefixes(String arg) {
+      return m_optionIndex.findLongestPrefixOf(arg) != null
+          ? m_classDescription.getOptionPrefixes()
+          : Parameters.DEFAULT_OPTION_PREFIXES;
+    }
+
+    public FieldDescription getFieldDescription(Binding option) {
+      return option.m_field;
+    }
+
+    public String getDescription(Binding option) {
+      return ParameterDescription.getDescription(option.m_field.getParameter(),
+          ResourceBundles.findResourceBundle(m_object));
+    }
+
+    public boolean isPasswordPromptEnabled() {
+      return true;
+    }
+
+    public void addValue(Binding option, String value, boolean isDefault) {
+      JCommanderParser.this.addValue(this, option, value, isDefault);
+    }
+
+    public int getArgumentCount() {
+      return m_arguments.length;
+    }
+
+    public void addArgumentValue(int index, String value) {
+      JCommanderParser.this.addValue(this, m_arguments[index], value, false);
+    }
+
+    public boolean isArgumentRequired(int index) {
+      return m_arguments[index].isRequiredArgument();
+    }
+
+    public String getArgumentName(int index) {
+      return m_arguments[index].getArgumentName();
+    }
+
+    public boolean hasMainParameter() {
+      return m_mainParameter != null;
+    }
+
+    public void addMainParameterValue(String value) {
+      JCommanderParser.this.addValue(this, m_mainParameter, value, false);
+    }
+
+    public boolean hasCommands() {
+      return ! m_commands.isEmpty();
+    }
+
+    public boolean parseCommand(String name, ArgumentTokenizer tokens) {
+      JCommanderParser<?> command = m_commands.get(name);
+      if (command == null) return false;
+      m_parsedCommand = name;
+      m_commandResult = command.parse(command.newObject(), tokens);
+      return true;
+    }
+  }
+}
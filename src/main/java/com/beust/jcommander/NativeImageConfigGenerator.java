@@ -0,0 +1,340 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import com.beust.jcommander.completers.NoCompletionProvider;
+import com.beust.jcommander.internal.ClassDescription;
+import com.beust.jcommander.internal.ClassDescriptionSnapshot;
+import com.beust.jcommander.internal.ConverterRegistry;
+import com.beust.jcommander.internal.FieldDescription;
+import com.beust.jcommander.internal.Lists;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Generates the reachability metadata that GraalVM native-image needs to compile a
+ * program using JCommander: the reflect-config.json and resource-config.json files.
+ * They describe what JCommander accesses with reflection, which native-image can't
+ * discover by itself:
+ * <ul>
+ * <li>the annotated classes and their super classes, whose declared fields are
+ * listed, and their no-arg constructor, used by {@link JCommanderParser} and by the
+ * commands added by class name</li>
+ * <li>the converters of the fields, found on the annotations or with the converter
+ * factories, whose constructors are listed</li>
+ * <li>the completion providers and the enums they complete</li>
+ * <li>the classes generated by the annotation processor</li>
+ * <li>the resource bundles named by @ResourceBundle and @Parameters</li>
+ * <li>the snapshots written by {@link SnapshotGenerator}, if they are on the class
+ * path when this runs</li>
+ * </ul>
+ * Write them in a META-INF/native-image directory of the class path, where
+ * native-image finds them:
+ * <pre>
+ * java -cp target/classes:jcommander.jar com.beust.jcommander.NativeImageConfigGenerator \
+ *     -d target/classes/META-INF/native-image/com.example/app com.example.Args
+ * </pre>
+ *
+ * @author cbeust
+ */
+public class NativeImageConfigGenerator {
+  public static final String REFLECT_CONFIG = "reflect-config.json";
+  public static final String RESOURCE_CONFIG = "resource-config.json";
+
+  /**
+   * What is accessed with reflection on one class.
+   */
+  private static class ReflectedClass {
+    boolean allDeclaredFields;
+    final Set<String> fields = new TreeSet<String>();
+    boolean queryAllDeclaredConstructors;
+    /** The parameter types of the constructors, e.g. "" or "java.lang.String" */
+    final Set<String> constructors = new TreeSet<String>();
+    boolean enumConstants;
+  }
+
+  private final Map<String, ReflectedClass> m_classes = new TreeMap<String, ReflectedClass>();
+  private final Set<String> m_bundles = new TreeSet<String>();
+  private final Set<String> m_resources = new TreeSet<String>();
+
+  /**
+   * Add a class parsed with the default converters.
+   */
+  public void addClass(Class<?> cls) {
+    addClass(cls, new ConverterRegistry());
+  }
+
+  /**
+   * Add the classes of the objects of the JCommander and of its commands, with the
+   * converters of their converter factories.
+   */
+  public void addJCommander(JCommander jc) {
+    for (Object object : jc.getObjects()) {
+      addClass(object.getClass(), jc.getConverterRegistry());
+    }
+    for (String name : jc.getCommandNames()) {
+      addJCommander(jc.getCommand(name));
+    }
+  }
+
+  /**
+   * Add a resource, e.g. "com/beust/jcommander/shell/keybinding.properties" for the
+   * {@link com.beust.jcommander.shell.Shell}.
+   */
+  public void addResource(String name) {
+    m_resources.add(name);
+  }
+
+  private void addClass(Class<?> cls, ConverterRegistry registry) {
+    ClassDescription cd = ClassDescription.getClassDescription(cls);
+    getReflectedClass(cls).constructors.add("");
+    for (Class<?> c = cls; c != null && ! Object.class.equals(c); c = c.getSuperclass()) {
+      getReflectedClass(c).allDeclaredFields = true;
+    }
+
+    for (FieldDescription fd : cd.getFields()) {
+      getReflectedClass(fd.getDeclaringClass()).fields.add(fd.getName());
+
+      Parameter p = fd.getParameter();
+      Argument a = fd.getArgument();
+      Class<? extends IStringConverter<?>> converter = p != null ? p.converter() : a.converter();
+      Class<?> type = fd.isMainParameter() ? fd.getElementType() : fd.getType();
+      if (type != null) {
+        addConverter(converter, type, registry);
+      }
+
+      Class<? extends ICompletionProvider> provider =
+          p != null ? p.completionProvider() : a.completionProvider();
+      if (provider != NoCompletionProvider.class) {
+        getReflectedClass(provider).constructors.add("");
+      }
+      if (fd.getType().isEnum()) {
+        getReflectedClass(fd.getType()).enumConstants = true;
+      }
+      if (fd.getElementType() != null && fd.getElementType().isEnum()) {
+        getReflectedClass(fd.getElementType()).enumConstants = true;
+      }
+    }
+
+    if (cd.getResourceBundleName() != null) {
+      m_bundles.add(cd.getResourceBundleName());
+    }
+
+    String snapshot = ClassDescriptionSnapshot.getResourceName(cls);
+    ClassLoader loader = cls.getClassLoader();
+    if (loader != null && loader.getResource(snapshot) != null) {
+      m_resources.add(snapshot);
+    }
+
+    try {
+      Class<?> factory = Class.forName(cls.getName() + ClassDescription.GENERATED_SUFFIX, false,
+          cls.getClassLoader());
+      getReflectedClass(factory).constructors.add("");
+    } catch (ClassNotFoundException e) {
+      // The annotation processor didn't run on this class
+    }
+  }
+
+  /**
+   * Add the converter that {@link JCommander} and {@link JCommanderParser} pick for
+   * values of the given type.
+   */
+  private void addConverter(Class<? extends IStringConverter<?>> converterClass, Class<?> type,
+      ConverterRegistry registry) {
+    converterClass = ParseCore.findConverterClass(converterClass, type, registry);
+    ReflectedClass converter = getReflectedClass(converterClass);
+    converter.queryAllDeclaredConstructors = true;
+    Constructor<?> constructor = ParseCore.findConverterConstructor(converterClass);
+    if (constructor != null) {
+      converter.constructors.add(join(constructor.getParameterTypes()));
+    }
+  }
+
+  private ReflectedClass getReflectedClass(Class<?> cls) {
+    ReflectedClass result = m_classes.get(cls.getName());
+    if (result == null) {
+      result = new ReflectedClass();
+      m_classes.put(cls.getName(), result);
+    }
+    return result;
+  }
+
+  /**
+   * Write reflect-config.json and resource-config.json in the directory.
+   */
+  public void generate(File directory) throws IOException {
+    directory.mkdirs();
+    Writer writer = new OutputStreamWriter(
+        new FileOutputStream(new File(directory, REFLECT_CONFIG)), "UTF-8");
+    try {
+      generateReflectConfig(writer);
+    } finally {
+      writer.close();
+    }
+    writer = new OutputStreamWriter(
+        new FileOutputStream(new File(directory, RESOURCE_CONFIG)), "UTF-8");
+    try {
+      generateResourceConfig(writer);
+    } finally {
+      writer.close();
+    }
+  }
+
+  public void generateReflectConfig(Appendable out) throws IOException {
+    out.append("[\n");
+    for (Iterator<Map.Entry<String, ReflectedClass>> it = m_classes.entrySet().iterator();
+        it.hasNext();) {
+      Map.Entry<String, ReflectedClass> entry = it.next();
+      ReflectedClass c = entry.getValue();
+      List<String> members = Lists.newArrayList();
+      members.add("\"name\": " + quote(entry.getKey()));
+      if (c.allDeclaredFields) {
+        members.add("\"allDeclaredFields\": true");
+      }
+      if (! c.fields.isEmpty()) {
+        List<String> fields = Lists.newArrayList();
+        for (String field : c.fields) {
+          fields.add("{ \"name\": " + quote(field) + ", \"allowWrite\": true }");
+        }
+        members.add("\"fields\": " + array(fields));
+      }
+      if (c.queryAllDeclaredConstructors) {
+        members.add("\"queryAllDeclaredConstructors\": true");
+      }
+      List<String> methods = Lists.newArrayList();
+      for (String parameterTypes : c.constructors) {
+        methods.add(method("<init>", parameterTypes));
+      }
+      if (c.enumConstants) {
+        methods.add(method("values", ""));
+      }
+      if (! methods.isEmpty()) {
+        members.add("\"methods\": " + array(methods));
+      }
+
+      out.append("  {\n");
+      for (int i = 0; i < members.size(); i++) {
+        out.append("    ").append(members.get(i)).append(i < members.size() - 1 ? ",\n" : "\n");
+      }
+      out.append(it.hasNext() ? "  },\n" : "  }\n");
+    }
+    out.append("]\n");
+  }
+
+  public void generateResourceConfig(Appendable out) throws IOException {
+    List<String> resources = Lists.newArrayList();
+    for (String resource : m_resources) {
+      resources.add("{ \"pattern\": " + quote("\\Q" + resource + "\\E") + " }");
+    }
+    List<String> bundles = Lists.newArrayList();
+    for (String bundle : m_bundles) {
+      bundles.add("{ \"name\": " + quote(bundle) + " }");
+    }
+    out.append("{\n");
+    out.append("  \"resources\": { \"includes\": ").append(array(resources)).append(" },\n");
+    out.append("  \"bundles\": ").append(array(bundles)).append("\n");
+    out.append("}\n");
+  }
+
+  private static String method(String name, String parameterTypes) {
+    StringBuilder result = new StringBuilder("{ \"name\": ").append(quote(name))
+        .append(", \"parameterTypes\": [");
+    if (parameterTypes.length() > 0) {
+      String[] types = parameterTypes.split(",");
+      for (int i = 0; i < types.length; i++) {
+        if (i > 0) result.append(", ");
+        result.append(quote(types[i]));
+      }
+    }
+    return result.append("] }").toString();
+  }
+
+  private static String array(List<String> elements) {
+    StringBuilder result = new StringBuilder("[");
+    for (int i = 0; i < elements.size(); i++) {
+      result.append(i > 0 ? ", " : " ").append(elements.get(i));
+    }
+    return result.append(elements.isEmpty() ? "]" : " ]").toString();
+  }
+
+  private static String join(Class<?>[] types) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < types.length; i++) {
+      if (i > 0) result.append(",");
+      result.append(types[i].getName());
+    }
+    return result.toString();
+  }
+
+  private static String quote(String s) {
+    StringBuilder result = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        result.append('\\').append(c);
+      } else if (c < 0x20) {
+        result.append(String.format("\\u%04x", (int) c));
+      } else {
+        result.append(c);
+      }
+    }
+    return result.append('"').toString();
+  }
+
+  private static class Args {
+    @Parameter(names = "-d", description = "The directory to write the configuration files to",
+        required = true)
+    private File directory;
+
+    @Parameter(description = "<class>...")
+    private List<String> classNames = Lists.newArrayList();
+  }
+
+  public static void main(String[] argv) throws IOException, ClassNotFoundException {
+    Args args = new Args();
+    JCommander jc = new JCommander(args);
+    jc.setProgramName(NativeImageConfigGenerator.class.getName());
+    try {
+      jc.parse(argv);
+    } catch (ParameterException e) {
+      System.err.println(e.getMessage());
+      jc.usage();
+      System.exit(1);
+    }
+
+    NativeImageConfigGenerator generator = new NativeImageConfigGenerator();
+    for (String className : args.classNames) {
+      generator.addClass(Class.forName(className));
+    }
+    generator.generate(args.directory);
+    System.out.println("Wrote " + new File(args.directory, REFLECT_CONFIG) + " and "
+        + new File(args.directory, RESOURCE_CONFIG));
+  }
+}
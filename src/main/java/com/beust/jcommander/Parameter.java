@@ -20,6 +20,7 @@ package com.beust.jcommander;
 
 import static java.lang.annotation.ElementType.FIELD;
 
+import com.beust.jcommander.completers.NoCompletionProvider;
 import com.beust.jcommander.converters.NoConverter;
 
 import java.lang.annotation.Retention;
@@ -76,4 +77,10 @@ public @interface Parameter {
    * If true, this parameter won't appear in the usage().
    */
   boolean hidden() default false;
+
+  /**
+   * The provider of the values completed by the Shell after this option. The
+   * constants are completed by default if the field is an enum.
+   */
+  Class<? extends ICompletionProvider> completionProvider() default NoCompletionProvider.class;
 }
@@ -19,59 +19,59 @@
 package com.beust.jcommander;
 
 
-import com.beust.jcommander.internal.Lists;
+import com.beust.jcommander.internal.ClassDescription;
+import com.beust.jcommander.internal.FieldDescription;
 import com.beust.jcommander.internal.ResourceBundles;
 
 import java.lang.reflect.Field;
 import java.util.Collection;
-import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
-import java.util.Set;
 
 import static com.beust.jcommander.internal.Strings.isEmpty;
 
 public class ParameterDescription {
   private Object m_object;
   private Parameter m_parameterAnnotation;
-  private Field m_field;
+  private FieldDescription m_fieldDescription;
+  /** The collection receiving the values, if the field is a collection */
+  private Collection<Object> m_collection;
   /** Keep track of whether a value was added to flag an error */
   private boolean m_assigned = false;
   private ResourceBundle m_bundle;
   private String m_description;
   private JCommander m_jCommander;
   private Object m_default;
+  private ClassDescription m_classDescription;
 
   public ParameterDescription(Object object, Parameter annotation, Field field,
       ResourceBundle bundle, JCommander jc) {
-    init(object, annotation, field, bundle, jc);
+    this(object, new FieldDescription(field, annotation, null), bundle, jc);
+  }
+
+  ParameterDescription(Object object, FieldDescription fieldDescription, ResourceBundle bundle,
+      JCommander jc) {
+    init(object, fieldDescription, bundle, jc);
   }
 
 
-  private void init(Object object, Parameter annotation, Field field, ResourceBundle bundle,
+  private void init(Object object, FieldDescription fieldDescription, ResourceBundle bundle,
       JCommander jCommander) {
+    Parameter annotation = fieldDescription.getParameter();
     m_object = object;
+    m_classDescription = ClassDescription.getClassDescription(object.getClass());
     m_parameterAnnotation = annotation;
-    m_field = field;
+    m_fieldDescription = fieldDescription;
     m_bundle = bundle;
     if (m_bundle == null) {
       m_bundle = ResourceBundles.findResourceBundle(object);
     }
     m_jCommander = jCommander;
 
-    m_description = annotation.description();
-    if (! "".equals(annotation.descriptionKey())) {
-      if (m_bundle != null) {
-        m_description = m_bundle.getString(annotation.descriptionKey());
-      } else {
-//        System.out.println("Warning: field " + object.getClass() + "." + field.getName()
-//            + " has a descriptionKey but no bundle was defined with @ResourceBundle, using " +
-//            "default description:'" + m_description + "'");
-      }
-    }
+    m_description = getDescription(annotation, m_bundle);
 
     try {
-      m_default = m_field.get(m_object);
+      m_default = m_fieldDescription.getAccessor().get(m_object);
     } catch (Exception e) {
     }
   }
@@ -84,17 +84,37 @@ public class ParameterDescription {
     return m_description;
   }
 
+  /**
+   * @return the description of the annotation, looked up in the bundle if it has a
+   * descriptionKey.
+   */
+  static String getDescription(Parameter annotation, ResourceBundle bundle) {
+    String result = annotation.description();
+    if (! "".equals(annotation.descriptionKey())) {
+      if (bundle != null) {
+        result = bundle.getString(annotation.descriptionKey());
+      } else {
+//        System.out.println("Warning: field " + object.getClass() + "." + field.getName()
+//            + " has a descriptionKey but no bundle was defined with @ResourceBundle, using " +
+//            "default description:'" + m_description + "'");
+      }
+    }
+    return result;
+  }
+
   public Object getObject() {
     return m_object;
   }
 
+  /**
+   * @return the description of the class of the object this parameter belongs to.
+   */
+  ClassDescription getClassDescription() {
+    return m_classDescription;
+  }
+
   public String getNames() {
-    StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < m_parameterAnnotation.names().length; i++) {
-      if (i > 0) sb.append(", ");
-      sb.append(m_parameterAnnotation.names()[i]);
-    }
-    return sb.toString();
+    return m_fieldDescription.getNames();
   }
 
   public Parameter getParameter() {
@@ -102,12 +122,11 @@ public class ParameterDescription {
   }
 
   public Field getField() {
-    return m_field;
+    return m_fieldDescription.getField();
   }
 
-  private boolean isMultiOption() {
-    Class<?> fieldType = m_field.getType();
-    return fieldType.equals(List.class) || fieldType.equals(Set.class);
+  FieldDescription getFieldDescription() {
+    return m_fieldDescription;
   }
 
   public void addValue(String value) {
@@ -128,52 +147,38 @@ public class ParameterDescription {
    * @param markAdded if true, mark this parameter as assigned
    */
   public void addValue(String value, boolean isDefault) {
-    p("Adding " + (isDefault ? "default " : "") + "value:" + value
-        + " to parameter:" + m_field.getName());
-    if (m_assigned && ! isMultiOption()) {
+    if (JCommander.isDebug()) {
+      p("Adding " + (isDefault ? "default " : "") + "value:" + value
+          + " to parameter:" + m_fieldDescription.getName());
+    }
+    if (m_assigned && ! m_fieldDescription.isMultiOption()) {
       throw new ParameterException("Can only specify option " + m_parameterAnnotation.names()[0]
           + " once.");
     }
 
-    Class<?> type = m_field.getType();
-
     if (! isDefault) m_assigned = true;
     Object convertedValue = m_jCommander.convertValue(this, value);
-    boolean isCollection = Collection.class.isAssignableFrom(type);
-    boolean isMainParameter = m_parameterAnnotation.names().length == 0;
 
-    try {
-      if (isCollection) {
-        @SuppressWarnings("unchecked")
-        List<Object> l = (List<Object>) m_field.get(m_object);
-        if (l == null) {
-          l = Lists.newArrayList();
-          m_field.set(m_object, l);
-        }
-        if (convertedValue instanceof Collection) {
-          l.addAll((Collection) convertedValue);
-        } else { // if (isMainParameter || m_parameterAnnotation.arity() > 1) {
-          l.add(convertedValue);
-//        } else {
-//          l.
-        }
+    if (m_fieldDescription.isCollection()) {
+      if (m_collection == null) {
+        m_collection = m_fieldDescription.getOrCreateCollection(m_object);
+      }
+      if (convertedValue instanceof Collection) {
+        m_collection.addAll((Collection<?>) convertedValue);
       } else {
-        m_field.set(m_object, convertedValue);
+        m_collection.add(convertedValue);
       }
-    }
-    catch(IllegalAccessException ex) {
-      ex.printStackTrace();
+    } else {
+      m_fieldDescription.getAccessor().set(m_object, convertedValue);
     }
   }
 
   private void p(String string) {
-    if (System.getProperty(JCommander.DEBUG_PROPERTY) != null) {
-      System.out.println("[ParameterDescription] " + string);
-    }
+    System.out.println("[ParameterDescription] " + string);
   }
 
   @Override
   public String toString() {
-    return "[ParameterDescription " + m_field.getName() + "]";
+    return "[ParameterDescription " + m_fieldDescription.getName() + "]";
   }
 }
@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import com.beust.jcommander.converters.NoConverter;
+import com.beust.jcommander.converters.StringConverter;
+import com.beust.jcommander.internal.ConverterRegistry;
+import com.beust.jcommander.internal.FieldDescription;
+
+import java.io.Console;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * The parsing shared by {@link JCommander} and {@link JCommanderParser}: the loop
+ * that consumes the tokens and recognizes the options, their values, the arguments,
+ * the main parameter and the commands, the default values, and how the converters
+ * are found and created. Where the values end up is decided by a {@link Target}.
+ *
+ * @author cbeust
+ */
+final class ParseCore {
+  /**
+   * The options, arguments and commands of one parser, and what to do with the values
+   * found for them.
+   *
+   * @param <O> the type representing an option.
+   */
+  interface Target<O> {
+    /**
+     * @return the option with exactly this name, or null.
+     */
+    O findOption(String name);
+
+    /**
+     * @return the option prefixes of the class declaring the option this argument
+     * starts with, or the default prefixes if it doesn't start with an option name.
+     */
+    String getOptionPrefixes(String arg);
+
+    FieldDescription getFieldDescription(O option);
+
+    /**
+     * @return the description displayed when asking for the value of a password.
+     */
+    String getDescription(O option);
+
+    /**
+     * @return false if the value of a password option must not be asked for on the
+     * console, in which case the option is rejected.
+     */
+    boolean isPasswordPromptEnabled();
+
+    /**
+     * @param isDefault true if the value comes from the default provider, in which
+     * case the option isn't considered assigned.
+     */
+    void addValue(O option, String value, boolean isDefault);
+
+    int getArgumentCount();
+
+    void addArgumentValue(int index, String value);
+
+    boolean isArgumentRequired(int index);
+
+    String getArgumentName(int index);
+
+    boolean hasMainParameter();
+
+    void addMainParameterValue(String value);
+
+    boolean hasCommands();
+
+    /**
+     * Parse the remaining tokens with the command of that name.
+     *
+     * @return false if there is no such command.
+     */
+    boolean parseCommand(String name, ArgumentTokenizer tokens);
+  }
+
+  private ParseCore() {
+  }
+
+  /**
+   * Consume the tokens until there are none left or a command parsed the rest of them.
+   */
+  static <O> void parse(ArgumentTokenizer tokens, Target<O> target) {
+    int argIndex = 0;
+    while (tokens.hasNext()) {
+      String arg = tokens.next();
+      String a = JCommander.trim(arg);
+      if (JCommander.isDebug()) System.out.println("[JCommander] Parsing arg:" + a);
+
+      if (isOption(a, target)) {
+        O option = target.findOption(a);
+        if (option == null) {
+          throw new ParameterException("Unknown option: " + a);
+        }
+        FieldDescription fd = target.getFieldDescription(option);
+        Parameter p = fd.getParameter();
+        if (p.password()) {
+          if (! target.isPasswordPromptEnabled()) {
+            throw new ParameterException("Password option " + a + " isn't allowed");
+          }
+          Console console = System.console();
+          if (console == null) {
+            throw new ParameterException("No console is available to get parameter " + a);
+          }
+          System.out.print("Value for " + a + " (" + target.getDescription(option) + "):");
+          target.addValue(option, new String(console.readPassword()), false);
+        } else if (isSwitch(fd)) {
+          // Boolean, set to true as soon as we see it, unless it specified
+          // an arity of 1, in which case we need to read the next value
+          target.addValue(option, "true", false);
+        } else {
+          int n = p.arity() != -1 ? p.arity() : 1;
+          if ("--".equals(tokens.peek())) tokens.next();
+          for (int j = 1; j <= n; j++) {
+            if (! tokens.hasNext()) {
+              throw new ParameterException(n + " parameters expected after " + arg);
+            }
+            target.addValue(option, JCommander.trim(tokens.next()), false);
+          }
+        }
+      } else if (arg.length() > 0) {
+        if (target.hasCommands()) {
+          if (! target.parseCommand(arg, tokens)) {
+            throw new ParameterException("Expected a command, got " + arg);
+          }
+          // The command consumed the rest of the tokens
+          break;
+        } else if (argIndex < target.getArgumentCount()) {
+          target.addArgumentValue(argIndex++, arg);
+        } else if (target.hasMainParameter()) {
+          target.addMainParameterValue(arg);
+        } else {
+          throw new ParameterException(
+              "Was passed main parameter '" + arg + "' but no main parameter was defined");
+        }
+      }
+    }
+
+    if (argIndex < target.getArgumentCount() && target.isArgumentRequired(argIndex)) {
+      throw new ParameterException("Missing " + target.getArgumentName(argIndex) + " argument");
+    }
+  }
+
+  static boolean isOption(String arg, Target<?> target) {
+    if (arg.length() == 0) return false;
+    return target.getOptionPrefixes(arg).indexOf(arg.charAt(0)) >= 0;
+  }
+
+  /**
+   * @return true if this option is a boolean that doesn't take a value.
+   */
+  static boolean isSwitch(FieldDescription fd) {
+    Class<?> type = fd.getType();
+    return (type == boolean.class || type == Boolean.class)
+        && fd.getParameter().arity() == -1;
+  }
+
+  /**
+   * Assign the values returned by the default provider to the options.
+   */
+  static <O> void initializeDefaultValues(IDefaultProvider defaultProvider, Iterable<O> options,
+      Target<O> target) {
+    for (O option : options) {
+      String optionName = target.getFieldDescription(option).getParameter().names()[0];
+      String def = defaultProvider.getDefaultValueFor(optionName);
+      if (def != null) {
+        if (JCommander.isDebug()) {
+          System.out.println("[JCommander] Initializing " + optionName + " with default value:"
+              + def);
+        }
+        target.addValue(option, def, true /* default */);
+      }
+    }
+  }
+
+  /**
+   * @return the converter class specified by the annotation, or else the one that the
+   * registry finds for the type, or else {@link StringConverter}.
+   */
+  static Class<? extends IStringConverter<?>> findConverterClass(
+      Class<? extends IStringConverter<?>> converterClass, Class<?> type,
+      ConverterRegistry registry) {
+    if (converterClass == null || converterClass == NoConverter.class) {
+      converterClass = registry.findConverter(type);
+    }
+    if (converterClass == null) {
+      converterClass = StringConverter.class;
+    }
+    return converterClass;
+  }
+
+  /**
+   * @return the constructor taking the option name if the converter has one,
+   * its no-arg constructor otherwise, or null if it has neither.
+   */
+  @SuppressWarnings("unchecked")
+  static Constructor<IStringConverter<?>> findConverterConstructor(
+      Class<? extends IStringConverter<?>> converterClass) {
+    Constructor<IStringConverter<?>> result = null;
+    Constructor<IStringConverter<?>> stringCtor = null;
+    Constructor<IStringConverter<?>>[] ctors
+        = (Constructor<IStringConverter<?>>[]) converterClass.getDeclaredConstructors();
+    for (Constructor<IStringConverter<?>> c : ctors) {
+      Class<?>[] types = c.getParameterTypes();
+      if (types.length == 1 && types[0].equals(String.class)) {
+        stringCtor = c;
+      } else if (types.length == 0) {
+        result = c;
+      }
+    }
+    return stringCtor != null ? stringCtor : result;
+  }
+
+  /**
+   * @return the constructor used to create the converters of this class.
+   * @throws ParameterException if it has no suitable constructor.
+   */
+  static Constructor<IStringConverter<?>> getConverterConstructor(
+      Class<? extends IStringConverter<?>> converterClass) {
+    Constructor<IStringConverter<?>> result = findConverterConstructor(converterClass);
+    if (result == null) {
+      throw new ParameterException("The converter " + converterClass.getName()
+          + " needs a no-arg constructor or a constructor taking the option name");
+    }
+    return result;
+  }
+
+  /**
+   * @return a new converter for the option.
+   * @throws ParameterException if the converter couldn't be created.
+   */
+  static IStringConverter<?> newConverter(Constructor<IStringConverter<?>> constructor,
+      String optionName) {
+    try {
+      return constructor.getParameterTypes().length == 1
+          ? constructor.newInstance(optionName)
+          : constructor.newInstance();
+    } catch (InstantiationException e) {
+      throw newConverterException(constructor, optionName, e);
+    } catch (IllegalAccessException e) {
+      throw newConverterException(constructor, optionName, e);
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof ParameterException) throw (ParameterException) e.getCause();
+      throw newConverterException(constructor, optionName, e.getCause());
+    }
+  }
+
+  /**
+   * Convert the value, reporting the IllegalArgumentException of the converter (such
+   * as a NumberFormatException) as a ParameterException.
+   */
+  static Object convert(IStringConverter<?> converter, String optionName, String value) {
+    try {
+      return converter.convert(value);
+    } catch (IllegalArgumentException e) {
+      ParameterException result = new ParameterException("Invalid value for " + optionName
+          + ": \"" + value + "\" (" + e.getMessage() + ")");
+      result.initCause(e);
+      throw result;
+    }
+  }
+
+  private static ParameterException newConverterException(
+      Constructor<IStringConverter<?>> constructor, String optionName, Throwable cause) {
+    return new ParameterException("Couldn't create the converter "
+        + constructor.getDeclaringClass().getName() + " for " + optionName + ": "
+        + cause.getMessage());
+  }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+/**
+ * What {@link JCommanderParser#parse(Object, String...)} found on the command line,
+ * besides the values assigned to the object.
+ *
+ * @author cbeust
+ */
+public class ParseResult {
+  private final Object m_object;
+  private final String m_parsedCommand;
+  private final ParseResult m_commandResult;
+
+  ParseResult(Object object, String parsedCommand, ParseResult commandResult) {
+    m_object = object;
+    m_parsedCommand = parsedCommand;
+    m_commandResult = commandResult;
+  }
+
+  /**
+   * @return the object that received the values.
+   */
+  public Object getObject() {
+    return m_object;
+  }
+
+  /**
+   * @return the name of the command found on the command line, or null if there was none.
+   */
+  public String getParsedCommand() {
+    return m_parsedCommand;
+  }
+
+  /**
+   * @return the object created for the command found on the command line, or null
+   * if there was none.
+   */
+  public Object getCommandObject() {
+    return m_commandResult != null ? m_commandResult.getObject() : null;
+  }
+
+  /**
+   * @return the result of the parsing of the command, which can itself have found
+   * a command, or null if there was no command.
+   */
+  public ParseResult getCommandResult() {
+    return m_commandResult;
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import com.beust.jcommander.internal.ClassDescription;
+import com.beust.jcommander.internal.ClassDescriptionSnapshot;
+import com.beust.jcommander.internal.Lists;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes snapshots of the options of classes, which JCommander reads instead of
+ * the annotations of these classes when they're found on the class path, see
+ * {@link ClassDescriptionSnapshot}. Write them in the directory of the compiled
+ * classes before packaging the jar, e.g. target/classes:
+ * <pre>
+ * java -cp target/classes:jcommander.jar com.beust.jcommander.SnapshotGenerator \
+ *     -d target/classes com.example.Args com.example.CommandAdd
+ * </pre>
+ * A snapshot is ignored once the size of its class file changes, so a forgotten
+ * snapshot only costs the time spent checking it. Regenerate the snapshots whenever the
+ * classes are compiled: a change that keeps the size is only detected with
+ * {@link ClassDescriptionSnapshot#VERIFY_PROPERTY}.
+ *
+ * @author cbeust
+ */
+public class SnapshotGenerator {
+  private final File m_directory;
+  private final Set<Class<?>> m_classes = new LinkedHashSet<Class<?>>();
+
+  /**
+   * @param directory the root of the class path the snapshots are written to.
+   */
+  public SnapshotGenerator(File directory) {
+    m_directory = directory;
+  }
+
+  public void addClass(Class<?> cls) {
+    m_classes.add(cls);
+  }
+
+  /**
+   * Add the classes of the objects of the JCommander and of its commands.
+   */
+  public void addJCommander(JCommander jc) {
+    for (Object object : jc.getObjects()) {
+      addClass(object.getClass());
+    }
+    for (String name : jc.getCommandNames()) {
+      addJCommander(jc.getCommand(name));
+    }
+  }
+
+  /**
+   * @return the snapshot files written.
+   */
+  public List<File> generate() throws IOException {
+    List<File> result = Lists.newArrayList();
+    for (Class<?> cls : m_classes) {
+      File file = new File(m_directory, ClassDescriptionSnapshot.getResourceName(cls));
+      file.getParentFile().mkdirs();
+      OutputStream out = new FileOutputStream(file);
+      try {
+        ClassDescriptionSnapshot.write(ClassDescription.getClassDescription(cls), out);
+      } finally {
+        out.close();
+      }
+      result.add(file);
+    }
+    return result;
+  }
+
+  private static class Args {
+    @Parameter(names = "-d", description = "The root of the class path to write to",
+        required = true)
+    private File directory;
+
+    @Parameter(description = "<class>...")
+    private List<String> classNames = Lists.newArrayList();
+  }
+
+  public static void main(String[] argv) throws IOException, ClassNotFoundException {
+    Args args = new Args();
+    JCommander jc = new JCommander(args);
+    jc.setProgramName(SnapshotGenerator.class.getName());
+    try {
+      jc.parse(argv);
+    } catch (ParameterException e) {
+      System.err.println(e.getMessage());
+      jc.usage();
+      System.exit(1);
+    }
+
+    SnapshotGenerator generator = new SnapshotGenerator(args.directory);
+    for (String className : args.classNames) {
+      generator.addClass(Class.forName(className));
+    }
+    for (File file : generator.generate()) {
+      System.out.println("Wrote " + file);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.completers;
+
+import com.beust.jcommander.ICompletionProvider;
+import com.beust.jcommander.internal.Lists;
+import com.beust.jcommander.internal.PrefixIndex;
+import com.beust.jcommander.shell.CompletionResult;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Completes file and directory names, relative to the current directory unless
+ * the value typed so far is an absolute path. Directory names end with a "/".
+ *
+ * Directory listings are cached and shared by all the instances, and a listing
+ * is only read again when the modification time of its directory changes. A
+ * WatchService wouldn't do better: its events arrive asynchronously (every 10
+ * seconds on the JVMs that poll), so it couldn't replace the modification time
+ * check, which catches every change on a local file system.
+ */
+public class FileCompletionProvider implements ICompletionProvider {
+  private static final int MAX_CACHED_DIRECTORIES = 64;
+
+  private static final Map<File, Listing> CACHE = Collections.synchronizedMap(
+      new LinkedHashMap<File, Listing>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, Listing> eldest) {
+          return size() > MAX_CACHED_DIRECTORIES;
+        }
+      });
+
+  public void complete(String prefix, CompletionResult results) {
+    String path = prefix != null ? prefix : "";
+    int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf(File.separatorChar));
+    String directoryName = path.substring(0, slash + 1);
+    PrefixIndex names = list(new File(directoryName.length() > 0 ? directoryName : "."));
+    if (names == null) return;
+
+    for (String name : names.startingWith(path.substring(slash + 1))) {
+      if (results.isTimeUp()) return;
+      results.addCandidate(directoryName + name);
+    }
+  }
+
+  /**
+   * @return the sorted names of the files of this directory, or null if it can't be read.
+   */
+  private static PrefixIndex list(File directory) {
+    long lastModified = directory.lastModified();
+    Listing listing = CACHE.get(directory);
+    if (listing != null && listing.isValid(lastModified)) {
+      return listing.names;
+    }
+
+    long listed = System.currentTimeMillis();
+    File[] files = directory.listFiles();
+    if (files == null) return null;
+    List<String> names = Lists.newArrayList();
+    for (File file : files) {
+      names.add(file.isDirectory() ? file.getName() + "/" : file.getName());
+    }
+    PrefixIndex result = new PrefixIndex(names);
+    CACHE.put(directory, new Listing(lastModified, listed, result));
+    return result;
+  }
+
+  /**
+   * Removes all the cached directory listings.
+   */
+  public static void clearCache() {
+    CACHE.clear();
+  }
+
+  private static class Listing {
+    private final long lastModified;
+    private final long listed;
+    private final PrefixIndex names;
+
+    Listing(long lastModified, long listed, PrefixIndex names) {
+      this.lastModified = lastModified;
+      this.listed = listed;
+      this.names = names;
+    }
+
+    boolean isValid(long currentLastModified) {
+      // Modification times can have a granularity of a second or more, so a
+      // directory modified just before it was listed could change again unnoticed
+      return currentLastModified == lastModified && listed - lastModified > 2000;
+    }
+  }
+}
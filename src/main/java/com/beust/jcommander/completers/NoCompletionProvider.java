@@ -0,0 +1,33 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.completers;
+
+import com.beust.jcommander.ICompletionProvider;
+import com.beust.jcommander.shell.CompletionResult;
+
+/**
+ * The default provider of the annotations, which means that the values are not
+ * completed (unless the field is an enum).
+ */
+public class NoCompletionProvider implements ICompletionProvider {
+
+  public void complete(String prefix, CompletionResult results) {
+  }
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import com.beust.jcommander.Argument;
+import com.beust.jcommander.ICompletionProvider;
+import com.beust.jcommander.IStringConverter;
+import com.beust.jcommander.Parameter;
+
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+
+/**
+ * Instances of @Parameter and @Argument created without reflection, used by the
+ * classes generated by the JCommander annotation processor.
+ */
+public class Annotations {
+  private Annotations() {
+  }
+
+  public static Parameter newParameter(final String[] names, final String description,
+      final boolean required, final String descriptionKey, final int arity,
+      final boolean password, final Class<? extends IStringConverter<?>> converter,
+      final boolean hidden, final Class<? extends ICompletionProvider> completionProvider) {
+    return new Parameter() {
+      public Class<? extends Annotation> annotationType() {
+        return Parameter.class;
+      }
+
+      public String[] names() {
+        return names.clone();
+      }
+
+      public String description() {
+        return description;
+      }
+
+      public boolean required() {
+        return required;
+      }
+
+      public String descriptionKey() {
+        return descriptionKey;
+      }
+
+      public int arity() {
+        return arity;
+      }
+
+      public boolean password() {
+        return password;
+      }
+
+      public Class<? extends IStringConverter<?>> converter() {
+        return converter;
+      }
+
+      public boolean hidden() {
+        return hidden;
+      }
+
+      public Class<? extends ICompletionProvider> completionProvider() {
+        return completionProvider;
+      }
+
+      @Override
+      public String toString() {
+        return "@" + Parameter.class.getName() + "(names=" + Arrays.toString(names)
+            + ", description=" + description + ", required=" + required
+            + ", descriptionKey=" + descriptionKey + ", arity=" + arity
+            + ", password=" + password + ", converter=" + converter
+            + ", hidden=" + hidden + ", completionProvider=" + completionProvider + ")";
+      }
+    };
+  }
+
+  public static Argument newArgument(final int index, final String name,
+      final String description, final boolean required, final String descriptionKey,
+      final Class<? extends IStringConverter<?>> converter,
+      final Class<? extends ICompletionProvider> completionProvider) {
+    return new Argument() {
+      public Class<? extends Annotation> annotationType() {
+        return Argument.class;
+      }
+
+      public int index() {
+        return index;
+      }
+
+      public String name() {
+        return name;
+      }
+
+      public String description() {
+        return description;
+      }
+
+      public boolean required() {
+        return required;
+      }
+
+      public String descriptionKey() {
+        return descriptionKey;
+      }
+
+      public Class<? extends IStringConverter<?>> converter() {
+        return converter;
+      }
+
+      public Class<? extends ICompletionProvider> completionProvider() {
+        return completionProvider;
+      }
+
+      @Override
+      public String toString() {
+        return "@" + Argument.class.getName() + "(index=" + index + ", name=" + name
+            + ", description=" + description + ", required=" + required
+            + ", descriptionKey=" + descriptionKey + ", converter=" + converter
+            + ", completionProvider=" + completionProvider + ")";
+      }
+    };
+  }
+}
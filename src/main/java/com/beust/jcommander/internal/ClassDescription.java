@@ -0,0 +1,317 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import com.beust.jcommander.Argument;
+import com.beust.jcommander.Command;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static com.beust.jcommander.internal.Strings.isEmpty;
+
+/**
+ * Everything JCommander needs to know about a class that contains @Parameter
+ * and @Argument annotations: the annotated fields (including the inherited ones)
+ * and the class level settings found in @Parameters, @ResourceBundle and @Command.
+ *
+ * Walking the class hierarchy and reading the annotations is expensive, so
+ * descriptions are created once per class and shared by all the JCommander instances.
+ * On Java 7 and later, the descriptions are attached to their class with a
+ * {@link ClassValue}: they are read without locking and are collected with the class
+ * and its class loader. On older JVMs they are kept in a synchronized map that only
+ * keeps soft references to the descriptions, which reference their class, so there a
+ * class loader can only be collected once the JVM cleared these references.
+ *
+ * If the JCommander annotation processor ran on a class, the description is created
+ * by the generated {@link ClassDescriptionFactory} instead of reading the annotations
+ * with reflection. Otherwise, if a snapshot of the class was written by
+ * {@link ClassDescriptionSnapshot} and the class didn't change since, the description
+ * is read from the snapshot.
+ *
+ * @author cbeust
+ */
+public class ClassDescription {
+  /**
+   * Appended to the binary name of a class to find the factory generated for it.
+   */
+  public static final String GENERATED_SUFFIX = "$$JCommander";
+
+  private static final Cache CACHE = createCache();
+
+  private final Class<?> m_class;
+
+  /**
+   * The annotated fields, starting with the ones declared on the class itself
+   * and then going up the hierarchy.
+   */
+  private final List<FieldDescription> m_fields;
+
+  private final String m_separators;
+
+  /**
+   * m_separators as a lookup table: m_separatorTable[c] is true if c is a separator.
+   * Null if the separator is the default " ", in which case options never need
+   * to be split.
+   */
+  private final boolean[] m_separatorTable;
+
+  private final String m_optionPrefixes;
+
+  private final String m_resourceBundleName;
+
+  private final String m_commandDescription;
+
+  /**
+   * @return the description of the given class, reusing the cached one if possible.
+   */
+  public static ClassDescription getClassDescription(Class<?> cls) {
+    return CACHE.get(cls);
+  }
+
+  private static ClassDescription createClassDescription(Class<?> cls) {
+    ClassDescription result = createGeneratedDescription(cls);
+    if (result == null) {
+      result = ClassDescriptionSnapshot.read(cls);
+    }
+    if (result == null) {
+      result = new ClassDescription(cls);
+    }
+    return result;
+  }
+
+  private interface Cache {
+    ClassDescription get(Class<?> cls);
+  }
+
+  private static Cache createCache() {
+    try {
+      Class.forName("java.lang.ClassValue");
+    } catch (ClassNotFoundException e) {
+      return new SoftReferenceCache();
+    }
+    // Only loaded when ClassValue exists
+    return new ClassValueCache();
+  }
+
+  private static class ClassValueCache implements Cache {
+    private final ClassValue<ClassDescription> m_descriptions = new ClassValue<ClassDescription>() {
+      @Override
+      protected ClassDescription computeValue(Class<?> cls) {
+        return createClassDescription(cls);
+      }
+    };
+
+    public ClassDescription get(Class<?> cls) {
+      return m_descriptions.get(cls);
+    }
+  }
+
+  private static class SoftReferenceCache implements Cache {
+    private final Map<Class<?>, SoftReference<ClassDescription>> m_descriptions =
+        Collections.synchronizedMap(new WeakHashMap<Class<?>, SoftReference<ClassDescription>>());
+
+    public ClassDescription get(Class<?> cls) {
+      SoftReference<ClassDescription> ref = m_descriptions.get(cls);
+      ClassDescription result = ref != null ? ref.get() : null;
+      if (result == null) {
+        // Two threads might end up creating the same description, which is harmless
+        result = createClassDescription(cls);
+        m_descriptions.put(cls, new SoftReference<ClassDescription>(result));
+      }
+      return result;
+    }
+  }
+
+  /**
+   * @return the description created by the factory generated for this class, or null
+   * if the annotation processor didn't run on it.
+   */
+  private static ClassDescription createGeneratedDescription(Class<?> cls) {
+    ClassLoader loader = cls.getClassLoader();
+    if (loader == null) return null;
+
+    Class<?> factoryClass;
+    try {
+      factoryClass = Class.forName(cls.getName() + GENERATED_SUFFIX, true, loader);
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+    if (! ClassDescriptionFactory.class.isAssignableFrom(factoryClass)) return null;
+
+    try {
+      ClassDescription result = ((ClassDescriptionFactory) factoryClass.getDeclaredConstructor()
+          .newInstance()).createClassDescription();
+      return result.getType() == cls ? result : null;
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      if (e.getCause() instanceof Error) throw (Error) e.getCause();
+      return null;
+    } catch (NoSuchMethodException e) {
+      return null;
+    } catch (InstantiationException e) {
+      return null;
+    } catch (IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Used by the generated factories.
+   *
+   * @param fields the annotated fields, in the same order as {@link #getFields()}.
+   * @param resourceBundleName the bundle name, or null if there is none.
+   * @param commandDescription the description found in @Command, or null.
+   */
+  public ClassDescription(Class<?> cls, List<FieldDescription> fields, String separators,
+      String optionPrefixes, String resourceBundleName, String commandDescription) {
+    m_class = cls;
+    m_fields = Collections.unmodifiableList(Lists.newArrayList(fields));
+    m_separators = separators;
+    m_separatorTable = createSeparatorTable(separators);
+    m_optionPrefixes = optionPrefixes;
+    m_resourceBundleName = resourceBundleName;
+    m_commandDescription = commandDescription;
+  }
+
+  private ClassDescription(Class<?> cls) {
+    m_class = cls;
+
+    List<FieldDescription> fields = Lists.newArrayList();
+    Class<?> c = cls;
+    while (c != null && ! Object.class.equals(c)) {
+      for (Field f : c.getDeclaredFields()) {
+        Parameter p = f.getAnnotation(Parameter.class);
+        Argument a = f.getAnnotation(Argument.class);
+        if (p != null || a != null) {
+          fields.add(new FieldDescription(f, p, a));
+        }
+      }
+      // Traverse the super class until we find Object.class
+      c = c.getSuperclass();
+    }
+    m_fields = Collections.unmodifiableList(fields);
+
+    Parameters parameters = cls.getAnnotation(Parameters.class);
+    if (parameters != null) {
+      m_separators = parameters.separators();
+      m_optionPrefixes = parameters.optionPrefixes();
+    } else {
+      m_separators = " ";
+      m_optionPrefixes = Parameters.DEFAULT_OPTION_PREFIXES;
+    }
+
+    String bundleName = null;
+    if (parameters != null && ! isEmpty(parameters.resourceBundle())) {
+      bundleName = parameters.resourceBundle();
+    } else {
+      com.beust.jcommander.ResourceBundle a = cls.getAnnotation(
+          com.beust.jcommander.ResourceBundle.class);
+      if (a != null && ! isEmpty(a.value())) {
+        bundleName = a.value();
+      }
+    }
+    m_resourceBundleName = bundleName;
+
+    m_separatorTable = createSeparatorTable(m_separators);
+
+    Command command = cls.getAnnotation(Command.class);
+    m_commandDescription = command != null ? command.description() : null;
+  }
+
+  private static boolean[] createSeparatorTable(String separators) {
+    if (" ".equals(separators)) return null;
+
+    int max = 0;
+    for (int i = 0; i < separators.length(); i++) {
+      max = Math.max(max, separators.charAt(i));
+    }
+    boolean[] result = new boolean[max + 1];
+    for (int i = 0; i < separators.length(); i++) {
+      result[separators.charAt(i)] = true;
+    }
+    return result;
+  }
+
+  public Class<?> getType() {
+    return m_class;
+  }
+
+  /**
+   * @return all the fields annotated with @Parameter or @Argument.
+   */
+  public List<FieldDescription> getFields() {
+    return m_fields;
+  }
+
+  /**
+   * @return the separators specified with @Parameters, " " by default.
+   */
+  public String getSeparators() {
+    return m_separators;
+  }
+
+  /**
+   * @return true if options of this class can contain their value, e.g. "-log=3".
+   */
+  public boolean hasSeparators() {
+    return m_separatorTable != null;
+  }
+
+  /**
+   * @return true if c is one of the separators specified with @Parameters.
+   */
+  public boolean isSeparator(char c) {
+    return m_separatorTable != null && c < m_separatorTable.length && m_separatorTable[c];
+  }
+
+  /**
+   * @return the option prefixes specified with @Parameters, "-" by default.
+   */
+  public String getOptionPrefixes() {
+    return m_optionPrefixes;
+  }
+
+  /**
+   * @return the name of the resource bundle specified with @Parameters or @ResourceBundle,
+   * or null if there is none.
+   */
+  public String getResourceBundleName() {
+    return m_resourceBundleName;
+  }
+
+  /**
+   * @return the description found in @Command, or null if this class is not annotated.
+   */
+  public String getCommandDescription() {
+    return m_commandDescription;
+  }
+
+  @Override
+  public String toString() {
+    return "[ClassDescription " + m_class.getName() + "]";
+  }
+}
@@ -0,0 +1,356 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import com.beust.jcommander.Argument;
+import com.beust.jcommander.ICompletionProvider;
+import com.beust.jcommander.IStringConverter;
+import com.beust.jcommander.Parameter;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes a {@link ClassDescription} in a compact binary form, so that
+ * the annotations of a class don't need to be read with reflection when the JVM
+ * starts. Snapshots are resources named {@link #DIRECTORY} followed by the binary
+ * name of the class and ".bin", loaded by the class loader of the class.
+ *
+ * A snapshot starts with the sizes of the class files of the class and of its super
+ * classes, followed by a CRC32 of their content. Only the sizes are checked by default,
+ * because computing the CRC means reading every class file of the hierarchy on each
+ * start, which costs about as much as the reflection the snapshot saves. A snapshot
+ * whose sizes don't match the classes anymore is ignored, and the annotations are read
+ * with reflection as if there were no snapshot. Set the system property
+ * {@link #VERIFY_PROPERTY} to also check the CRC, e.g. in tests, since a change that
+ * keeps the size of a class file, like editing one character of a description, isn't
+ * detected otherwise.
+ *
+ * What's saved is the reflection on the annotations. The fields are still looked up by
+ * name, with one getDeclaredField() the first time each of them is assigned, like the
+ * descriptions created by the annotation processor. The descriptions are stored with
+ * their keys, and resolved with the resource bundle of each JCommander.
+ *
+ * Commands are added in the code with JCommander#addCommand() and not declared with
+ * annotations, so a snapshot doesn't contain any command, only the description of the
+ * {@link com.beust.jcommander.Command} annotation of its class. Each command class has
+ * its own snapshot.
+ */
+public class ClassDescriptionSnapshot {
+  public static final String DIRECTORY = "META-INF/jcommander/";
+
+  /**
+   * If this system property is set, snapshots are also ignored when the CRC of the
+   * class files doesn't match.
+   */
+  public static final String VERIFY_PROPERTY = "jcommander.snapshot.verify";
+
+  private static final int MAGIC = 0x4A434D44; // "JCMD"
+  private static final int VERSION = 2;
+
+  private static final Map<String, Class<?>> PRIMITIVES = Maps.newHashMap();
+
+  static {
+    Class<?>[] primitives = { boolean.class, byte.class, char.class, short.class, int.class,
+        long.class, float.class, double.class };
+    for (Class<?> c : primitives) {
+      PRIMITIVES.put(c.getName(), c);
+    }
+  }
+
+  private ClassDescriptionSnapshot() {
+  }
+
+  /**
+   * @return the name of the resource containing the snapshot of the class.
+   */
+  public static String getResourceName(Class<?> cls) {
+    return DIRECTORY + cls.getName() + ".bin";
+  }
+
+  /**
+   * @return the description found in the snapshot of the class, or null if there
+   * is no snapshot or if it's stale.
+   */
+  public static ClassDescription read(Class<?> cls) {
+    ClassLoader loader = cls.getClassLoader();
+    if (loader == null) return null;
+
+    InputStream in = loader.getResourceAsStream(getResourceName(cls));
+    if (in == null) return null;
+    try {
+      try {
+        return read(cls, in, System.getProperty(VERIFY_PROPERTY) != null);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @param verify whether to check the CRC of the class files as well as their sizes.
+   * @return the description read from the stream, or null if it's stale.
+   */
+  static ClassDescription read(Class<?> cls, InputStream stream, boolean verify)
+      throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+    if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+    if (! cls.getName().equals(in.readUTF())) return null;
+
+    List<Class<?>> hierarchy = getHierarchy(cls);
+    if (in.readInt() != hierarchy.size()) return null;
+    for (Class<?> c : hierarchy) {
+      if (in.readLong() != getClassFileSize(c)) return null;
+    }
+    long hash = in.readLong();
+    if (verify && hash != hash(cls)) return null;
+
+    ClassLoader loader = cls.getClassLoader();
+    try {
+      String separators = in.readUTF();
+      String optionPrefixes = in.readUTF();
+      String resourceBundleName = readNullableString(in);
+      String commandDescription = readNullableString(in);
+
+      int fieldCount = in.readInt();
+      List<FieldDescription> fields = Lists.newArrayList(fieldCount);
+      for (int i = 0; i < fieldCount; i++) {
+        Class<?> declaringClass = hierarchy.get(in.readInt());
+        String name = in.readUTF();
+        Class<?> type = loadClass(in.readUTF(), loader);
+        String elementTypeName = readNullableString(in);
+        Class<?> elementType = elementTypeName != null ? loadClass(elementTypeName, loader) : null;
+        Parameter parameter = in.readBoolean() ? readParameter(in, loader) : null;
+        Argument argument = in.readBoolean() ? readArgument(in, loader) : null;
+        fields.add(new FieldDescription(declaringClass, name, type, elementType, parameter,
+            argument, null));
+      }
+      return new ClassDescription(cls, fields, separators, optionPrefixes, resourceBundleName,
+          commandDescription);
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Write the snapshot of the description.
+   */
+  public static void write(ClassDescription description, OutputStream stream)
+      throws IOException {
+    Class<?> cls = description.getType();
+    List<Class<?>> hierarchy = getHierarchy(cls);
+    DataOutputStream out = new DataOutputStream(stream);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeUTF(cls.getName());
+    out.writeInt(hierarchy.size());
+    for (Class<?> c : hierarchy) {
+      out.writeLong(getClassFileSize(c));
+    }
+    out.writeLong(hash(cls));
+
+    out.writeUTF(description.getSeparators());
+    out.writeUTF(description.getOptionPrefixes());
+    writeNullableString(out, description.getResourceBundleName());
+    writeNullableString(out, description.getCommandDescription());
+
+    List<FieldDescription> fields = description.getFields();
+    out.writeInt(fields.size());
+    for (FieldDescription fd : fields) {
+      out.writeInt(hierarchy.indexOf(fd.getDeclaringClass()));
+      out.writeUTF(fd.getName());
+      out.writeUTF(fd.getType().getName());
+      writeNullableString(out, fd.getElementType() != null ? fd.getElementType().getName() : null);
+      out.writeBoolean(fd.getParameter() != null);
+      if (fd.getParameter() != null) {
+        writeParameter(out, fd.getParameter());
+      }
+      out.writeBoolean(fd.getArgument() != null);
+      if (fd.getArgument() != null) {
+        writeArgument(out, fd.getArgument());
+      }
+    }
+    out.flush();
+  }
+
+  private static void writeParameter(DataOutputStream out, Parameter p) throws IOException {
+    String[] names = p.names();
+    out.writeInt(names.length);
+    for (String name : names) {
+      out.writeUTF(name);
+    }
+    out.writeUTF(p.description());
+    out.writeBoolean(p.required());
+    out.writeUTF(p.descriptionKey());
+    out.writeInt(p.arity());
+    out.writeBoolean(p.password());
+    out.writeUTF(p.converter().getName());
+    out.writeBoolean(p.hidden());
+    out.writeUTF(p.completionProvider().getName());
+  }
+
+  private static Parameter readParameter(DataInputStream in, ClassLoader loader)
+      throws IOException, ClassNotFoundException {
+    String[] names = new String[in.readInt()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = in.readUTF();
+    }
+    String description = in.readUTF();
+    boolean required = in.readBoolean();
+    String descriptionKey = in.readUTF();
+    int arity = in.readInt();
+    boolean password = in.readBoolean();
+    Class<? extends IStringConverter<?>> converter = loadConverter(in.readUTF(), loader);
+    boolean hidden = in.readBoolean();
+    Class<? extends ICompletionProvider> completionProvider =
+        loadCompletionProvider(in.readUTF(), loader);
+    return Annotations.newParameter(names, description, required, descriptionKey, arity,
+        password, converter, hidden, completionProvider);
+  }
+
+  private static void writeArgument(DataOutputStream out, Argument a) throws IOException {
+    out.writeInt(a.index());
+    out.writeUTF(a.name());
+    out.writeUTF(a.description());
+    out.writeBoolean(a.required());
+    out.writeUTF(a.descriptionKey());
+    out.writeUTF(a.converter().getName());
+    out.writeUTF(a.completionProvider().getName());
+  }
+
+  private static Argument readArgument(DataInputStream in, ClassLoader loader)
+      throws IOException, ClassNotFoundException {
+    int index = in.readInt();
+    String name = in.readUTF();
+    String description = in.readUTF();
+    boolean required = in.readBoolean();
+    String descriptionKey = in.readUTF();
+    Class<? extends IStringConverter<?>> converter = loadConverter(in.readUTF(), loader);
+    Class<? extends ICompletionProvider> completionProvider =
+        loadCompletionProvider(in.readUTF(), loader);
+    return Annotations.newArgument(index, name, description, required, descriptionKey,
+        converter, completionProvider);
+  }
+
+  private static void writeNullableString(DataOutputStream out, String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      out.writeUTF(s);
+    }
+  }
+
+  private static String readNullableString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Class<? extends IStringConverter<?>> loadConverter(String name,
+      ClassLoader loader) throws ClassNotFoundException {
+    return (Class<? extends IStringConverter<?>>) loadClass(name, loader);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Class<? extends ICompletionProvider> loadCompletionProvider(String name,
+      ClassLoader loader) throws ClassNotFoundException {
+    return (Class<? extends ICompletionProvider>) loadClass(name, loader);
+  }
+
+  private static Class<?> loadClass(String name, ClassLoader loader)
+      throws ClassNotFoundException {
+    Class<?> result = PRIMITIVES.get(name);
+    return result != null ? result : Class.forName(name, false, loader);
+  }
+
+  /**
+   * @return the class and its super classes, in the order in which
+   * {@link ClassDescription} walks them.
+   */
+  private static List<Class<?>> getHierarchy(Class<?> cls) {
+    List<Class<?>> result = Lists.newArrayList();
+    for (Class<?> c = cls; c != null && ! Object.class.equals(c); c = c.getSuperclass()) {
+      result.add(c);
+    }
+    return result;
+  }
+
+  /**
+   * @return the size of the class file of the class, or -1 if it can't be found, e.g.
+   * for the JDK classes. The file isn't read: the size comes from the file system or
+   * from the directory of the jar.
+   */
+  static long getClassFileSize(Class<?> cls) throws IOException {
+    ClassLoader loader = cls.getClassLoader();
+    URL url = loader != null ? loader.getResource(getClassFileName(cls)) : null;
+    if (url == null) return -1;
+    if ("file".equals(url.getProtocol())) {
+      try {
+        return new File(url.toURI()).length();
+      } catch (URISyntaxException e) {
+        // Not a valid URI, let the connection find the size
+      }
+    }
+    URLConnection connection = url.openConnection();
+    long result = connection.getContentLengthLong();
+    connection.getInputStream().close();
+    return result;
+  }
+
+  private static String getClassFileName(Class<?> cls) {
+    return cls.getName().replace('.', '/') + ".class";
+  }
+
+  /**
+   * @return a CRC32 of the class files of the class and of its super classes, which
+   * changes whenever a field or an annotation does. Classes whose class file can't
+   * be read, e.g. the JDK ones, only contribute their name.
+   */
+  static long hash(Class<?> cls) throws IOException {
+    CRC32 result = new CRC32();
+    byte[] buffer = new byte[4096];
+    for (Class<?> c : getHierarchy(cls)) {
+      result.update(c.getName().getBytes("UTF-8"));
+      ClassLoader loader = c.getClassLoader();
+      InputStream in = loader != null
+          ? loader.getResourceAsStream(getClassFileName(c))
+          : null;
+      if (in == null) continue;
+      try {
+        for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+          result.update(buffer, 0, n);
+        }
+      } finally {
+        in.close();
+      }
+    }
+    return result.getValue();
+  }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import com.beust.jcommander.IStringConverter;
+import com.beust.jcommander.IStringConverterFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The string converter factories of a JCommander and the converter classes they
+ * resolved so far, per type. The factories are only asked once per type, after
+ * which the resolution is a single lookup.
+ *
+ * This class is thread safe: registering a factory replaces the factories and the
+ * resolved converters with new copies, so a resolution never sees a partial update.
+ *
+ * The cache is a map and not a ClassValue like the one of ClassDescription: the
+ * converter of a type depends on the factories of each JCommander, while a ClassValue
+ * holds one value per class for the whole JVM.
+ *
+ * @author cbeust
+ */
+public class ConverterRegistry {
+  /**
+   * Stored in the cache for the types that no factory knows about, since a
+   * ConcurrentMap can't contain null values. It's not a class, so it can't be
+   * mistaken for a converter that a factory returned.
+   */
+  private static final Object NOT_FOUND = new Object();
+
+  private static class State {
+    final List<IStringConverterFactory> factories;
+
+    /**
+     * The converter class of each type, or NOT_FOUND.
+     */
+    final ConcurrentMap<Class<?>, Object> converters = new ConcurrentHashMap<Class<?>, Object>();
+
+    State(List<IStringConverterFactory> factories) {
+      this.factories = Collections.unmodifiableList(factories);
+    }
+  }
+
+  private volatile State m_state;
+
+  /**
+   * Create a registry that only contains the default converter factory.
+   */
+  public ConverterRegistry() {
+    List<IStringConverterFactory> factories = Lists.newArrayList();
+    factories.add(new DefaultConverterFactory());
+    m_state = new State(factories);
+  }
+
+  /**
+   * Add a factory, which will be asked after the ones already registered.
+   */
+  public synchronized void addConverterFactory(IStringConverterFactory factory) {
+    List<IStringConverterFactory> factories = Lists.newArrayList(m_state.factories);
+    factories.add(factory);
+    m_state = new State(factories);
+  }
+
+  /**
+   * @return the converter class that the first matching factory returns for this type,
+   * or null if none of them knows about it.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> Class<? extends IStringConverter<T>> findConverter(Class<T> cls) {
+    State state = m_state;
+    Object result = state.converters.get(cls);
+    if (result == null) {
+      Class<? extends IStringConverter<?>> converter = null;
+      for (IStringConverterFactory f : state.factories) {
+        converter = f.getConverter(cls);
+        if (converter != null) break;
+      }
+      result = converter != null ? converter : NOT_FOUND;
+      state.converters.putIfAbsent(cls, result);
+    }
+
+    return result == NOT_FOUND ? null : (Class<? extends IStringConverter<T>>) result;
+  }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import java.lang.reflect.Field;
+
+/**
+ * Reads and writes one field of the objects that receive the parsed values.
+ *
+ * An accessor is resolved once per field, when the class is described, so
+ * assigning a value doesn't need to look up anything about the field. The
+ * classes generated by the JCommander annotation processor provide accessors
+ * that read and write the fields directly. The other fields use method handles
+ * when the JVM has them, and reflection otherwise. The generated accessors are one
+ * class per field, so the call sites that assign the values see several classes
+ * as soon as a generated class is in use.
+ */
+public abstract class FieldAccessor {
+  private static final boolean METHOD_HANDLES = hasMethodHandles();
+
+  public abstract Object get(Object object);
+
+  public abstract void set(Object object, Object value);
+
+  /**
+   * @param field an accessible field.
+   * @return a {@link MethodHandleFieldAccessor} if the JVM supports method handles and
+   * they can access the field, a {@link ReflectionFieldAccessor} otherwise.
+   */
+  public static FieldAccessor create(Field field) {
+    if (METHOD_HANDLES) {
+      try {
+        return new MethodHandleFieldAccessor(field);
+      } catch (IllegalAccessException e) {
+        // The lookup can't access the field, e.g. a static final field
+      }
+    }
+    return new ReflectionFieldAccessor(field);
+  }
+
+  private static boolean hasMethodHandles() {
+    try {
+      Class.forName("java.lang.invoke.MethodHandle");
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import com.beust.jcommander.Argument;
+import com.beust.jcommander.ICompletionProvider;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.completers.EnumCompletionProvider;
+import com.beust.jcommander.completers.NoCompletionProvider;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The annotations found on one field of a class, as discovered by {@link ClassDescription}.
+ * Instances are immutable and not bound to any object, so they can be shared by all
+ * the JCommander instances that parse into this class.
+ *
+ * A description is either created from a reflected field, or by a class generated by
+ * the JCommander annotation processor, in which case the field is only looked up
+ * with reflection if {@link #getField()} is called.
+ */
+public class FieldDescription {
+  private final Class<?> m_declaringClass;
+  private final String m_name;
+  private final Class<?> m_type;
+  private final Class<?> m_elementType;
+  private final Parameter m_parameter;
+  private final Argument m_argument;
+  private final String m_names;
+  private final boolean m_isCollection;
+  private final boolean m_isMultiOption;
+
+  /** Resolved lazily when the description was generated */
+  private volatile Field m_field;
+  private volatile FieldAccessor m_accessor;
+
+  /** Created lazily, only needed by tab completion */
+  private volatile ICompletionProvider m_completionProvider;
+
+  public FieldDescription(Field field, Parameter parameter, Argument argument) {
+    this(field.getDeclaringClass(), field.getName(), field.getType(),
+        findElementType(field.getGenericType()), parameter, argument, null);
+    field.setAccessible(true);
+    m_field = field;
+  }
+
+  /**
+   * @param elementType the type of the values of a collection field, if it is a
+   * parameterized type with a class as type argument, null otherwise.
+   * @param accessor an accessor for this field or null, in which case one is
+   * created with {@link FieldAccessor#create(Field)}.
+   */
+  public FieldDescription(Class<?> declaringClass, String name, Class<?> type,
+      Class<?> elementType, Parameter parameter, Argument argument, FieldAccessor accessor) {
+    m_declaringClass = declaringClass;
+    m_name = name;
+    m_type = type;
+    m_elementType = elementType;
+    m_parameter = parameter;
+    m_argument = argument;
+    m_accessor = accessor;
+
+    m_isCollection = Collection.class.isAssignableFrom(type);
+    m_isMultiOption = type.equals(List.class) || type.equals(Set.class);
+
+    StringBuilder sb = new StringBuilder();
+    if (parameter != null) {
+      String[] names = parameter.names();
+      for (int i = 0; i < names.length; i++) {
+        if (i > 0) sb.append(", ");
+        sb.append(names[i]);
+      }
+    }
+    m_names = sb.toString();
+  }
+
+  private static Class<?> findElementType(Type type) {
+    if (type instanceof ParameterizedType) {
+      Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+      if (arguments.length > 0 && arguments[0] instanceof Class) {
+        return (Class<?>) arguments[0];
+      }
+    }
+    return null;
+  }
+
+  public Field getField() {
+    Field result = m_field;
+    if (result == null) {
+      try {
+        result = m_declaringClass.getDeclaredField(m_name);
+      } catch (NoSuchFieldException e) {
+        throw new IllegalStateException("Couldn't find field " + m_name + " in "
+            + m_declaringClass.getName());
+      }
+      result.setAccessible(true);
+      m_field = result;
+    }
+    return result;
+  }
+
+  public FieldAccessor getAccessor() {
+    FieldAccessor result = m_accessor;
+    if (result == null) {
+      result = FieldAccessor.create(getField());
+      m_accessor = result;
+    }
+    return result;
+  }
+
+  /**
+   * @return the provider specified by the annotation of this field, or one completing
+   * the constants if the field (or its elements) is an enum.
+   */
+  public ICompletionProvider getCompletionProvider() {
+    ICompletionProvider result = m_completionProvider;
+    if (result == null) {
+      result = createCompletionProvider();
+      m_completionProvider = result;
+    }
+    return result;
+  }
+
+  private ICompletionProvider createCompletionProvider() {
+    Class<? extends ICompletionProvider> providerClass = m_parameter != null
+        ? m_parameter.completionProvider() : m_argument.completionProvider();
+    if (providerClass != NoCompletionProvider.class) {
+      try {
+        return providerClass.getDeclaredConstructor().newInstance();
+      } catch (InvocationTargetException e) {
+        if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+        if (e.getCause() instanceof Error) throw (Error) e.getCause();
+        throw new ParameterException("Couldn't instantiate the completion provider "
+            + providerClass.getName() + ": " + e.getCause());
+      } catch (NoSuchMethodException e) {
+        throw new ParameterException("The completion provider " + providerClass.getName()
+            + " needs a no-arg constructor");
+      } catch (InstantiationException e) {
+        throw new ParameterException("Couldn't instantiate the completion provider "
+            + providerClass.getName() + ": " + e.getMessage());
+      } catch (IllegalAccessException e) {
+        throw new ParameterException("Couldn't instantiate the completion provider "
+            + providerClass.getName() + ": " + e.getMessage());
+      }
+    }
+    if (m_type.isEnum()) {
+      return new EnumCompletionProvider(m_type);
+    }
+    if (m_elementType != null && m_elementType.isEnum()) {
+      return new EnumCompletionProvider(m_elementType);
+    }
+    return new NoCompletionProvider();
+  }
+
+  public Class<?> getDeclaringClass() {
+    return m_declaringClass;
+  }
+
+  public String getName() {
+    return m_name;
+  }
+
+  public Class<?> getType() {
+    return m_type;
+  }
+
+  /**
+   * @return the type of the values of this collection field, or null if it isn't known.
+   */
+  public Class<?> getElementType() {
+    return m_elementType;
+  }
+
+  /**
+   * @return the names of the option separated with ", ", as displayed by usage().
+   */
+  public String getNames() {
+    return m_names;
+  }
+
+  /**
+   * @return true if the values are added to a collection instead of being assigned.
+   */
+  public boolean isCollection() {
+    return m_isCollection;
+  }
+
+  /**
+   * @return true if the option can be specified more than once.
+   */
+  public boolean isMultiOption() {
+    return m_isMultiOption;
+  }
+
+  /**
+   * @return the collection of values found in the field, after storing a new one in it
+   * if it was null.
+   */
+  @SuppressWarnings("unchecked")
+  public Collection<Object> getOrCreateCollection(Object object) {
+    FieldAccessor accessor = getAccessor();
+    Collection<Object> result = (Collection<Object>) accessor.get(object);
+    if (result == null) {
+      if (Set.class.isAssignableFrom(m_type)) {
+        result = Sets.newHashSet();
+      } else {
+        result = Lists.newArrayList();
+      }
+      accessor.set(object, result);
+    }
+    return result;
+  }
+
+  /**
+   * @return the @Parameter annotation on this field, or null if there is none.
+   */
+  public Parameter getParameter() {
+    return m_parameter;
+  }
+
+  /**
+   * @return the @Argument annotation on this field, or null if there is none.
+   */
+  public Argument getArgument() {
+    return m_argument;
+  }
+
+  /**
+   * @return true if this field is the main parameter (a @Parameter without names).
+   */
+  public boolean isMainParameter() {
+    return m_parameter != null && m_parameter.names().length == 0;
+  }
+
+  @Override
+  public String toString() {
+    return "[FieldDescription " + m_declaringClass.getSimpleName() + "." + m_name + "]";
+  }
+}
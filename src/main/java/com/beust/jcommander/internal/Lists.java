@@ -20,6 +20,7 @@ package com.beust.jcommander.internal;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedList;
 import java.util.List;
 
 public class Lists {
@@ -35,4 +36,8 @@ public class Lists {
   public static <K> List<K> newArrayList(int size) {
     return new ArrayList<K>(size);
   }
+
+  public static <K> LinkedList<K> newLinkedList() {
+    return new LinkedList<K>();
+  }
 }
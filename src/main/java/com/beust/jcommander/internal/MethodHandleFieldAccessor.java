@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * A FieldAccessor that uses method handles, which the JIT compiles like a field
+ * access once the accessor is hot, instead of going through the access checks of
+ * Field.set(). Only loaded by {@link FieldAccessor#create(Field)} when the JVM
+ * supports method handles.
+ */
+public final class MethodHandleFieldAccessor extends FieldAccessor {
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SETTER_TYPE =
+      MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final MethodHandle m_getter;
+  private final MethodHandle m_setter;
+
+  /**
+   * @param field an accessible field.
+   * @throws IllegalAccessException if the field can't be written, e.g. it's static final.
+   */
+  public MethodHandleFieldAccessor(Field field) throws IllegalAccessException {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    m_getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+    m_setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+  }
+
+  @Override
+  public Object get(Object object) {
+    try {
+      return (Object) m_getter.invokeExact(object);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable e) {
+      // A field access doesn't throw checked exceptions
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public void set(Object object, Object value) {
+    try {
+      m_setter.invokeExact(object, value);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import java.util.Arrays;
+
+/**
+ * A character trie that maps option names to values. It answers both exact
+ * lookups and "which option is this token starting with" lookups in a time
+ * proportional to the length of the token, independently of the number of
+ * options.
+ *
+ * This class is not thread safe.
+ */
+public class OptionIndex<V> {
+  private final Node<V> m_root = new Node<V>();
+  private int m_size = 0;
+
+  /**
+   * Associate the value with the given name, replacing any previous value.
+   */
+  public void put(String name, V value) {
+    Node<V> node = m_root;
+    for (int i = 0; i < name.length(); i++) {
+      node = node.getOrCreateChild(name.charAt(i));
+    }
+    if (node.m_value == null) m_size++;
+    node.m_value = value;
+  }
+
+  /**
+   * @return the value associated with exactly this name, or null.
+   */
+  public V get(CharSequence name) {
+    Node<V> node = m_root;
+    for (int i = 0; i < name.length() && node != null; i++) {
+      node = node.getChild(name.charAt(i));
+    }
+    return node != null ? node.m_value : null;
+  }
+
+  /**
+   * @return the value of the longest name that the given string starts with, or null
+   * if the string doesn't start with any of the names.
+   */
+  public V findLongestPrefixOf(CharSequence s) {
+    Node<V> node = m_root;
+    V result = m_root.m_value;
+    for (int i = 0; i < s.length(); i++) {
+      node = node.getChild(s.charAt(i));
+      if (node == null) break;
+      if (node.m_value != null) result = node.m_value;
+    }
+    return result;
+  }
+
+  public int size() {
+    return m_size;
+  }
+
+  public boolean isEmpty() {
+    return m_size == 0;
+  }
+
+  /**
+   * The children of a node are kept in a sorted array and looked up with a binary
+   * search, which is compact and fast for the small alphabets found in option names.
+   */
+  private static class Node<V> {
+    private static final char[] NO_KEYS = new char[0];
+
+    private char[] m_keys = NO_KEYS;
+    private Node<V>[] m_children;
+    private int m_count = 0;
+    private V m_value;
+
+    Node<V> getChild(char c) {
+      int index = Arrays.binarySearch(m_keys, 0, m_count, c);
+      return index >= 0 ? m_children[index] : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    Node<V> getOrCreateChild(char c) {
+      int index = Arrays.binarySearch(m_keys, 0, m_count, c);
+      if (index >= 0) return m_children[index];
+
+      int insertion = - index - 1;
+      if (m_count == m_keys.length) {
+        int capacity = m_count == 0 ? 2 : m_count * 2;
+        char[] keys = new char[capacity];
+        Node<V>[] children = (Node<V>[]) new Node<?>[capacity];
+        if (m_count > 0) {
+          System.arraycopy(m_keys, 0, keys, 0, m_count);
+          System.arraycopy(m_children, 0, children, 0, m_count);
+        }
+        m_keys = keys;
+        m_children = children;
+      }
+      System.arraycopy(m_keys, insertion, m_keys, insertion + 1, m_count - insertion);
+      System.arraycopy(m_children, insertion, m_children, insertion + 1, m_count - insertion);
+      Node<V> result = new Node<V>();
+      m_keys[insertion] = c;
+      m_children[insertion] = result;
+      m_count++;
+      return result;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable sorted set of names that returns the names starting with a given
+ * prefix with two binary searches, without looking at the other names. Used for
+ * tab completion, where the same names are searched on every keystroke.
+ *
+ * @author cbeust
+ */
+public class PrefixIndex {
+  private final List<String> m_names;
+
+  public PrefixIndex(Collection<String> names) {
+    String[] sorted = names.toArray(new String[names.size()]);
+    Arrays.sort(sorted);
+    m_names = Collections.unmodifiableList(Arrays.asList(sorted));
+  }
+
+  /**
+   * @return the names starting with the given prefix, in alphabetical order, or all
+   * the names if the prefix is null. The returned list is a view, not a copy.
+   */
+  public List<String> startingWith(String prefix) {
+    if (prefix == null || prefix.length() == 0) return m_names;
+
+    // All the names between the prefix and its successor start with the prefix
+    int from = indexOf(prefix);
+    String successor = successor(prefix);
+    int to = successor != null ? indexOf(successor) : m_names.size();
+    return m_names.subList(from, to);
+  }
+
+  public int size() {
+    return m_names.size();
+  }
+
+  /**
+   * @return the index of the first name that is greater than or equal to s.
+   */
+  private int indexOf(String s) {
+    int index = Collections.binarySearch(m_names, s);
+    return index >= 0 ? index : - index - 1;
+  }
+
+  /**
+   * @return the smallest string that is greater than all the strings starting with
+   * the prefix, or null if there is none.
+   */
+  private static String successor(String prefix) {
+    StringBuilder result = new StringBuilder(prefix);
+    for (int i = result.length() - 1; i >= 0; i--) {
+      char c = result.charAt(i);
+      if (c != Character.MAX_VALUE) {
+        result.setCharAt(i, (char) (c + 1));
+        result.setLength(i + 1);
+        return result.toString();
+      }
+    }
+    return null;
+  }
+}
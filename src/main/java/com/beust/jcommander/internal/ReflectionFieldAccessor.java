@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import com.beust.jcommander.ParameterException;
+
+import java.lang.reflect.Field;
+
+/**
+ * A FieldAccessor that uses reflection.
+ */
+public class ReflectionFieldAccessor extends FieldAccessor {
+  private final Field m_field;
+
+  /**
+   * @param field an accessible field.
+   */
+  public ReflectionFieldAccessor(Field field) {
+    m_field = field;
+  }
+
+  @Override
+  public Object get(Object object) {
+    try {
+      return m_field.get(object);
+    } catch (IllegalAccessException e) {
+      throw new ParameterException("Couldn't access field " + m_field.getName() + ": "
+          + e.getMessage());
+    }
+  }
+
+  @Override
+  public void set(Object object, Object value) {
+    try {
+      m_field.set(object, value);
+    } catch (IllegalAccessException e) {
+      throw new ParameterException("Couldn't access field " + m_field.getName() + ": "
+          + e.getMessage());
+    }
+  }
+}
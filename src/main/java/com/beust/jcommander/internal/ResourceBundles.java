@@ -17,13 +17,9 @@
  */
 package com.beust.jcommander.internal;
 
-import com.beust.jcommander.Parameters;
-
 import java.util.Locale;
 import java.util.ResourceBundle;
 
-import static com.beust.jcommander.internal.Strings.isEmpty;
-
 /**
  */
 public class ResourceBundles {
@@ -32,19 +28,7 @@ public class ResourceBundles {
    * @return
    */
   public static ResourceBundle findResourceBundle(Object o) {
-    ResourceBundle result = null;
-
-    Parameters p = o.getClass().getAnnotation(Parameters.class);
-    if (p != null && ! isEmpty(p.resourceBundle())) {
-      result = ResourceBundle.getBundle(p.resourceBundle(), Locale.getDefault());
-    } else {
-      com.beust.jcommander.ResourceBundle a = o.getClass().getAnnotation(
-          com.beust.jcommander.ResourceBundle.class);
-      if (a != null && ! isEmpty(a.value())) {
-        result = ResourceBundle.getBundle(a.value(), Locale.getDefault());
-      }
-    }
-
-    return result;
+    String name = ClassDescription.getClassDescription(o.getClass()).getResourceBundleName();
+    return name != null ? ResourceBundle.getBundle(name, Locale.getDefault()) : null;
   }
 }
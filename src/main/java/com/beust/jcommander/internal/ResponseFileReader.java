@@ -0,0 +1,230 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import com.beust.jcommander.ParameterException;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Returns the lines of an @file one at a time, as they are requested.
+ *
+ * Files are memory mapped one window at a time and decoded with an explicit
+ * charset, so the memory used doesn't depend on the size of the file. The
+ * file name "-" stands for the standard input.
+ *
+ * @author cbeust
+ */
+public class ResponseFileReader implements Iterator<String> {
+  public static final String STDIN = "-";
+
+  private static final int WINDOW_SIZE = 8 * 1024 * 1024;
+  private static final int BUFFER_SIZE = 8 * 1024;
+
+  private final String m_fileName;
+  private final CharsetDecoder m_decoder;
+  private final CharBuffer m_chars = CharBuffer.allocate(BUFFER_SIZE);
+  private final StringBuilder m_line = new StringBuilder();
+
+  /**
+   * Set when reading a file: the bytes are mapped m_windowSize bytes at a time.
+   */
+  private FileChannel m_file;
+  private long m_fileSize;
+  private long m_fileOffset = 0;
+  private final int m_windowSize;
+
+  /**
+   * Set when reading the standard input.
+   */
+  private ReadableByteChannel m_stream;
+
+  /**
+   * The bytes waiting to be decoded, either a mapped window of m_file or
+   * a buffer filled from m_stream.
+   */
+  private ByteBuffer m_bytes;
+  private boolean m_endOfInput = false;
+
+  /**
+   * True if the last character was a '\r', in which case a '\n' following it
+   * doesn't end another line.
+   */
+  private boolean m_skipLineFeed = false;
+
+  private String m_next;
+
+  public ResponseFileReader(String fileName, Charset charset) {
+    this(fileName, charset, WINDOW_SIZE);
+  }
+
+  ResponseFileReader(String fileName, Charset charset, int windowSize) {
+    m_fileName = fileName;
+    m_windowSize = windowSize;
+    m_decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    m_chars.flip();
+
+    try {
+      if (STDIN.equals(fileName)) {
+        m_stream = Channels.newChannel(System.in);
+        m_bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        m_bytes.flip();
+      } else {
+        m_file = new FileInputStream(fileName).getChannel();
+        m_fileSize = m_file.size();
+        m_bytes = ByteBuffer.allocate(0);
+      }
+    } catch (IOException e) {
+      throw new ParameterException("Could not read file " + fileName + ": " + e);
+    }
+  }
+
+  public boolean hasNext() {
+    if (m_next == null) {
+      m_next = readLine();
+    }
+    return m_next != null;
+  }
+
+  public String next() {
+    if (! hasNext()) {
+      throw new NoSuchElementException();
+    }
+    String result = m_next;
+    m_next = null;
+    return result;
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Release the file. This is done automatically once all the lines have been read.
+   * The standard input is never closed.
+   */
+  public void close() {
+    if (m_file != null) {
+      try {
+        m_file.close();
+      } catch (IOException ignore) {
+      }
+      m_file = null;
+    }
+    m_bytes = null;
+    m_endOfInput = true;
+  }
+
+  /**
+   * @return the next line, without its end of line characters, or null at the end of the input.
+   */
+  private String readLine() {
+    while (true) {
+      while (m_chars.hasRemaining()) {
+        char c = m_chars.get();
+        if (m_skipLineFeed) {
+          m_skipLineFeed = false;
+          if (c == '\n') continue;
+        }
+        if (c == '\n' || c == '\r') {
+          m_skipLineFeed = c == '\r';
+          String result = m_line.toString();
+          m_line.setLength(0);
+          return result;
+        }
+        m_line.append(c);
+      }
+
+      if (! decode()) {
+        close();
+        if (m_line.length() > 0) {
+          String result = m_line.toString();
+          m_line.setLength(0);
+          return result;
+        }
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Refill m_chars with the next decoded characters.
+   *
+   * @return false if there are no more characters.
+   */
+  private boolean decode() {
+    if (m_bytes == null) return false;
+
+    m_chars.clear();
+    try {
+      while (m_chars.position() == 0 && ! m_endOfInput) {
+        if (m_decoder.decode(m_bytes, m_chars, false).isUnderflow()) {
+          // All the bytes have been decoded, except maybe the beginning of a character
+          if (! readBytes()) {
+            m_decoder.decode(m_bytes, m_chars, true);
+            m_decoder.flush(m_chars);
+            m_endOfInput = true;
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new ParameterException("Could not read file " + m_fileName + ": " + e);
+    } finally {
+      m_chars.flip();
+    }
+    return m_chars.hasRemaining();
+  }
+
+  /**
+   * Make the next bytes of the input available in m_bytes, keeping the bytes that
+   * haven't been decoded yet.
+   *
+   * @return false if there are no more bytes to read.
+   */
+  private boolean readBytes() throws IOException {
+    if (m_file != null) {
+      if (m_fileOffset + m_bytes.limit() >= m_fileSize) return false;
+
+      m_fileOffset += m_bytes.position();
+      // The new window must contain more than the bytes left over from the previous one
+      long length = Math.min(Math.max(m_windowSize, m_bytes.remaining() + 1),
+          m_fileSize - m_fileOffset);
+      m_bytes = m_file.map(FileChannel.MapMode.READ_ONLY, m_fileOffset, length);
+      return true;
+    } else {
+      m_bytes.compact();
+      int count = m_stream.read(m_bytes);
+      m_bytes.flip();
+      return count >= 0;
+    }
+  }
+}
@@ -17,20 +17,56 @@
  */
 package com.beust.jcommander.shell;
 
+import com.beust.jcommander.ICompletionProvider;
 import com.beust.jcommander.internal.Lists;
 
 import java.util.Collection;
-import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A helper class to help collect completion results
+ * <p/>
+ * Results can have a time budget, in which case the completion providers are
+ * abandoned once it's exhausted and only the candidates found so far are returned.
  */
 public class CompletionResult {
+  /**
+   * The completion providers running at the same time when there is a time budget.
+   */
+  private static final int MAX_PROVIDER_THREADS = 4;
+
+  /**
+   * Runs the completion providers when there is a time budget. Providers that time
+   * out are interrupted.
+   */
+  private static ExecutorService providerExecutor;
+
+  /**
+   * The providers still running, possibly from a previous completion if they ignored
+   * the interruption. They aren't called again until they're done.
+   */
+  private static final Map<ICompletionProvider, Boolean> runningProviders =
+      new IdentityHashMap<ICompletionProvider, Boolean>();
+
   private SortedSet<String> results = new TreeSet<String>();
   private final String prefix;
+  private long deadline;
+  private boolean hasDeadline;
+  private boolean closed;
 
   /**
    * @param prefix the command prefix is either null (for a new command) or the prefix typed so far which acts as a filter
@@ -40,13 +76,121 @@ public class CompletionResult {
     this.prefix = prefix;
   }
 
+  /**
+   * @return the prefix typed so far, or null.
+   */
+  public String getPrefix() {
+    return prefix;
+  }
+
+  /**
+   * Give the completion at most the given number of milliseconds, from now.
+   */
+  public void setTimeBudget(long millis) {
+    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    hasDeadline = true;
+  }
+
+  /**
+   * @return true if the time budget is exhausted, in which case the providers
+   * should return the candidates found so far.
+   */
+  public boolean isTimeUp() {
+    return hasDeadline && System.nanoTime() - deadline >= 0;
+  }
+
+  /**
+   * Add the candidates of the provider for the prefix, waiting for it at most for
+   * the remaining time budget. The provider is interrupted after that and the
+   * candidates it adds are ignored. A provider that is still running from a previous
+   * completion, or that finds all the provider threads busy, adds no candidates.
+   */
+  public void complete(final ICompletionProvider provider) {
+    if (! hasDeadline) {
+      provider.complete(prefix, this);
+      return;
+    }
+
+    synchronized (runningProviders) {
+      if (runningProviders.containsKey(provider)) return;
+      runningProviders.put(provider, Boolean.TRUE);
+    }
+    // Set by the task when it starts, or by close() if the task never started, so
+    // that the provider is released exactly once
+    final AtomicBoolean claimed = new AtomicBoolean();
+    Future<?> future;
+    try {
+      future = getProviderExecutor().submit(new Runnable() {
+        public void run() {
+          if (! claimed.compareAndSet(false, true)) return;
+          try {
+            provider.complete(prefix, CompletionResult.this);
+          } finally {
+            synchronized (runningProviders) {
+              runningProviders.remove(provider);
+            }
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      synchronized (runningProviders) {
+        runningProviders.remove(provider);
+      }
+      return;
+    }
+    try {
+      future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      close(future, claimed, provider);
+    } catch (InterruptedException e) {
+      close(future, claimed, provider);
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Ignore the candidates added from now on and interrupt the provider.
+   */
+  private void close(Future<?> future, AtomicBoolean claimed, ICompletionProvider provider) {
+    synchronized (this) {
+      closed = true;
+    }
+    future.cancel(true);
+    if (claimed.compareAndSet(false, true)) {
+      synchronized (runningProviders) {
+        runningProviders.remove(provider);
+      }
+    }
+  }
+
+  private static synchronized ExecutorService getProviderExecutor() {
+    if (providerExecutor == null) {
+      // No queue: a provider that can't start right away is skipped
+      providerExecutor = new ThreadPoolExecutor(0, MAX_PROVIDER_THREADS, 60, TimeUnit.SECONDS,
+          new SynchronousQueue<Runnable>(), new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread result = new Thread(r, "completion provider");
+          result.setDaemon(true);
+          return result;
+        }
+      });
+    }
+    return providerExecutor;
+  }
+
   public void addCandidates(Collection<String> names) {
     for (String name : names) {
       addCandidate(name);
     }
   }
 
-  public void addCandidate(String name) {
+  public synchronized void addCandidate(String name) {
+    if (closed) return;
     if (prefix == null || name.startsWith(prefix)) {
       String remaining = (prefix == null) ? name : name.substring(prefix.length());
       if (remaining.length() > 0) {
@@ -58,7 +202,7 @@ public class CompletionResult {
   /**
    * Copies the completion results to the given list of candidates
    */
-  public void getResults(List candidates) {
+  public synchronized void getResults(List candidates) {
     candidates.addAll(results);
   }
 
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beust.jcommander.shell;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Runs a callback when the JVM receives SIGINT, i.e. when Ctrl-C is typed, until it's
+ * uninstalled. It uses sun.misc.Signal through reflection since not every JVM
+ * provides it.
+ */
+class InterruptSignal {
+  private final Method handle;
+  private final Object signal;
+  private final Object previousHandler;
+
+  private InterruptSignal(Method handle, Object signal, Object previousHandler) {
+    this.handle = handle;
+    this.signal = signal;
+    this.previousHandler = previousHandler;
+  }
+
+  /**
+   * @return the installed handler, or null if the JVM can't handle SIGINT.
+   */
+  static InterruptSignal install(final Runnable callback) {
+    try {
+      Class<?> signalClass = Class.forName("sun.misc.Signal");
+      Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+      Object signal = signalClass.getConstructor(String.class).newInstance("INT");
+      Object handler = Proxy.newProxyInstance(handlerClass.getClassLoader(),
+          new Class<?>[] { handlerClass }, new InvocationHandler() {
+        public Object invoke(Object proxy, Method method, Object[] args) {
+          if ("equals".equals(method.getName())) return proxy == args[0];
+          if ("hashCode".equals(method.getName())) return System.identityHashCode(proxy);
+          if ("toString".equals(method.getName())) return "InterruptSignal";
+          callback.run();
+          return null;
+        }
+      });
+      Method handle = signalClass.getMethod("handle", signalClass, handlerClass);
+      return new InterruptSignal(handle, signal, handle.invoke(null, signal, handler));
+    } catch (Exception e) {
+      // No sun.misc.Signal, or SIGINT is reserved, e.g. with -Xrs
+      return null;
+    }
+  }
+
+  /**
+   * Put back the handler that was there before.
+   */
+  void uninstall() {
+    try {
+      handle.invoke(null, signal, previousHandler);
+    } catch (Exception ignore) {
+    }
+  }
+}
@@ -35,4 +35,19 @@ public class NoInterruptUnixTerminal extends UnixTerminal {
         super.restoreTerminal();
     }
 
+    /**
+     * Give the terminal to a command: the terminal edits and echoes the lines it reads
+     * and, if interrupt is true, Ctrl-C sends SIGINT.
+     */
+    public void suspend(boolean interrupt) throws IOException, InterruptedException {
+        stty("icanon echo" + (interrupt ? " intr ^C" : ""));
+    }
+
+    /**
+     * Take the terminal back after {@link #suspend(boolean)}.
+     */
+    public void resume() throws IOException, InterruptedException {
+        stty("-icanon min 1 -echo intr undef");
+    }
+
 }
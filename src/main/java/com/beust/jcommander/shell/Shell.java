@@ -17,6 +17,8 @@
  */
 package com.beust.jcommander.shell;
 
+import com.beust.jcommander.CommandLineLexer;
+import com.beust.jcommander.ICommandFactory;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
@@ -30,18 +32,41 @@ import org.fusesource.jansi.AnsiConsole;
 
 import java.io.*;
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * <p>Implements a jline base shell for executing JCommander commands.</p>
  * <p/>
+ * <p>In an interactive session, commands are executed by an executor (see
+ * {@link #setExecutor(ExecutorService)}) so that Ctrl-C cancels the command being
+ * executed. The command owns the terminal until it's done: it can read System.in,
+ * and Ctrl-C cancels it on the JVMs that provide sun.misc.Signal. A command followed
+ * by an unquoted "&amp;" is executed in the background and the built-in commands
+ * "jobs", "fg [id]" and "kill id" list, wait for and cancel the background commands.
+ * A command of the shell with the same name as a built-in hides it.</p>
+ * <p/>
  * This is code is original based on the Karaf Console code.
  *
  * @author <a href="http://hiramchirino.com">Hiram Chirino</a>
  */
 abstract public class Shell implements Runnable, UsageReporter {
 
-  final private InputStream in = System.in;
+  private static final int DEFAULT_STREAM_QUEUE_SIZE = 64;
+
   final private PrintStream out = System.out;
   final private PrintStream err = System.err;
 
@@ -49,12 +74,35 @@ abstract public class Shell implements Runnable, UsageReporter {
   protected Throwable lastException;
   protected boolean printStackTraces;
   protected boolean bellEnabled = true;
+  /** The milliseconds a TAB waits for the completion providers */
+  protected long completionTimeBudget = 200;
   protected File history;
 
   @Parameter(description = "a sub command to execute, if not specified, you will be placed into an interactive shell.")
   public List<String> cliArgs;
   private Completor completer = createCompleter();
 
+  private ExecutorService executor;
+
+  /**
+   * The background jobs, per id.
+   */
+  private final Map<Integer, Job> jobs = new TreeMap<Integer, Job>();
+  private int nextJobId = 1;
+
+  /**
+   * The commands registered with {@link #addCommand(String, ICommandFactory, String)},
+   * in the order they were added.
+   */
+  private final Map<String, ICommandFactory> commands =
+      new LinkedHashMap<String, ICommandFactory>();
+
+  /**
+   * The descriptions displayed by usage(), per command name. A null value means that
+   * the name isn't a command.
+   */
+  private final Map<String, String> commandDescriptions = new HashMap<String, String>();
+
   public static class CloseShellException extends RuntimeException {
   }
 
@@ -84,6 +132,7 @@ abstract public class Shell implements Runnable, UsageReporter {
     private final JCommander jcommander = getCurrentJCommander();
 
     private ConsoleReader reader;
+    private Terminal terminal;
 
     public JCommander getJCommander() {
       return jcommander;
@@ -96,7 +145,6 @@ abstract public class Shell implements Runnable, UsageReporter {
     private void execute() {
       Session original = CURRENT_SESSION.get();
       CURRENT_SESSION.set(this);
-      Terminal terminal = null;
       try {
         terminal = openTerminal();
         try {
@@ -135,8 +183,10 @@ abstract public class Shell implements Runnable, UsageReporter {
         }
 
       } finally {
+        cancelJobs();
         reader = null;
         closeTerminal(terminal);
+        terminal = null;
         CURRENT_SESSION.set(original);
       }
     }
@@ -163,6 +213,31 @@ abstract public class Shell implements Runnable, UsageReporter {
       }
     }
 
+    /**
+     * Give the terminal to the command executed in the foreground: the terminal edits
+     * and echoes the lines it reads and, if interrupt is true, Ctrl-C sends SIGINT.
+     */
+    private void suspendTerminal(boolean interrupt) {
+      if (terminal instanceof NoInterruptUnixTerminal) {
+        try {
+          ((NoInterruptUnixTerminal) terminal).suspend(interrupt);
+        } catch (Exception ignore) {
+        }
+      }
+    }
+
+    /**
+     * Take the terminal back once the command is done.
+     */
+    private void resumeTerminal() {
+      if (terminal instanceof NoInterruptUnixTerminal) {
+        try {
+          ((NoInterruptUnixTerminal) terminal).resume();
+        } catch (Exception ignore) {
+        }
+      }
+    }
+
     private void closeTerminal(Terminal term) {
       if (term != null) {
         try {
@@ -179,46 +254,323 @@ abstract public class Shell implements Runnable, UsageReporter {
    * Override to customize command line parsing, should call {@link #executeCommand(String, String[])}
    */
   public void executeLine(String line) {
-    // implementing a really simple command line parser..
-    // TODO: replace with something that can handle quoted args etc.
-    String[] args = line.split(" +");
-    if (args.length > 0) {
-      String[] commandArgs = new String[args.length - 1];
-      System.arraycopy(args, 1, commandArgs, 0, args.length - 1);
-      executeCommand(args[0], commandArgs);
+    String[] args;
+    try {
+      args = splitLine(line);
+    } catch (ParameterException e) {
+      displayFailure(null, e);
+      return;
+    }
+    boolean background = args.length > 0 && "&".equals(args[args.length - 1])
+        && endsWithUnquotedAmpersand(line);
+    int length = background ? args.length - 1 : args.length;
+    if (length > 0) {
+      String[] commandArgs = new String[length - 1];
+      System.arraycopy(args, 1, commandArgs, 0, length - 1);
+      if (background) {
+        executeInBackground(args[0], commandArgs);
+      } else {
+        executeCommand(args[0], commandArgs);
+      }
     }
   }
 
-  public abstract String getShellName();
+  /**
+   * @return true if the last argument of the line is &amp; and not "&amp;", '&amp;'
+   * or \&amp;.
+   */
+  private static boolean endsWithUnquotedAmpersand(String line) {
+    CommandLineLexer lexer = new CommandLineLexer(line);
+    boolean result = false;
+    while (lexer.hasNext()) {
+      result = "&".equals(lexer.next()) && ! lexer.isQuoted();
+    }
+    return result;
+  }
 
-  public abstract String[] getDisplayedCommands();
+  /**
+   * Override to customize how a line is split into the command and its arguments.
+   */
+  protected String[] splitLine(String line) {
+    return CommandLineLexer.split(line);
+  }
 
-  public abstract JCommander createSubCommand(String name);
+  /**
+   * Executes the commands read from the given reader, one per line, without any
+   * interaction.
+   *
+   * @see #executeStream(Reader, int)
+   */
+  public void executeStream(Reader input) {
+    executeStream(input, DEFAULT_STREAM_QUEUE_SIZE);
+  }
 
-  public void usage(StringBuilder out) {
-    out.append("\n");
-    out.append("  Commands:\n");
-    int ln = longestName(getDisplayedCommands()) + 3;
-    for (String name : getDisplayedCommands()) {
-      int spaceCount = ln - name.length();
-      JCommander jc = createSubCommand(name);
-      if( jc!=null ) {
-        String description = jc.getCommandDescription();
-        if (description == null) {
-          description = jc.getMainParameterDescription();
+  /**
+   * Executes the commands read from the given reader, one per line, without any
+   * interaction. The lines are read, split and parsed by a background thread while
+   * the calling thread executes the commands parsed so far, in the same order. At most
+   * queueSize parsed commands wait to be executed, the reading stops until the execution
+   * catches up.
+   *
+   * Blank lines and comments are ignored and the stream ends at the end of the input or when a
+   * command throws a {@link CloseShellException}. The reader is closed when the stream ends.
+   * If a command ends it while the background thread is still waiting for a line, the reader
+   * is closed from another thread to wake it up. Whether that works depends on the reader:
+   * most of the readers of the JDK only let close() through once the pending read returns,
+   * which is why the background thread is a daemon thread.
+   */
+  public void executeStream(final Reader input, int queueSize) {
+    final BlockingQueue<ParsedLine> queue = new ArrayBlockingQueue<ParsedLine>(queueSize);
+    final BufferedReader reader = input instanceof BufferedReader
+        ? (BufferedReader) input : new BufferedReader(input);
+    final AtomicBoolean closed = new AtomicBoolean();
+
+    Thread parser = new Thread(getShellName() + " parser") {
+      @Override
+      public void run() {
+        try {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            ParsedLine parsed = parseLine(line);
+            if (parsed != null && ! put(queue, parsed, closed)) return;
+          }
+          put(queue, ParsedLine.END, closed);
+        } catch (IOException e) {
+          put(queue, new ParsedLine(null, null, e), closed);
+        } catch (RuntimeException e) {
+          put(queue, new ParsedLine(null, null, e), closed);
+        } finally {
+          closeQuietly(reader);
         }
-        out.append("    " + name + s(spaceCount) + description + "\n");
       }
+    };
+    parser.setDaemon(true);
+    parser.start();
+
+    try {
+      while (true) {
+        ParsedLine parsed;
+        try {
+          parsed = queue.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        if (parsed == ParsedLine.END) return;
+        if (parsed.command == null) throw new RuntimeException(parsed.error);
+
+        if (parsed.jc == null) {
+          if (parsed.error != null) {
+            displayFailure(null, parsed.error);
+          } else {
+            displayNotFound(parsed.command);
+          }
+        } else if (parsed.error != null) {
+          displayInvalidUsage(parsed.command, parsed.jc, (ParameterException) parsed.error);
+        } else {
+          runCommand(parsed.command, parsed.jc);
+        }
+      }
+    } catch (CloseShellException e) {
+    } finally {
+      closed.set(true);
+      parser.interrupt();
+      if (parser.isAlive()) {
+        // Don't wait here in case close() blocks until the pending read returns
+        Thread closer = new Thread(getShellName() + " closer") {
+          @Override
+          public void run() {
+            closeQuietly(input);
+          }
+        };
+        closer.setDaemon(true);
+        closer.start();
+      }
+    }
+  }
+
+  private static void closeQuietly(Reader reader) {
+    try {
+      reader.close();
+    } catch (IOException e) {
+      // Nothing left to read from it anyway
+    }
+  }
+
+  /**
+   * The parsing stage of {@link #executeStream(Reader, int)}.
+   *
+   * @return the parsed line, or null if it doesn't contain any command.
+   */
+  private ParsedLine parseLine(String line) {
+    String[] args;
+    try {
+      args = splitLine(line);
+    } catch (ParameterException e) {
+      return new ParsedLine(line, null, e);
+    }
+    if (args.length == 0) return null;
+    String command = args[0];
+    String[] commandArgs = new String[args.length - 1];
+    System.arraycopy(args, 1, commandArgs, 0, args.length - 1);
+
+    JCommander jc = createSubCommand(command);
+    if (jc == null) return new ParsedLine(command, null, null);
+    try {
+      jc.parse(commandArgs);
+    } catch (ParameterException e) {
+      return new ParsedLine(command, jc, e);
+    }
+    return new ParsedLine(command, jc, null);
+  }
+
+  /**
+   * Wait until there is room in the queue, unless the execution stopped.
+   *
+   * @return false if the execution stopped.
+   */
+  private static boolean put(BlockingQueue<ParsedLine> queue, ParsedLine parsed,
+      AtomicBoolean closed) {
+    try {
+      while (! queue.offer(parsed, 100, TimeUnit.MILLISECONDS)) {
+        if (closed.get()) return false;
+      }
+      return true;
+    } catch (InterruptedException e) {
+      return false;
     }
   }
 
-  private String s(int count) {
-    StringBuilder result = new StringBuilder();
-    for (int i = 0; i < count; i++) {
-      result.append(" ");
+  /**
+   * A line parsed by the streaming mode: the command and its parsed JCommander
+   * (null if the command doesn't exist or the line couldn't be split), or the
+   * error found while parsing it. The command is null if the input couldn't be read.
+   */
+  private static class ParsedLine {
+    static final ParsedLine END = new ParsedLine(null, null, null);
+
+    final String command;
+    final JCommander jc;
+    final Throwable error;
+
+    ParsedLine(String command, JCommander jc, Throwable error) {
+      this.command = command;
+      this.jc = jc;
+      this.error = error;
     }
+  }
+
+  public abstract String getShellName();
 
-    return result.toString();
+  /**
+   * By default, the commands registered with {@link #addCommand(String, ICommandFactory, String)}.
+   */
+  public String[] getDisplayedCommands() {
+    synchronized (commands) {
+      return commands.keySet().toArray(new String[commands.size()]);
+    }
+  }
+
+  /**
+   * Called for every command line to create the JCommander parsing it, which must
+   * be a new one each time. By default, creates the command with the factory it
+   * was registered with.
+   *
+   * @return null if there is no such command.
+   */
+  public JCommander createSubCommand(String name) {
+    ICommandFactory factory;
+    synchronized (commands) {
+      factory = commands.get(name);
+    }
+    if (factory == null) return null;
+
+    JCommander result = new JCommander(factory.createCommand());
+    result.setProgramName(name);
+    return result;
+  }
+
+  /**
+   * Register a command. Its object is created by the factory each time the command
+   * is executed, while the description of the class is only read once, so this is
+   * cheap even for large commands.
+   *
+   * @param description the description displayed by usage(), or null to use the
+   * one found on the command object.
+   */
+  public void addCommand(String name, ICommandFactory factory, String description) {
+    synchronized (commands) {
+      commands.put(name, factory);
+    }
+    synchronized (commandDescriptions) {
+      commandDescriptions.remove(name);
+      if (description != null) {
+        commandDescriptions.put(name, description);
+      }
+    }
+  }
+
+  public void removeCommand(String name) {
+    synchronized (commands) {
+      commands.remove(name);
+    }
+    synchronized (commandDescriptions) {
+      commandDescriptions.remove(name);
+    }
+  }
+
+  /**
+   * The descriptions displayed by usage() are cached: call this method if
+   * {@link #createSubCommand(String)} starts returning different commands.
+   */
+  public void invalidateCommands() {
+    synchronized (commandDescriptions) {
+      commandDescriptions.clear();
+    }
+  }
+
+  /**
+   * @return the description displayed by usage() for this command, or null if there
+   * is no such command. The command is only created the first time.
+   */
+  protected String getCommandDescription(String name) {
+    synchronized (commandDescriptions) {
+      if (commandDescriptions.containsKey(name)) {
+        return commandDescriptions.get(name);
+      }
+    }
+    String description = null;
+    JCommander jc = createSubCommand(name);
+    if (jc != null) {
+      description = jc.getCommandDescription();
+      if (description == null) {
+        description = jc.getMainParameterDescription();
+      }
+      if (description == null) {
+        description = "";
+      }
+    }
+    synchronized (commandDescriptions) {
+      commandDescriptions.put(name, description);
+    }
+    return description;
+  }
+
+  public void usage(StringBuilder out) {
+    out.append("\n");
+    out.append("  Commands:\n");
+    String[] names = getDisplayedCommands();
+    int ln = longestName(names) + 3;
+    for (String name : names) {
+      String description = getCommandDescription(name);
+      if (description != null) {
+        out.append("    ").append(name);
+        for (int i = name.length(); i < ln; i++) {
+          out.append(' ');
+        }
+        out.append(description).append("\n");
+      }
+    }
   }
 
   private int longestName(String[] objects) {
@@ -239,20 +591,238 @@ abstract public class Shell implements Runnable, UsageReporter {
   protected void executeCommand(String command, String[] args) {
     JCommander jc = createSubCommand(command);
     if (jc == null) {
-      displayNotFound(command);
+      if (! executeBuiltin(command, args)) displayNotFound(command);
+      return;
+    }
+    try {
+      jc.parse(args);
+    } catch (ParameterException e) {
+      displayInvalidUsage(command, jc, e);
+      return;
+    }
+    if (getCurrentSession() != null) {
+      waitFor(startJob(command, args, jc));
+    } else {
+      runCommand(command, jc);
+    }
+  }
+
+  /**
+   * Parse the command and execute it in the background.
+   */
+  protected void executeInBackground(String command, String[] args) {
+    JCommander jc = createSubCommand(command);
+    if (jc == null) {
+      if (! executeBuiltin(command, args)) displayNotFound(command);
       return;
     }
     try {
       jc.parse(args);
     } catch (ParameterException e) {
-      err.print(Ansi.ansi().fg(Ansi.Color.RED));
-      err.println(command + ": invalid usage: " + e.getMessage());
-      err.print(Ansi.ansi().reset());
-      err.flush();
-      out.println();
-      jc.usage();
+      displayInvalidUsage(command, jc, e);
       return;
     }
+    Job job = startJob(command, args, jc);
+    synchronized (jobs) {
+      if (jobs.isEmpty()) nextJobId = 1;
+      job.id = nextJobId++;
+      jobs.put(job.id, job);
+    }
+    out.println("[" + job.id + "] " + job.getCommandLine());
+  }
+
+  /**
+   * Executes the built-in commands: "jobs", "fg [id]" and "kill id". It's only called
+   * for the names that {@link #createSubCommand(String)} doesn't know, so the commands
+   * of the shell take precedence. Override to add your own built-ins or to disable them.
+   *
+   * @return true if the command was a built-in.
+   */
+  protected boolean executeBuiltin(String command, String[] args) {
+    if ("jobs".equals(command)) {
+      synchronized (jobs) {
+        for (Job job : jobs.values()) {
+          out.println("[" + job.id + "] " + job.getStatus() + "  " + job.getCommandLine());
+        }
+        removeFinishedJobs();
+      }
+      return true;
+    }
+    if ("fg".equals(command) || "kill".equals(command)) {
+      Job job = null;
+      synchronized (jobs) {
+        if (args.length == 0 && "fg".equals(command)) {
+          for (Job j : jobs.values()) {
+            job = j;
+          }
+        } else if (args.length > 0) {
+          try {
+            job = jobs.get(Integer.valueOf(args[0]));
+          } catch (NumberFormatException e) {
+          }
+        }
+        if (job != null) jobs.remove(job.id);
+      }
+      if (job == null) {
+        err.print(Ansi.ansi().fg(Ansi.Color.RED));
+        err.println(command + ": no such job" + (args.length > 0 ? ": " + args[0] : ""));
+        err.print(Ansi.ansi().reset());
+      } else if ("fg".equals(command)) {
+        out.println(job.getCommandLine());
+        waitFor(job);
+      } else {
+        job.cancel();
+        out.println("[" + job.id + "] " + job.getStatus() + "  " + job.getCommandLine());
+      }
+      return true;
+    }
+    return false;
+  }
+
+  private void removeFinishedJobs() {
+    for (java.util.Iterator<Job> it = jobs.values().iterator(); it.hasNext(); ) {
+      if (it.next().isDone()) it.remove();
+    }
+  }
+
+  private void cancelJobs() {
+    synchronized (jobs) {
+      for (Job job : jobs.values()) {
+        job.cancel();
+      }
+      jobs.clear();
+    }
+  }
+
+  /**
+   * Submit the command to the executor, with the session and the JCommander of the
+   * current thread.
+   */
+  private Job startJob(final String command, String[] args, final JCommander jc) {
+    final Session session = CURRENT_SESSION.get();
+    final JCommander shellJCommander = CURRENT_JCOMMANDER.get();
+    Job job = new Job(command, args);
+    job.future = getExecutor().submit(new Runnable() {
+      public void run() {
+        Session originalSession = CURRENT_SESSION.get();
+        JCommander originalJCommander = CURRENT_JCOMMANDER.get();
+        CURRENT_SESSION.set(session);
+        CURRENT_JCOMMANDER.set(shellJCommander);
+        try {
+          runCommand(command, jc);
+        } finally {
+          CURRENT_SESSION.set(originalSession);
+          CURRENT_JCOMMANDER.set(originalJCommander);
+        }
+      }
+    });
+    return job;
+  }
+
+  /**
+   * Wait until the job is done, cancelling it if Ctrl-C is typed. The job owns the
+   * terminal in the meantime, nothing is read from System.in here.
+   */
+  private void waitFor(final Job job) {
+    final AtomicBoolean interrupted = new AtomicBoolean();
+    InterruptSignal signal = InterruptSignal.install(new Runnable() {
+      public void run() {
+        interrupted.set(true);
+        job.cancel();
+      }
+    });
+    Session session = getCurrentSession();
+    if (session != null) session.suspendTerminal(signal != null);
+    try {
+      job.future.get();
+    } catch (CancellationException e) {
+      if (interrupted.get()) out.println();
+    } catch (InterruptedException e) {
+      job.cancel();
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      // runCommand() already displayed the other failures
+      if (e.getCause() instanceof CloseShellException) {
+        throw (CloseShellException) e.getCause();
+      }
+    } finally {
+      // Ctrl-C must not reach the JVM once the handler is gone
+      if (session != null) session.resumeTerminal();
+      if (signal != null) signal.uninstall();
+    }
+  }
+
+  /**
+   * Set the executor used to execute the commands of the interactive sessions.
+   */
+  public synchronized void setExecutor(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  public synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = createExecutor();
+    }
+    return executor;
+  }
+
+  /**
+   * Override to change the default executor, which creates a virtual thread per command
+   * if the JVM supports them and uses a pool of daemon threads otherwise.
+   */
+  protected ExecutorService createExecutor() {
+    try {
+      Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) m.invoke(null);
+    } catch (Exception e) {
+      return Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread result = new Thread(r, getShellName() + " command");
+          result.setDaemon(true);
+          return result;
+        }
+      });
+    }
+  }
+
+  /**
+   * A command executed by the executor of the shell.
+   */
+  public static class Job {
+    private int id;
+    private final String commandLine;
+    private Future<?> future;
+
+    Job(String command, String[] args) {
+      StringBuilder sb = new StringBuilder(command);
+      for (String arg : args) {
+        sb.append(" ").append(arg);
+      }
+      commandLine = sb.toString();
+    }
+
+    public int getId() {
+      return id;
+    }
+
+    public String getCommandLine() {
+      return commandLine;
+    }
+
+    public boolean isDone() {
+      return future.isDone();
+    }
+
+    public void cancel() {
+      future.cancel(true);
+    }
+
+    public String getStatus() {
+      return future.isCancelled() ? "Cancelled" : future.isDone() ? "Done" : "Running";
+    }
+  }
+
+  private void runCommand(String command, JCommander jc) {
     try {
       executeCommand(command, jc);
     } catch (CloseShellException e) {
@@ -262,6 +832,15 @@ abstract public class Shell implements Runnable, UsageReporter {
     }
   }
 
+  public void displayInvalidUsage(String command, JCommander jc, ParameterException e) {
+    err.print(Ansi.ansi().fg(Ansi.Color.RED));
+    err.println(command + ": invalid usage: " + e.getMessage());
+    err.print(Ansi.ansi().reset());
+    err.flush();
+    out.println();
+    jc.usage();
+  }
+
   public void displayFailure(String command, Throwable t) {
     lastException = t;
     err.print(Ansi.ansi().fg(Ansi.Color.RED).toString());
@@ -21,7 +21,6 @@ import com.beust.jcommander.internal.Lists;
 import jline.ArgumentCompletor;
 import jline.Completor;
 
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -50,9 +49,9 @@ class ShellCompletor implements Completor {
     int index = argumentList.getCursorArgumentIndex();
 
     CompletionResult results = new CompletionResult(cursorArgument);
+    results.setTimeBudget(shell.completionTimeBudget);
 
     String[] args = argumentList.getArguments();
-    System.out.println("Args: " + Arrays.asList(args) + " cursor Argument: " + cursorArgument);
     Shell.getCurrentJCommander().tabComplete(args, index, results);
     results.getResults(candidates);
     
@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import com.beust.jcommander.args.Args1;
+import com.beust.jcommander.command.CommandAdd;
+import com.beust.jcommander.command.CommandCommit;
+import com.beust.jcommander.command.CommandMain;
+
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Properties;
+
+/**
+ * Checks how many bytes the common scenarios allocate, against the budgets of
+ * allocation-budgets.properties. A change that makes a scenario allocate more
+ * than its budget fails the build: either fix it or raise the budget in the
+ * same commit, with the reason.
+ */
+public class AllocationTest {
+  private static final int WARMUP = 5000;
+  private static final int RUNS = 2000;
+
+  private static final String[] ARGS = { "-debug", "-log", "2", "-groups", "unit", "a", "b" };
+
+  @Test
+  public void parse() {
+    checkBudget("parse", new Runnable() {
+      public void run() {
+        new JCommander(new Args1()).parse(ARGS);
+      }
+    });
+  }
+
+  @Test
+  public void sharedParser() {
+    final JCommanderParser<Args1> parser = new JCommanderParser<Args1>(Args1.class);
+    checkBudget("sharedParser", new Runnable() {
+      public void run() {
+        parser.parse(new Args1(), ARGS);
+      }
+    });
+  }
+
+  @Test
+  public void mainParameters() {
+    final String[] args = new String[102];
+    args[0] = "-log";
+    args[1] = "2";
+    for (int i = 2; i < args.length; i++) {
+      args[i] = "file" + i;
+    }
+    checkBudget("mainParameters", new Runnable() {
+      public void run() {
+        new JCommander(new Args1()).parse(args);
+      }
+    });
+  }
+
+  @Test
+  public void atFile() throws IOException {
+    File f = File.createTempFile("jcommander", ".txt");
+    f.deleteOnExit();
+    FileWriter fw = new FileWriter(f);
+    fw.write("-debug\n-log\n2\n-groups\nunit\na\nb\n");
+    fw.close();
+
+    final String atFile = "@" + f.getAbsolutePath();
+    checkBudget("atFile", new Runnable() {
+      public void run() {
+        new JCommander(new Args1()).parse(atFile);
+      }
+    });
+  }
+
+  @Test
+  public void command() {
+    checkBudget("command", new Runnable() {
+      public void run() {
+        JCommander jc = new JCommander(new CommandMain());
+        jc.addCommand("add", new CommandAdd());
+        jc.addCommand("commit", new CommandCommit());
+        jc.parse("-v", "commit", "--amend", "--author=cbeust", "A.java");
+      }
+    });
+  }
+
+  @Test
+  public void usage() {
+    final JCommander jc = new JCommander(new Args1());
+    jc.setProgramName("test");
+    checkBudget("usage", new Runnable() {
+      public void run() {
+        jc.usage(new StringBuilder());
+      }
+    });
+  }
+
+  private void checkBudget(String scenario, Runnable runnable) {
+    long budget = Long.parseLong(getBudgets().getProperty(scenario));
+    long allocated = allocatedBytes(runnable);
+    Assert.assertTrue(allocated <= budget, "The scenario " + scenario + " allocates "
+        + allocated + " bytes per run, over its budget of " + budget + " bytes");
+  }
+
+  /**
+   * @return the average number of bytes allocated by the current thread during
+   * one run, once warmed up.
+   */
+  private long allocatedBytes(Runnable runnable) {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (! (bean instanceof com.sun.management.ThreadMXBean)
+        || ! ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+      throw new SkipException("This JVM doesn't measure the allocated memory");
+    }
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+    long id = Thread.currentThread().getId();
+
+    for (int i = 0; i < WARMUP; i++) {
+      runnable.run();
+    }
+    long start = threads.getThreadAllocatedBytes(id);
+    for (int i = 0; i < RUNS; i++) {
+      runnable.run();
+    }
+    return (threads.getThreadAllocatedBytes(id) - start) / RUNS;
+  }
+
+  private static Properties getBudgets() {
+    Properties result = new Properties();
+    InputStream in = AllocationTest.class.getResourceAsStream("/allocation-budgets.properties");
+    try {
+      try {
+        result.load(in);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return result;
+  }
+}
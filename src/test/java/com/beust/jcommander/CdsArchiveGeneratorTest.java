@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class CdsArchiveGeneratorTest {
+  private static final String CLASS_PATH = "app.jar" + File.pathSeparator + "jcommander.jar";
+
+  @Test
+  public void commands() {
+    CdsArchiveGenerator generator = new CdsArchiveGenerator(CLASS_PATH, "com.example.Main");
+    generator.setJavaCommand("java");
+    generator.addJvmOption("-Dkey=value");
+    File classList = new File("app.classlist");
+    File archive = new File("app.jsa");
+
+    Assert.assertEquals(generator.getClassListCommand(classList, new String[] { "-v", "a" }),
+        Arrays.asList("java", "-Dkey=value", "-Xshare:off",
+            "-XX:DumpLoadedClassList=app.classlist", "-cp", CLASS_PATH, "com.example.Main",
+            "-v", "a"));
+    Assert.assertEquals(generator.getArchiveCommand(classList, archive),
+        Arrays.asList("java", "-Dkey=value", "-Xshare:dump",
+            "-XX:SharedClassListFile=app.classlist", "-XX:SharedArchiveFile=app.jsa",
+            "-cp", CLASS_PATH));
+    Assert.assertEquals(CdsArchiveGenerator.getLaunchOption(archive),
+        "-XX:SharedArchiveFile=app.jsa");
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void directoriesCantBeArchived() throws IOException {
+    String tmp = System.getProperty("java.io.tmpdir");
+    new CdsArchiveGenerator(tmp, "com.example.Main")
+        .generateArchive(new File("app.classlist"), new File("app.jsa"));
+  }
+}
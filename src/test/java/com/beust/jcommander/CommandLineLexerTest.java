@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class CommandLineLexerTest {
+  @DataProvider
+  public static Object[][] lines() {
+    return new Object[][] {
+      { "", new String[0] },
+      { "  \t ", new String[0] },
+      { "add -i A.java", new String[] { "add", "-i", "A.java" } },
+      { "  add   -i\tA.java  ", new String[] { "add", "-i", "A.java" } },
+      { "commit --author=\"Cedric Beust\"", new String[] { "commit", "--author=Cedric Beust" } },
+      { "echo 'a \"b\" \\c'", new String[] { "echo", "a \"b\" \\c" } },
+      { "echo \"a \\\"b\\\" \\\\ \\c\"", new String[] { "echo", "a \"b\" \\ \\c" } },
+      { "echo a\\ b \\'c", new String[] { "echo", "a b", "'c" } },
+      { "echo '' \"\"", new String[] { "echo", "", "" } },
+      { "echo a'b'\"c\"d", new String[] { "echo", "abcd" } },
+      { "# a comment", new String[0] },
+      { "echo a#b # comment\nnext", new String[] { "echo", "a#b", "next" } },
+    };
+  }
+
+  @Test(dataProvider = "lines")
+  public void split(String line, String[] expected) {
+    Assert.assertEquals(CommandLineLexer.split(line), expected);
+  }
+
+  @Test
+  public void reset() {
+    CommandLineLexer lexer = new CommandLineLexer("a 'b c'");
+    Assert.assertEquals(lexer.next(), "a");
+    Assert.assertEquals(lexer.next(), "b c");
+    Assert.assertFalse(lexer.hasNext());
+    lexer.reset("d");
+    Assert.assertEquals(lexer.next(), "d");
+  }
+
+  @Test
+  public void quoted() {
+    CommandLineLexer lexer = new CommandLineLexer("& \"&\" '&' \\&");
+    Assert.assertEquals(lexer.next(), "&");
+    Assert.assertFalse(lexer.isQuoted());
+    for (int i = 0; i < 3; i++) {
+      Assert.assertEquals(lexer.next(), "&");
+      Assert.assertTrue(lexer.isQuoted());
+    }
+  }
+
+  @Test(expectedExceptions = ParameterException.class)
+  public void unterminatedQuote() {
+    CommandLineLexer.split("echo \"a b");
+  }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import com.beust.jcommander.args.Args1;
+import com.beust.jcommander.args.ArgsPassword;
+import com.beust.jcommander.command.CommandAdd;
+import com.beust.jcommander.command.CommandCommit;
+import com.beust.jcommander.command.CommandMain;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+
+public class CompletionDaemonTest {
+  private static CompletionDaemon createDaemon() {
+    CompletionDaemon daemon = new CompletionDaemon();
+    daemon.addProgram("git", new IObjectFactory<JCommander>() {
+      public JCommander createObject() {
+        JCommander jc = new JCommander(new CommandMain());
+        jc.addCommand("add", new CommandAdd());
+        jc.addCommand("commit", new CommandCommit());
+        return jc;
+      }
+    });
+    daemon.addProgram("args1", new IObjectFactory<JCommander>() {
+      public JCommander createObject() {
+        return new JCommander(new Args1());
+      }
+    });
+    daemon.addProgram("password", new IObjectFactory<JCommander>() {
+      public JCommander createObject() {
+        return new JCommander(new ArgsPassword());
+      }
+    });
+    return daemon;
+  }
+
+  @Test
+  public void requests() {
+    CompletionDaemon daemon = createDaemon();
+    Assert.assertEquals(daemon.handle("complete\tgit\t0\tc"), "OK\ncommit\n\n");
+    Assert.assertEquals(daemon.handle("complete\tgit\t1\tcommit\t--a"), "OK\n--amend\n--author\n\n");
+    Assert.assertEquals(daemon.handle("complete\tgit\t1\tcommit"), "OK\n\n");
+    Assert.assertEquals(daemon.handle("validate\tgit\tcommit\t--amend"), "OK\n\n");
+    Assert.assertEquals(daemon.handle("validate\tgit\tfoo"), "ERROR\tExpected a command, got foo\n\n");
+    Assert.assertTrue(daemon.handle("validate\targs1").startsWith("ERROR\t"));
+    Assert.assertEquals(daemon.handle("validate\targs1\t-log\t3\t-groups\tx\\ty"), "OK\n\n");
+    Assert.assertTrue(daemon.handle("validate\targs1\t-log\tx").startsWith("ERROR\t"));
+    Assert.assertEquals(daemon.handle("complete\tfoo\t0"), "ERROR\tUnknown program: foo\n\n");
+    Assert.assertEquals(daemon.handle("complete\tgit\t5"), "ERROR\tInvalid cursor index: 5\n\n");
+    Assert.assertEquals(daemon.handle("ping"), "ERROR\tInvalid request: ping\n\n");
+    Assert.assertEquals(daemon.handle("validate\tgit\t@/etc/passwd"),
+        "ERROR\tExpected a command, got @/etc/passwd\n\n");
+    Assert.assertEquals(daemon.handle("validate\targs1\t-log\t3\t@-"), "ERROR\t@- isn't allowed\n\n");
+    Assert.assertEquals(daemon.handle("validate\tpassword\t-password"),
+        "ERROR\tPassword option -password isn't allowed\n\n");
+  }
+
+  @Test
+  public void socket() throws IOException {
+    File tokenFile = File.createTempFile("jcommander", ".token");
+    CompletionDaemon daemon = createDaemon();
+    daemon.setTokenFile(tokenFile);
+    daemon.start(0);
+    Socket socket = new Socket("127.0.0.1", daemon.getPort());
+    Socket intruder = new Socket("127.0.0.1", daemon.getPort());
+    try {
+      BufferedReader tokenReader =
+          new BufferedReader(new InputStreamReader(new FileInputStream(tokenFile), "UTF-8"));
+      String token = tokenReader.readLine();
+      tokenReader.close();
+      Assert.assertEquals(token.length(), 32);
+
+      Writer out = new OutputStreamWriter(intruder.getOutputStream(), "UTF-8");
+      BufferedReader in = new BufferedReader(new InputStreamReader(intruder.getInputStream(), "UTF-8"));
+      out.write("complete\tgit\t0\t\n");
+      out.flush();
+      Assert.assertEquals(in.readLine(), "ERROR\tInvalid token");
+      Assert.assertEquals(in.readLine(), "");
+      Assert.assertNull(in.readLine());
+
+      out = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+      in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+      out.write(token + "\n");
+      for (int i = 0; i < 2; i++) {
+        out.write("complete\tgit\t0\t\n");
+        out.flush();
+        Assert.assertEquals(in.readLine(), "OK");
+        Assert.assertEquals(in.readLine(), "add");
+        Assert.assertEquals(in.readLine(), "commit");
+        Assert.assertEquals(in.readLine(), "");
+      }
+    } finally {
+      intruder.close();
+      socket.close();
+      daemon.stop();
+    }
+    Assert.assertFalse(tokenFile.exists());
+  }
+
+  @Test
+  public void tooManyConnections() throws IOException {
+    CompletionDaemon daemon = createDaemon();
+    daemon.setTokenFile(File.createTempFile("jcommander", ".token"));
+    daemon.start(0);
+    Socket[] sockets = new Socket[CompletionDaemon.MAX_CONNECTIONS + 1];
+    try {
+      for (int i = 0; i < sockets.length; i++) {
+        sockets[i] = new Socket("127.0.0.1", daemon.getPort());
+      }
+      BufferedReader in = new BufferedReader(
+          new InputStreamReader(sockets[sockets.length - 1].getInputStream(), "UTF-8"));
+      Assert.assertEquals(in.readLine(), "ERROR\tToo many connections");
+    } finally {
+      for (Socket socket : sockets) {
+        if (socket != null) socket.close();
+      }
+      daemon.stop();
+    }
+  }
+
+  @Test
+  public void escaping() {
+    String s = "a\\b\tc\nd";
+    Assert.assertEquals(CompletionDaemon.escape(s), "a\\\\b\\tc\\nd");
+    Assert.assertEquals(CompletionDaemon.unescape(CompletionDaemon.escape(s)), s);
+  }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import com.beust.jcommander.command.CommandAdd;
+import com.beust.jcommander.command.CommandCommit;
+import com.beust.jcommander.completers.FileCompletionProvider;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+public class CompletionScriptGeneratorTest {
+  public enum Level { LOW, HIGH }
+
+  public static class Args {
+    @Parameter(names = { "-v", "--verbose" }, description = "It's verbose")
+    public boolean verbose;
+
+    @Parameter(names = "-level")
+    public Level level;
+
+    @Parameter(names = "-out", completionProvider = FileCompletionProvider.class)
+    public String out;
+
+    @Parameter(names = "-secret", hidden = true)
+    public String secret;
+  }
+
+  @Parameters(separators = "=")
+  public static class SeparatorArgs {
+    @Parameter(names = "--level")
+    public Level level;
+  }
+
+  private JCommander createJCommander() {
+    JCommander jc = new JCommander(new Args());
+    jc.addCommand("add", new CommandAdd());
+    jc.addCommand("commit", new CommandCommit());
+    return jc;
+  }
+
+  @Test
+  public void bash() throws IOException {
+    StringBuilder script = new StringBuilder();
+    new CompletionScriptGenerator(createJCommander(), "my-git").generateBash(script);
+    String s = script.toString();
+
+    Assert.assertTrue(s.contains("'|-level') option=\"$word\"; skip=1 ;;"), s);
+    Assert.assertTrue(s.contains("'|commit') node='commit'; position=0 ;;"), s);
+    Assert.assertTrue(s.contains("'|-level') COMPREPLY=($(compgen -W 'HIGH LOW' -- \"$cur\"))"), s);
+    Assert.assertTrue(s.contains("'|-out') compopt -o filenames"), s);
+    Assert.assertTrue(s.contains("'') COMPREPLY=($(compgen -W '--verbose -level -out -v'"), s);
+    Assert.assertTrue(s.contains("'commit') COMPREPLY=($(compgen -W '--amend --author'"), s);
+    Assert.assertTrue(s.contains("'|'*) COMPREPLY=($(compgen -W 'add commit'"), s);
+    Assert.assertTrue(s.contains("complete -F _my_git_complete 'my-git'"), s);
+    Assert.assertFalse(s.contains("-secret"), s);
+  }
+
+  @Test
+  public void zsh() throws IOException {
+    StringBuilder script = new StringBuilder();
+    new CompletionScriptGenerator(createJCommander(), "my-git").generateZsh(script);
+    String s = script.toString();
+
+    Assert.assertTrue(s.startsWith("#compdef my-git\n"), s);
+    Assert.assertTrue(s.contains("'--verbose:It'\\''s verbose'"), s);
+    Assert.assertTrue(s.contains("'|-level') compadd -- 'HIGH' 'LOW' ;;"), s);
+    Assert.assertTrue(s.contains("'|-out') _files ;;"), s);
+    Assert.assertTrue(s.contains("'commit:Record changes to the repository'"), s);
+    Assert.assertTrue(s.contains("compdef _my_git_complete 'my-git'"), s);
+    Assert.assertFalse(s.contains("-secret"), s);
+  }
+
+  @Test
+  public void separators() throws IOException {
+    JCommander jc = new JCommander(new SeparatorArgs());
+    StringBuilder bash = new StringBuilder();
+    new CompletionScriptGenerator(jc, "my-git").generateBash(bash);
+    String s = bash.toString();
+    Assert.assertTrue(s.contains("'|--level') option=\"$word\"; skip=1 ;;"), s);
+    Assert.assertTrue(s.contains("'|--level='*) prefix='--level='; cur=\"${cur:${#prefix}}\"\n"
+        + "      COMPREPLY=($(compgen -W 'HIGH LOW' -- \"$cur\"))\n"
+        + "      [[ \"$COMP_WORDBREAKS\" == *'='* ]] || COMPREPLY=(\"${COMPREPLY[@]/#/$prefix}\")\n"
+        + "      return ;;"), s);
+
+    StringBuilder zsh = new StringBuilder();
+    new CompletionScriptGenerator(jc, "my-git").generateZsh(zsh);
+    s = zsh.toString();
+    Assert.assertTrue(s.contains(
+        "'|--level='*) compset -P '--level='; compadd -- 'HIGH' 'LOW'; return ;;"), s);
+    Assert.assertTrue(s.contains("if [ \"$funcstack[1]\" = '_my-git' ]; then"), s);
+  }
+}
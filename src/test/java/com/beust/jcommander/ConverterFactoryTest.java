@@ -22,6 +22,8 @@ import com.beust.jcommander.args.ArgsConverterFactory;
 import com.beust.jcommander.args.ArgsMainParameter1;
 import com.beust.jcommander.args.ArgsMainParameter2;
 import com.beust.jcommander.args.IHostPorts;
+import com.beust.jcommander.command.CommandMain;
+import com.beust.jcommander.converters.NoConverter;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -73,14 +75,51 @@ public class ConverterFactoryTest {
     Assert.assertEquals(a.getHostPorts().get(1).port.intValue(), 20);
   }
 
+  /**
+   * Factories added to a JCommander are used by its commands but not by other
+   * JCommander instances.
+   */
+  @Test
+  public void factoriesAreNotShared() {
+    JCommander jc = new JCommander(new ArgsConverterFactory());
+    jc.addConverterFactory(CONVERTER_FACTORY);
+    CommandMain main = new CommandMain();
+    JCommander jc2 = new JCommander(main);
+    ArgsConverterFactory command = new ArgsConverterFactory();
+    jc.addCommand("connect", command);
+
+    Assert.assertEquals(jc.findConverter(HostPort.class), HostPortConverter.class);
+    Assert.assertNull(jc2.findConverter(HostPort.class));
+
+    jc.parse("connect", "-hostport", "example.com:8080");
+    Assert.assertEquals(command.hostPort.host, "example.com");
+  }
+
+  /**
+   * A factory that returns NoConverter is reported as is, not as "no converter found".
+   */
+  @Test
+  public void factoryReturningNoConverter() {
+    JCommander jc = new JCommander(new ArgsConverterFactory());
+    jc.addConverterFactory(new IStringConverterFactory() {
+      public Class<? extends IStringConverter<?>> getConverter(Class forType) {
+        return forType == HostPort.class ? NoConverter.class : null;
+      }
+    });
+
+    Assert.assertEquals(jc.findConverter(HostPort.class), NoConverter.class);
+    Assert.assertEquals(jc.findConverter(HostPort.class), NoConverter.class);
+    Assert.assertNull(jc.findConverter(Thread.class));
+  }
+
   @Test
   public void mainWithoutFactory() {
-    mainWithHostPortParameters(null, new ArgsMainParameter1());
+    mainWithHostPortParameters(null, new ArgsMainParameter2());
   }
 
   @Test
   public void mainWithFactory() {
-    mainWithHostPortParameters(CONVERTER_FACTORY, new ArgsMainParameter2());
+    mainWithHostPortParameters(CONVERTER_FACTORY, new ArgsMainParameter1());
   }
 
 }
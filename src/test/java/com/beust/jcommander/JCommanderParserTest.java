@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import com.beust.jcommander.args.Args1;
+import com.beust.jcommander.args.ArgsDefault;
+import com.beust.jcommander.args.ArgsFailingConverter;
+import com.beust.jcommander.args.ArgsMainParameter2;
+import com.beust.jcommander.args.SeparatorEqual;
+import com.beust.jcommander.command.CommandAdd;
+import com.beust.jcommander.command.CommandCommit;
+import com.beust.jcommander.command.CommandMain;
+import com.beust.jcommander.internal.Lists;
+import com.beust.jcommander.internal.Maps;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JCommanderParserTest {
+  private static final JCommanderParser<Args1> ARGS1 = new JCommanderParser<Args1>(Args1.class);
+
+  @Test
+  public void simpleArgs() {
+    Args1 args = new Args1();
+    ParseResult result = ARGS1.parse(args, "-debug", "-log", "2", "-groups", "unit", "a", "b");
+    Assert.assertSame(result.getObject(), args);
+    Assert.assertNull(result.getParsedCommand());
+    Assert.assertTrue(args.debug);
+    Assert.assertEquals(args.verbose.intValue(), 2);
+    Assert.assertEquals(args.groups, "unit");
+    Assert.assertEquals(args.parameters, Arrays.asList("a", "b"));
+  }
+
+  @Test
+  public void separators() {
+    SeparatorEqual args = new SeparatorEqual();
+    new JCommanderParser<SeparatorEqual>(SeparatorEqual.class).parse(args, "-log=3", "--longoption=10");
+    Assert.assertEquals(args.log.intValue(), 3);
+    Assert.assertEquals(args.longOption.intValue(), 10);
+  }
+
+  @Test
+  public void mainParameterConverter() {
+    ArgsMainParameter2 args = new ArgsMainParameter2();
+    new JCommanderParser<ArgsMainParameter2>(ArgsMainParameter2.class)
+        .parse(args, "a.com:10", "b.com:20");
+    Assert.assertEquals(args.getHostPorts().get(1).host, "b.com");
+    Assert.assertEquals(args.getHostPorts().get(1).port.intValue(), 20);
+  }
+
+  @Test
+  public void stateIsNotKeptBetweenParses() {
+    ARGS1.parse(new Args1(), "-log", "2");
+    try {
+      ARGS1.parse(new Args1(), "-debug");
+      Assert.fail("-log is required");
+    } catch (ParameterException e) {
+      // expected
+    }
+    Args1 args = new Args1();
+    ARGS1.parse(args, "-log", "3", "c");
+    Assert.assertEquals(args.parameters, Arrays.asList("c"));
+  }
+
+  @Test(expectedExceptions = ParameterException.class)
+  public void optionCanOnlyBeSpecifiedOnce() {
+    ARGS1.parse(new Args1(), "-log", "2", "-verbose", "3");
+  }
+
+  @Test
+  public void defaultProvider() {
+    JCommanderParser<ArgsDefault> parser = new JCommanderParser<ArgsDefault>(ArgsDefault.class)
+        .withDefaultProvider(new IDefaultProvider() {
+          public String getDefaultValueFor(String optionName) {
+            return "-debug".equals(optionName) ? "false" : "42";
+          }
+        });
+    ArgsDefault args = new ArgsDefault();
+    parser.parse(args, "-groups", "foo", "f");
+    Assert.assertEquals(args.groups, "foo");
+    Assert.assertEquals(args.level, 42);
+    Assert.assertEquals(args.log.intValue(), 42);
+  }
+
+  @Test
+  public void atFileCharset() throws IOException {
+    File f = File.createTempFile("jcommander", ".txt");
+    f.deleteOnExit();
+    Writer writer = new OutputStreamWriter(new FileOutputStream(f), "UTF-16");
+    writer.write("-log\n2\n-groups\nunit functional\n");
+    writer.close();
+
+    Args1 args = new Args1();
+    ARGS1.withAtFileCharset(Charset.forName("UTF-16")).parse(args, "@" + f.getAbsolutePath());
+    Assert.assertEquals(args.verbose.intValue(), 2);
+    Assert.assertEquals(args.groups, "unit functional");
+  }
+
+  @Test
+  public void commands() {
+    Map<String, JCommanderParser<?>> commands = Maps.newHashMap();
+    commands.put("add", new JCommanderParser<CommandAdd>(CommandAdd.class));
+    commands.put("commit", new JCommanderParser<CommandCommit>(CommandCommit.class));
+    JCommanderParser<CommandMain> parser =
+        new JCommanderParser<CommandMain>(CommandMain.class, commands, null);
+
+    CommandMain main = new CommandMain();
+    ParseResult result = parser.parse(main, "-v", "commit", "--amend", "--author=cbeust",
+        "A.java");
+    Assert.assertTrue(main.verbose);
+    Assert.assertEquals(result.getParsedCommand(), "commit");
+    CommandCommit commit = (CommandCommit) result.getCommandObject();
+    Assert.assertTrue(commit.amend);
+    Assert.assertEquals(commit.author, "cbeust");
+    Assert.assertEquals(commit.files, Arrays.asList("A.java"));
+
+    ParseResult other = parser.parse(new CommandMain(), "commit", "B.java");
+    Assert.assertNotSame(other.getCommandObject(), commit);
+    Assert.assertEquals(((CommandCommit) other.getCommandObject()).files,
+        Arrays.asList("B.java"));
+  }
+
+  @Test(expectedExceptions = ParameterException.class)
+  public void converterIllegalArgument() {
+    new JCommanderParser<ArgsFailingConverter>(ArgsFailingConverter.class)
+        .parse(new ArgsFailingConverter(), "-value", "a");
+  }
+
+  @Test
+  public void parseAll() throws InterruptedException {
+    List<String[]> commandLines = Lists.newArrayList();
+    for (int i = 0; i < 1000; i++) {
+      commandLines.add(i % 100 == 7
+          ? new String[] { "-unknown" }
+          : new String[] { "-log", String.valueOf(i), "f" + i });
+    }
+    List<BatchParseResult<Args1>> results = ARGS1.parseAll(commandLines,
+        new IObjectFactory<Args1>() {
+          public Args1 createObject() {
+            return new Args1();
+          }
+        });
+
+    Assert.assertEquals(results.size(), 1000);
+    for (int i = 0; i < results.size(); i++) {
+      BatchParseResult<Args1> result = results.get(i);
+      if (i % 100 == 7) {
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertNotNull(result.getException());
+      } else {
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertEquals(result.getObject().verbose.intValue(), i);
+        Assert.assertEquals(result.getObject().parameters, Arrays.asList("f" + i));
+      }
+    }
+  }
+
+  @Test
+  public void parseAllReadsAheadOfTheHandlerInAWindow() throws InterruptedException {
+    final int count = JCommanderParser.BATCH_SIZE * (JCommanderParser.MAX_PENDING_BATCHES + 5) + 3;
+    final AtomicInteger read = new AtomicInteger();
+    Iterable<String[]> commandLines = new Iterable<String[]>() {
+      public Iterator<String[]> iterator() {
+        return new Iterator<String[]>() {
+          public boolean hasNext() {
+            return read.get() < count;
+          }
+
+          public String[] next() {
+            return new String[] { "-log", String.valueOf(read.getAndIncrement()) };
+          }
+
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+    final int[] handled = new int[1];
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      ARGS1.parseAll(commandLines, new IObjectFactory<Args1>() {
+        public Args1 createObject() {
+          return new Args1();
+        }
+      }, executor, new IBatchResultHandler<Args1>() {
+        public void onResult(BatchParseResult<Args1> result) {
+          Assert.assertEquals(result.getObject().verbose.intValue(), handled[0]++);
+          Assert.assertTrue(read.get() - handled[0]
+              <= (JCommanderParser.MAX_PENDING_BATCHES + 1) * JCommanderParser.BATCH_SIZE);
+        }
+      });
+    } finally {
+      executor.shutdown();
+    }
+    Assert.assertEquals(handled[0], count);
+  }
+
+  @Test
+  public void parseAllReportsEveryException() throws InterruptedException {
+    List<String[]> commandLines = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      commandLines.add(new String[] { "-log", String.valueOf(i) });
+    }
+    final AtomicInteger created = new AtomicInteger();
+    List<BatchParseResult<Args1>> results = ARGS1.parseAll(commandLines,
+        new IObjectFactory<Args1>() {
+          public Args1 createObject() {
+            if (created.incrementAndGet() == 4) {
+              throw new IllegalStateException("No more objects");
+            }
+            return new Args1();
+          }
+        });
+
+    Assert.assertEquals(results.size(), 10);
+    for (int i = 0; i < results.size(); i++) {
+      if (i == 3) {
+        Assert.assertFalse(results.get(i).isSuccess());
+        Assert.assertNull(results.get(i).getObject());
+        Assert.assertTrue(results.get(i).getException() instanceof IllegalStateException);
+      } else {
+        Assert.assertTrue(results.get(i).isSuccess());
+      }
+    }
+  }
+
+  @Test
+  public void concurrentParses() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Args1>> futures = Lists.newArrayList();
+      for (int i = 0; i < 1000; i++) {
+        final int n = i;
+        futures.add(executor.submit(new Callable<Args1>() {
+          public Args1 call() {
+            Args1 args = new Args1();
+            ARGS1.parse(args, "-log", String.valueOf(n), "-groups", "g" + n, "f" + n);
+            return args;
+          }
+        }));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        Args1 args = futures.get(i).get();
+        Assert.assertEquals(args.verbose.intValue(), i);
+        Assert.assertEquals(args.groups, "g" + i);
+        Assert.assertEquals(args.parameters, Arrays.asList("f" + i));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -23,26 +23,39 @@ import com.beust.jcommander.args.Args2;
 import com.beust.jcommander.args.ArgsArityString;
 import com.beust.jcommander.args.ArgsBooleanArity;
 import com.beust.jcommander.args.ArgsConverter;
+import com.beust.jcommander.args.ArgsCountingConverter;
+import com.beust.jcommander.args.ArgsCountingConverter.CountingConverter;
+import com.beust.jcommander.args.ArgsFailingConverter;
 import com.beust.jcommander.args.ArgsI18N1;
 import com.beust.jcommander.args.ArgsI18N2;
 import com.beust.jcommander.args.ArgsI18N2New;
 import com.beust.jcommander.args.ArgsInherited;
 import com.beust.jcommander.args.ArgsMaster;
 import com.beust.jcommander.args.ArgsMultipleUnparsed;
+import com.beust.jcommander.args.ArgsPassword;
 import com.beust.jcommander.args.ArgsPrivate;
+import com.beust.jcommander.args.ArgsSet;
 import com.beust.jcommander.args.ArgsSlave;
 import com.beust.jcommander.args.ArgsSlaveBogus;
 import com.beust.jcommander.args.SeparatorColon;
 import com.beust.jcommander.args.SeparatorEqual;
 import com.beust.jcommander.args.SeparatorMixed;
 import com.beust.jcommander.args.SlashSeparator;
+import com.beust.jcommander.internal.ClassDescription;
 
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
+import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -79,6 +92,24 @@ public class JCommanderTest {
     Assert.assertEquals(actual, expected);
   }    
 
+  @Test
+  public void usageToAppendable() throws IOException {
+    JCommander jc = new JCommander(new Args1());
+    StringBuilder sb = new StringBuilder();
+    jc.usage(sb);
+    StringWriter writer = new StringWriter();
+    jc.usage(writer);
+    Assert.assertEquals(writer.toString(), sb.toString());
+    Assert.assertTrue(sb.toString().startsWith("Usage: <main class> [options]"));
+
+    jc.setProgramName("main");
+    jc.addCommand("slave", new ArgsSlave());
+    writer = new StringWriter();
+    jc.usage(writer);
+    Assert.assertTrue(writer.toString().startsWith("Usage: main [options] [command]"));
+    Assert.assertTrue(writer.toString().contains("  Commands:\n    slave"));
+  }
+
   /**
    * Make sure that if there are args with multiple names (e.g. "-log" and "-verbose"),
    * the usage will only display it once.
@@ -231,6 +262,30 @@ public class JCommanderTest {
     Assert.assertEquals(args.days.get(1), "Thursday");
   }
 
+  private ArgsCountingConverter countingConverterArgs(boolean cacheConverters) {
+    ArgsCountingConverter args = new ArgsCountingConverter();
+    JCommander jc = new JCommander(args);
+    jc.setCacheConverters(cacheConverters);
+    jc.parse("-n", "1", "-n", "2", "3", "4", "5");
+    Assert.assertEquals(args.options, Arrays.asList(1, 2));
+    Assert.assertEquals(args.numbers, Arrays.asList(3, 4, 5));
+    return args;
+  }
+
+  /**
+   * Converters should be created once per option, not once per value.
+   */
+  @Test
+  public void convertersAreCached() {
+    CountingConverter.instances = 0;
+    countingConverterArgs(true);
+    Assert.assertEquals(CountingConverter.instances, 2);
+
+    CountingConverter.instances = 0;
+    countingConverterArgs(false);
+    Assert.assertEquals(CountingConverter.instances, 5);
+  }
+
   public void booleanArity() {
     ArgsBooleanArity args = new ArgsBooleanArity();
     new JCommander(args, "-debug", "true");
@@ -263,6 +318,13 @@ public class JCommanderTest {
     Assert.assertEquals(a.parameters, Arrays.asList("a", "b", "c"));
   }
 
+  @Test
+  public void setParameters() {
+    ArgsSet a = new ArgsSet();
+    new JCommander(a, "-host", "h1", "-host", "h2", "-host", "h1");
+    Assert.assertEquals(a.hosts, new HashSet<String>(Arrays.asList("h1", "h2")));
+  }
+
   @Test
   public void separatorEqual() {
     SeparatorEqual s = new SeparatorEqual();
@@ -299,6 +361,99 @@ public class JCommanderTest {
     Assert.assertEquals(s.level.intValue(), 42);
   }
 
+  @Test
+  public void atFileWithSeparators() throws IOException {
+    File f = File.createTempFile("jcommander", ".txt");
+    f.deleteOnExit();
+    FileWriter fw = new FileWriter(f);
+    fw.write("-log=3\n--longoption=10\n");
+    fw.close();
+
+    SeparatorEqual s = new SeparatorEqual();
+    new JCommander(s, "@" + f.getAbsolutePath());
+    Assert.assertEquals(s.log.intValue(), 3);
+    Assert.assertEquals(s.longOption.intValue(), 10);
+  }
+
+  @Test
+  public void atFileWithQuotes() throws IOException {
+    File f = File.createTempFile("jcommander", ".txt");
+    f.deleteOnExit();
+    FileWriter fw = new FileWriter(f);
+    fw.write("# Options\n-log 2 -groups \"unit, functional\"\n'a b' c # files\n");
+    fw.close();
+
+    Args1 args = new Args1();
+    JCommander jc = new JCommander(args);
+    jc.setAtFileShellSyntax(true);
+    jc.parse("@" + f.getAbsolutePath(), "d");
+    Assert.assertEquals(args.verbose.intValue(), 2);
+    Assert.assertEquals(args.groups, "unit, functional");
+    Assert.assertEquals(args.parameters, Arrays.asList("a b", "c", "d"));
+  }
+
+  @Test
+  public void atFileLinesAreArguments() throws IOException {
+    File f = File.createTempFile("jcommander", ".txt");
+    f.deleteOnExit();
+    FileWriter fw = new FileWriter(f);
+    fw.write("-log\n2\n-groups\nunit, functional\nC:\\dir\\file.txt\nMy Documents\\a b.txt\n");
+    fw.close();
+
+    Args1 args = new Args1();
+    new JCommander(args, "@" + f.getAbsolutePath());
+    Assert.assertEquals(args.groups, "unit, functional");
+    Assert.assertEquals(args.parameters,
+        Arrays.asList("C:\\dir\\file.txt", "My Documents\\a b.txt"));
+  }
+
+  @Test
+  public void atSignNotExpanded() {
+    Args1 args = new Args1();
+    JCommander jc = new JCommander(args);
+    jc.setExpandAtSign(false);
+    jc.parse("-log", "2", "@/etc/passwd", "@-");
+    Assert.assertEquals(args.parameters, Arrays.asList("@/etc/passwd", "@-"));
+  }
+
+  @Test(expectedExceptions = ParameterException.class)
+  public void passwordPromptDisabled() {
+    JCommander jc = new JCommander(new ArgsPassword());
+    jc.setPasswordPrompt(false);
+    jc.parse("-password");
+  }
+
+  @Test
+  public void converterIllegalArgument() {
+    try {
+      new JCommander(new ArgsFailingConverter(), "-value", "a");
+      Assert.fail("The converter should have failed");
+    } catch (ParameterException e) {
+      Assert.assertEquals(e.getMessage(),
+          "Invalid value for -value: \"a\" (Not a valid value)");
+      Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+  }
+
+  @Test
+  public void atFileFromStandardInput() throws IOException {
+    InputStream in = System.in;
+    try {
+      System.setIn(new ByteArrayInputStream("-log\n2\n-groups\nunit\na\n".getBytes("UTF-8")));
+      Args1 args = new Args1();
+      JCommander jc = new JCommander(args);
+      jc.setAtFileCharset(Charset.forName("UTF-8"));
+      jc.parse("-debug", "@-", "b");
+
+      Assert.assertTrue(args.debug);
+      Assert.assertEquals(args.verbose.intValue(), 2);
+      Assert.assertEquals(args.groups, "unit");
+      Assert.assertEquals(args.parameters, Arrays.asList("a", "b"));
+    } finally {
+      System.setIn(in);
+    }
+  }
+
   @Test
   public void slashParameters() {
     SlashSeparator a = new SlashSeparator();
@@ -325,6 +480,60 @@ public class JCommanderTest {
     Assert.assertEquals(a.verbose.intValue(), -3);
   }
 
+  /**
+   * The reflection done on a class should be shared by all the JCommander
+   * instances, but each instance should still bind to its own object.
+   */
+  @Test
+  public void classDescriptionIsShared() {
+    Assert.assertSame(ClassDescription.getClassDescription(ArgsInherited.class),
+        ClassDescription.getClassDescription(ArgsInherited.class));
+
+    ArgsInherited a1 = new ArgsInherited();
+    new JCommander(a1, "-log", "3", "-child", "2");
+    ArgsInherited a2 = new ArgsInherited();
+    new JCommander(a2, "-log", "4", "-child", "5");
+    Assert.assertEquals(a1.log.intValue(), 3);
+    Assert.assertEquals(a1.child.intValue(), 2);
+    Assert.assertEquals(a2.log.intValue(), 4);
+    Assert.assertEquals(a2.child.intValue(), 5);
+  }
+
+  /**
+   * How the parse time grows with the number of arguments is measured by
+   * LongCommandLineBenchmark in jcommander-benchmarks.
+   */
+  @Test
+  public void parseManyTokens() {
+    int count = 100000;
+    String[] argv = new String[count];
+    for (int i = 0; i < count; i += 4) {
+      argv[i] = "-host";
+      argv[i + 1] = "host" + i;
+      argv[i + 2] = "file" + i;
+      argv[i + 3] = "/tmp/file" + i;
+    }
+    Args2 a = new Args2();
+    new JCommander(a, argv);
+    Assert.assertEquals(a.hosts.size(), count / 4);
+    Assert.assertEquals(a.parameters.size(), count / 2);
+  }
+
+  @Test
+  public void parseTwice() {
+    Args1 args = new Args1();
+    JCommander jc = new JCommander(args, "-log", "2", "a");
+    jc.parse("-log", "3", "b");
+    Assert.assertEquals(args.verbose.intValue(), 3);
+    Assert.assertEquals(args.parameters, Arrays.asList("a", "b"));
+    try {
+      jc.parse("-debug");
+      Assert.fail("-log is required");
+    } catch (ParameterException e) {
+      // expected
+    }
+  }
+
   @Test
   public void requiredMainParameters() {
     //
@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander;
+
+import com.beust.jcommander.args.Args1;
+import com.beust.jcommander.args.ArgsArgumentParameter1;
+import com.beust.jcommander.args.ArgsConverter;
+import com.beust.jcommander.args.ArgsConverterFactory;
+import com.beust.jcommander.args.ArgsI18N2New;
+import com.beust.jcommander.args.ArgsInherited;
+import com.beust.jcommander.args.ArgsMainParameter1;
+import com.beust.jcommander.command.CommandAdd;
+import com.beust.jcommander.command.CommandCommit;
+import com.beust.jcommander.command.CommandMain;
+import com.beust.jcommander.command.TabCompletionTest;
+import com.beust.jcommander.completers.EnumCompletionProvider;
+import com.beust.jcommander.completers.NoCompletionProvider;
+import com.beust.jcommander.internal.ClassDescription;
+import com.beust.jcommander.internal.FieldDescription;
+import com.beust.jcommander.internal.Lists;
+import com.beust.jcommander.internal.Maps;
+import com.beust.jcommander.shell.CompletionResult;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class NativeImageConfigGeneratorTest {
+  private static final IStringConverterFactory HOST_PORT_FACTORY = new IStringConverterFactory() {
+    @SuppressWarnings("unchecked")
+    public <T> Class<? extends IStringConverter<T>> getConverter(Class<T> forType) {
+      return forType == HostPort.class
+          ? (Class<? extends IStringConverter<T>>) (Class<?>) HostPortConverter.class
+          : null;
+    }
+  };
+
+  private static final Pattern ENTRY =
+      Pattern.compile("  \\{\n    \"name\": \"([^\"]+)\"(.*?)\n  \\}", Pattern.DOTALL);
+
+  @Test
+  public void configFiles() throws IOException {
+    NativeImageConfigGenerator generator = new NativeImageConfigGenerator();
+    generator.addClass(ArgsI18N2New.class);
+    generator.addResource("com/beust/jcommander/shell/keybinding.properties");
+
+    StringBuilder reflectConfig = new StringBuilder();
+    generator.generateReflectConfig(reflectConfig);
+    Assert.assertEquals(reflectConfig.toString(), "[\n"
+        + "  {\n"
+        + "    \"name\": \"com.beust.jcommander.args.ArgsI18N2New\",\n"
+        + "    \"allDeclaredFields\": true,\n"
+        + "    \"fields\": [ { \"name\": \"hostName\", \"allowWrite\": true } ],\n"
+        + "    \"methods\": [ { \"name\": \"<init>\", \"parameterTypes\": [] } ]\n"
+        + "  },\n"
+        + "  {\n"
+        + "    \"name\": \"com.beust.jcommander.converters.StringConverter\",\n"
+        + "    \"queryAllDeclaredConstructors\": true,\n"
+        + "    \"methods\": [ { \"name\": \"<init>\", \"parameterTypes\": [] } ]\n"
+        + "  }\n"
+        + "]\n");
+
+    StringBuilder resourceConfig = new StringBuilder();
+    generator.generateResourceConfig(resourceConfig);
+    Assert.assertEquals(resourceConfig.toString(), "{\n"
+        + "  \"resources\": { \"includes\": [ { \"pattern\":"
+        + " \"\\\\Qcom/beust/jcommander/shell/keybinding.properties\\\\E\" } ] },\n"
+        + "  \"bundles\": [ { \"name\": \"MessageBundle\" } ]\n"
+        + "}\n");
+  }
+
+  @Test
+  public void snapshots() throws IOException, URISyntaxException {
+    File classPath = new File(
+        CommandAdd.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    SnapshotGenerator snapshots = new SnapshotGenerator(classPath);
+    snapshots.addClass(CommandAdd.class);
+    List<File> files = snapshots.generate();
+    try {
+      NativeImageConfigGenerator generator = new NativeImageConfigGenerator();
+      generator.addClass(CommandAdd.class);
+      generator.addClass(CommandCommit.class);
+      StringBuilder resourceConfig = new StringBuilder();
+      generator.generateResourceConfig(resourceConfig);
+      Assert.assertEquals(resourceConfig.toString(), "{\n"
+          + "  \"resources\": { \"includes\": [ { \"pattern\":"
+          + " \"\\\\QMETA-INF/jcommander/com.beust.jcommander.command.CommandAdd.bin"
+          + "\\\\E\" } ] },\n"
+          + "  \"bundles\": []\n"
+          + "}\n");
+    } finally {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Parses representative command lines, then checks that the configuration covers
+   * the fields, converters and completion providers that were actually used.
+   */
+  @Test
+  public void coversWhatTheParserTouches() throws IOException {
+    List<JCommander> jcs = Lists.newArrayList();
+    jcs.add(parse(new Args1(), "-debug", "-log", "2", "-groups", "unit", "-long", "3", "a"));
+    jcs.add(parse(new ArgsInherited(), "-child", "2", "-log", "3", "-debug", "-level", "4", "x"));
+    jcs.add(parse(new ArgsArgumentParameter1(), "--debug", "from", "to"));
+    jcs.add(parse(new ArgsConverter(), "-file", "/tmp", "-days", "Mon,Tue"));
+    jcs.add(parse(new ArgsI18N2New(), "-host", "example.com"));
+
+    JCommander jc = new JCommander(new ArgsConverterFactory());
+    jc.addConverterFactory(HOST_PORT_FACTORY);
+    jc.parse("-hostport", "example.com:8080");
+    jcs.add(jc);
+
+    jc = new JCommander(new ArgsMainParameter1());
+    jc.addConverterFactory(HOST_PORT_FACTORY);
+    jc.parse("a.com:10", "b.com:20");
+    jcs.add(jc);
+
+    jc = new JCommander(new CommandMain());
+    jc.addCommand("add", new CommandAdd());
+    jc.addCommand("commit", new CommandCommit());
+    jc.parse("-v", "commit", "--amend", "--author=cbeust", "A.java");
+    jcs.add(jc);
+
+    jc = parse(new TabCompletionTest.Values(), "-host", "h", "-v", "f");
+    jc.tabComplete(new String[] { "-color", "" }, 1, new CompletionResult(""));
+    jc.tabComplete(new String[] { "-host", "" }, 1, new CompletionResult(""));
+    jcs.add(jc);
+
+    NativeImageConfigGenerator generator = new NativeImageConfigGenerator();
+    for (JCommander j : jcs) {
+      generator.addJCommander(j);
+    }
+    StringBuilder reflectConfig = new StringBuilder();
+    generator.generateReflectConfig(reflectConfig);
+    Map<String, String> entries = parseEntries(reflectConfig.toString());
+    StringBuilder resourceConfig = new StringBuilder();
+    generator.generateResourceConfig(resourceConfig);
+
+    for (JCommander j : jcs) {
+      assertCovered(j, entries, resourceConfig.toString());
+    }
+  }
+
+  private static JCommander parse(Object object, String... args) {
+    JCommander result = new JCommander(object);
+    result.parse(args);
+    result.usage(new StringBuilder());
+    return result;
+  }
+
+  private static void assertCovered(JCommander jc, Map<String, String> entries,
+      String resourceConfig) {
+    for (Object object : jc.getObjects()) {
+      Class<?> cls = object.getClass();
+      assertContains(entries, cls, "{ \"name\": \"<init>\", \"parameterTypes\": [] }");
+      for (Class<?> c = cls; c != Object.class; c = c.getSuperclass()) {
+        assertContains(entries, c, "\"allDeclaredFields\": true");
+      }
+      String bundle = ClassDescription.getClassDescription(cls).getResourceBundleName();
+      if (bundle != null) {
+        Assert.assertTrue(resourceConfig.contains("{ \"name\": \"" + bundle + "\" }"), bundle);
+      }
+    }
+
+    List<FieldDescription> fields = Lists.newArrayList();
+    for (ParameterDescription pd : jc.getParameters()) {
+      fields.add(pd.getFieldDescription());
+    }
+    for (ArgumentDescription ad : jc.getArguments().values()) {
+      fields.add(ad.getFieldDescription());
+    }
+    if (jc.getMainParameterFieldDescription() != null) {
+      fields.add(jc.getMainParameterFieldDescription());
+    }
+    for (FieldDescription fd : fields) {
+      assertContains(entries, fd.getField().getDeclaringClass(),
+          "{ \"name\": \"" + fd.getField().getName() + "\", \"allowWrite\": true }");
+
+      ICompletionProvider provider = fd.getCompletionProvider();
+      if (provider instanceof EnumCompletionProvider) {
+        Class<?> type = fd.getType().isEnum() ? fd.getType() : fd.getElementType();
+        assertContains(entries, type, "{ \"name\": \"values\", \"parameterTypes\": [] }");
+      } else if (! (provider instanceof NoCompletionProvider)) {
+        assertContains(entries, provider.getClass(),
+            "{ \"name\": \"<init>\", \"parameterTypes\": [] }");
+      }
+    }
+
+    for (Class<?> converter : jc.getConverterClasses()) {
+      assertContains(entries, converter, "\"queryAllDeclaredConstructors\": true");
+      @SuppressWarnings("unchecked")
+      Constructor<?> constructor = ParseCore.findConverterConstructor(
+          (Class<? extends IStringConverter<?>>) converter);
+      String parameterTypes = constructor.getParameterTypes().length == 0
+          ? "[]"
+          : "[\"" + constructor.getParameterTypes()[0].getName() + "\"]";
+      assertContains(entries, converter,
+          "{ \"name\": \"<init>\", \"parameterTypes\": " + parameterTypes + " }");
+    }
+
+    for (String name : jc.getCommandNames()) {
+      assertCovered(jc.getCommand(name), entries, resourceConfig);
+    }
+  }
+
+  private static void assertContains(Map<String, String> entries, Class<?> cls, String member) {
+    String entry = entries.get(cls.getName());
+    Assert.assertNotNull(entry, "No entry for " + cls.getName());
+    Assert.assertTrue(entry.contains(member), cls.getName() + " doesn't contain " + member);
+  }
+
+  /**
+   * @return the members of each entry of reflect-config.json, per class name.
+   */
+  private static Map<String, String> parseEntries(String reflectConfig) {
+    Map<String, String> result = Maps.newHashMap();
+    Matcher m = ENTRY.matcher(reflectConfig);
+    while (m.find()) {
+      result.put(m.group(1), m.group(2));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.args;
+
+import com.beust.jcommander.IStringConverter;
+import com.beust.jcommander.Parameter;
+
+import java.util.List;
+
+public class ArgsCountingConverter {
+
+  /**
+   * A converter that counts how many times it was instantiated.
+   */
+  public static class CountingConverter implements IStringConverter<Integer> {
+    public static int instances = 0;
+
+    public CountingConverter() {
+      instances++;
+    }
+
+    public Integer convert(String value) {
+      return Integer.valueOf(value);
+    }
+  }
+
+  @Parameter(converter = CountingConverter.class)
+  public List<Integer> numbers;
+
+  @Parameter(names = "-n", converter = CountingConverter.class)
+  public List<Integer> options;
+}
@@ -18,6 +18,7 @@
 
 package com.beust.jcommander.command;
 
+import com.beust.jcommander.ICommandFactory;
 import com.beust.jcommander.JCommander;
 
 import org.testng.Assert;
@@ -63,6 +64,34 @@ public class CommandTest {
     Assert.assertEquals(commit.files, Arrays.asList("A.java", "B.java"));
   }
 
+  @Test
+  public void lazyCommands() {
+    final int[] created = new int[1];
+    JCommander jc = new JCommander(new CommandMain());
+    jc.addCommand("add", new ICommandFactory() {
+      public Object createCommand() {
+        created[0]++;
+        return new CommandAdd();
+      }
+    }, "Add file contents to the index");
+    jc.addCommand("commit", CommandCommit.class.getName(), null);
+
+    jc.usage(new StringBuilder());
+    Assert.assertEquals(created[0], 0);
+
+    jc.parse("commit", "--amend", "A.java");
+    Assert.assertEquals(created[0], 0);
+    Assert.assertEquals(jc.getParsedCommand(), "commit");
+    CommandCommit commit = (CommandCommit) jc.getCommand("commit").getObjects().get(0);
+    Assert.assertTrue(commit.amend);
+    Assert.assertEquals(commit.files, Arrays.asList("A.java"));
+
+    JCommander add = jc.getCommand("add");
+    Assert.assertEquals(created[0], 1);
+    Assert.assertSame(jc.getCommand("add"), add);
+    Assert.assertNull(jc.getCommand("push"));
+  }
+
   public static void main(String[] args) {
     new CommandTest().commandTest2();
   }
@@ -18,13 +18,20 @@
 
 package com.beust.jcommander.command;
 
+import com.beust.jcommander.ICompletionProvider;
 import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.completers.FileCompletionProvider;
 import com.beust.jcommander.shell.CompletionResult;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TabCompletionTest {
 
@@ -43,6 +50,158 @@ public class TabCompletionTest {
     assertTabCompletes(new String[]{"commit", "--a"}, 1, Arrays.asList("mend", "uthor"));
   }
 
+  @Test
+  public void tabCompleteCommandOptionAfterMainOption() {
+    assertTabCompletes(new String[]{"-v", "commit", "--a"}, 2, Arrays.asList("mend", "uthor"));
+  }
+
+  public enum Color { RED, GREEN, BLUE }
+
+  public static class Hosts implements ICompletionProvider {
+    public void complete(String prefix, CompletionResult results) {
+      results.addCandidates(Arrays.asList("alpha", "beta", "gamma"));
+    }
+  }
+
+  public static class SlowHosts implements ICompletionProvider {
+    public void complete(String prefix, CompletionResult results) {
+      results.addCandidate("delta");
+      try {
+        Thread.sleep(5000);
+      } catch (InterruptedException e) {
+      }
+      results.addCandidate("epsilon");
+    }
+  }
+
+  /**
+   * Ignores the interruption until it's released.
+   */
+  public static class HungHosts implements ICompletionProvider {
+    static final AtomicInteger calls = new AtomicInteger();
+    static final CountDownLatch released = new CountDownLatch(1);
+
+    public void complete(String prefix, CompletionResult results) {
+      calls.incrementAndGet();
+      while (true) {
+        try {
+          released.await();
+          return;
+        } catch (InterruptedException e) {
+        }
+      }
+    }
+  }
+
+  public static class Values {
+    @Parameter(names = "-color")
+    public Color color;
+
+    @Parameter(names = "-host", completionProvider = Hosts.class)
+    public String host;
+
+    @Parameter(names = "-slow", completionProvider = SlowHosts.class)
+    public String slow;
+
+    @Parameter(names = "-hung", completionProvider = HungHosts.class)
+    public String hung;
+
+    @Parameter(names = "-v")
+    public boolean verbose;
+
+    @Parameter(completionProvider = FileCompletionProvider.class)
+    public List<String> files;
+  }
+
+  @Test
+  public void tabCompleteOptionValues() {
+    assertValuesComplete(new String[] { "-color", "" }, 1, Arrays.asList("BLUE", "GREEN", "RED"));
+    assertValuesComplete(new String[] { "-color", "G" }, 1, Arrays.asList("REEN"));
+    assertValuesComplete(new String[] { "-v", "-host" }, 2, Arrays.asList("alpha", "beta", "gamma"));
+    assertValuesComplete(new String[] { "-host", "b" }, 1, Arrays.asList("eta"));
+    assertValuesComplete(new String[] { "-host", "b", "-co" }, 2, Arrays.asList("lor"));
+  }
+
+  @Test
+  public void tabCompleteTimeBudget() {
+    CompletionResult results = new CompletionResult(null);
+    results.setTimeBudget(100);
+    long start = System.currentTimeMillis();
+    new JCommander(new Values()).tabComplete(new String[] { "-slow" }, 1, results);
+    Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+    Assert.assertEquals(results.getResults(), Arrays.asList("delta"));
+  }
+
+  @Test
+  public void tabCompleteSkipsHungProvider() {
+    JCommander jc = new JCommander(new Values());
+    try {
+      for (int i = 0; i < 3; i++) {
+        CompletionResult results = new CompletionResult(null);
+        results.setTimeBudget(50);
+        jc.tabComplete(new String[] { "-hung" }, 1, results);
+        Assert.assertEquals(results.getResults().size(), 0);
+      }
+      // The provider is only called again once its first call is done
+      Assert.assertEquals(HungHosts.calls.get(), 1);
+    } finally {
+      HungHosts.released.countDown();
+    }
+  }
+
+  @Test
+  public void tabCompleteFiles() throws IOException {
+    File dir = File.createTempFile("jcommander", "");
+    dir.delete();
+    new File(dir, "sub").mkdirs();
+    new File(dir, "sample.txt").createNewFile();
+    new File(dir, "other.txt").createNewFile();
+    try {
+      String prefix = dir.getPath() + File.separator + "s";
+      CompletionResult results = new CompletionResult(prefix);
+      new JCommander(new Values()).tabComplete(new String[] { prefix }, 0, results);
+      Assert.assertEquals(results.getResults(), Arrays.asList("ample.txt", "ub/"));
+    } finally {
+      new File(dir, "sub").delete();
+      new File(dir, "sample.txt").delete();
+      new File(dir, "other.txt").delete();
+      dir.delete();
+    }
+  }
+
+  @Test
+  public void tabCompleteFilesAfterChange() throws IOException {
+    File dir = File.createTempFile("jcommander", "");
+    dir.delete();
+    dir.mkdirs();
+    File first = new File(dir, "a1");
+    File second = new File(dir, "a2");
+    first.createNewFile();
+    try {
+      String prefix = dir.getPath() + File.separator + "a";
+      CompletionResult results = new CompletionResult(prefix);
+      new JCommander(new Values()).tabComplete(new String[] { prefix }, 0, results);
+      Assert.assertEquals(results.getResults(), Arrays.asList("1"));
+
+      second.createNewFile();
+      results = new CompletionResult(prefix);
+      new JCommander(new Values()).tabComplete(new String[] { prefix }, 0, results);
+      Assert.assertEquals(results.getResults(), Arrays.asList("1", "2"));
+    } finally {
+      first.delete();
+      second.delete();
+      dir.delete();
+    }
+  }
+
+  private void assertValuesComplete(String[] args, int cursorArgument, List<String> expected) {
+    String prefix = cursorArgument < args.length && args[cursorArgument].length() > 0
+        ? args[cursorArgument] : null;
+    CompletionResult results = new CompletionResult(prefix);
+    new JCommander(new Values()).tabComplete(args, cursorArgument, results);
+    Assert.assertEquals(results.getResults(), expected);
+  }
+
   /**
    * Asserts that when the given arguments are being typed on the console and the cursor is on the given argument
    * (or beyond the current arguments to indicate that the user is typing a new argument) then assert that
@@ -0,0 +1,192 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import com.beust.jcommander.Argument;
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.SnapshotGenerator;
+import com.beust.jcommander.args.ArgsArgumentParameter1;
+import com.beust.jcommander.args.ArgsI18N2New;
+import com.beust.jcommander.args.ArgsInherited;
+import com.beust.jcommander.command.CommandAdd;
+import com.beust.jcommander.command.CommandCommit;
+import com.beust.jcommander.command.CommandMain;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+public class ClassDescriptionSnapshotTest {
+
+  @DataProvider
+  public Object[][] classes() {
+    return new Object[][] {
+        { ArgsInherited.class },
+        { ArgsArgumentParameter1.class },
+        { ArgsI18N2New.class },
+        { CommandCommit.class },
+    };
+  }
+
+  @Test(dataProvider = "classes")
+  public void roundTrip(Class<?> cls) throws IOException {
+    ClassDescription expected = ClassDescription.getClassDescription(cls);
+    ClassDescription actual =
+        ClassDescriptionSnapshot.read(cls, new ByteArrayInputStream(write(expected)), true);
+    assertSameDescription(actual, expected);
+  }
+
+  @Test
+  public void staleSnapshotsAreIgnored() throws IOException {
+    byte[] snapshot = write(ClassDescription.getClassDescription(ArgsInherited.class));
+    snapshot[getSizesOffset(ArgsInherited.class) + 7]++; // in the size of ArgsInherited.class
+    Assert.assertNull(ClassDescriptionSnapshot.read(ArgsInherited.class,
+        new ByteArrayInputStream(snapshot), false));
+
+    // A snapshot of another class
+    snapshot = write(ClassDescription.getClassDescription(ArgsInherited.class));
+    Assert.assertNull(ClassDescriptionSnapshot.read(ArgsI18N2New.class,
+        new ByteArrayInputStream(snapshot), false));
+  }
+
+  @Test
+  public void hashIsOnlyCheckedWhenVerifying() throws IOException {
+    byte[] snapshot = write(ClassDescription.getClassDescription(ArgsInherited.class));
+    // ArgsInherited and its super class ArgsDefault
+    snapshot[getSizesOffset(ArgsInherited.class) + 2 * 8 + 7]++;
+    Assert.assertNotNull(ClassDescriptionSnapshot.read(ArgsInherited.class,
+        new ByteArrayInputStream(snapshot), false));
+    Assert.assertNull(ClassDescriptionSnapshot.read(ArgsInherited.class,
+        new ByteArrayInputStream(snapshot), true));
+  }
+
+  @Test
+  public void classFileSize() throws IOException {
+    Assert.assertTrue(ClassDescriptionSnapshot.getClassFileSize(ArgsInherited.class) > 0);
+    // In the TestNG jar
+    Assert.assertTrue(ClassDescriptionSnapshot.getClassFileSize(Test.class) > 0);
+    Assert.assertEquals(ClassDescriptionSnapshot.getClassFileSize(String.class), -1);
+  }
+
+  /**
+   * @return the offset of the sizes of the class files in a snapshot of the class:
+   * after the magic number, the version, the name of the class and the number of classes.
+   */
+  private static int getSizesOffset(Class<?> cls) {
+    return 4 + 4 + 2 + cls.getName().length() + 4;
+  }
+
+  @Test
+  public void generator() throws IOException {
+    File directory = File.createTempFile("jcommander", "");
+    directory.delete();
+    JCommander jc = new JCommander(new CommandMain());
+    jc.addCommand("add", new CommandAdd());
+    jc.addCommand("commit", new CommandCommit());
+
+    SnapshotGenerator generator = new SnapshotGenerator(directory);
+    generator.addJCommander(jc);
+    List<File> files = generator.generate();
+
+    List<Class<?>> classes = Arrays.<Class<?>>asList(CommandMain.class, CommandAdd.class,
+        CommandCommit.class);
+    Assert.assertEquals(files.size(), classes.size());
+    for (int i = 0; i < files.size(); i++) {
+      Class<?> cls = classes.get(i);
+      File file = files.get(i);
+      file.deleteOnExit();
+      Assert.assertEquals(file, new File(directory, ClassDescriptionSnapshot.getResourceName(cls)));
+      InputStream in = new FileInputStream(file);
+      try {
+        assertSameDescription(ClassDescriptionSnapshot.read(cls, in, true),
+            ClassDescription.getClassDescription(cls));
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  private static byte[] write(ClassDescription description) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ClassDescriptionSnapshot.write(description, out);
+    return out.toByteArray();
+  }
+
+  private static void assertSameDescription(ClassDescription actual, ClassDescription expected) {
+    Assert.assertNotNull(actual);
+    Assert.assertEquals(actual.getType(), expected.getType());
+    Assert.assertEquals(actual.getSeparators(), expected.getSeparators());
+    Assert.assertEquals(actual.getOptionPrefixes(), expected.getOptionPrefixes());
+    Assert.assertEquals(actual.getResourceBundleName(), expected.getResourceBundleName());
+    Assert.assertEquals(actual.getCommandDescription(), expected.getCommandDescription());
+
+    Assert.assertEquals(actual.getFields().size(), expected.getFields().size());
+    for (int i = 0; i < actual.getFields().size(); i++) {
+      FieldDescription a = actual.getFields().get(i);
+      FieldDescription e = expected.getFields().get(i);
+      Assert.assertEquals(a.getDeclaringClass(), e.getDeclaringClass());
+      Assert.assertEquals(a.getName(), e.getName());
+      Assert.assertEquals(a.getType(), e.getType());
+      Assert.assertEquals(a.getElementType(), e.getElementType());
+      Assert.assertEquals(a.getField(), e.getField());
+      assertSameParameter(a.getParameter(), e.getParameter());
+      assertSameArgument(a.getArgument(), e.getArgument());
+    }
+  }
+
+  private static void assertSameParameter(Parameter actual, Parameter expected) {
+    if (expected == null) {
+      Assert.assertNull(actual);
+      return;
+    }
+    Assert.assertEquals(actual.names(), expected.names());
+    Assert.assertEquals(actual.description(), expected.description());
+    Assert.assertEquals(actual.required(), expected.required());
+    Assert.assertEquals(actual.descriptionKey(), expected.descriptionKey());
+    Assert.assertEquals(actual.arity(), expected.arity());
+    Assert.assertEquals(actual.password(), expected.password());
+    Assert.assertEquals(actual.converter(), expected.converter());
+    Assert.assertEquals(actual.hidden(), expected.hidden());
+    Assert.assertEquals(actual.completionProvider(), expected.completionProvider());
+  }
+
+  private static void assertSameArgument(Argument actual, Argument expected) {
+    if (expected == null) {
+      Assert.assertNull(actual);
+      return;
+    }
+    Assert.assertEquals(actual.index(), expected.index());
+    Assert.assertEquals(actual.name(), expected.name());
+    Assert.assertEquals(actual.description(), expected.description());
+    Assert.assertEquals(actual.required(), expected.required());
+    Assert.assertEquals(actual.descriptionKey(), expected.descriptionKey());
+    Assert.assertEquals(actual.converter(), expected.converter());
+    Assert.assertEquals(actual.completionProvider(), expected.completionProvider());
+  }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Field;
+
+public class FieldAccessorTest {
+  public static class Target {
+    private int count;
+    public String name;
+  }
+
+  private static Field getField(String name) throws NoSuchFieldException {
+    Field result = Target.class.getDeclaredField(name);
+    result.setAccessible(true);
+    return result;
+  }
+
+  @Test
+  public void methodHandles() throws NoSuchFieldException {
+    Target target = new Target();
+    FieldAccessor count = FieldAccessor.create(getField("count"));
+    FieldAccessor name = FieldAccessor.create(getField("name"));
+    Assert.assertTrue(count instanceof MethodHandleFieldAccessor);
+    count.set(target, 3);
+    name.set(target, "a");
+    Assert.assertEquals(count.get(target), 3);
+    Assert.assertEquals(target.name, "a");
+  }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class OptionIndexTest {
+
+  @Test
+  public void exactLookup() {
+    OptionIndex<String> index = new OptionIndex<String>();
+    index.put("-log", "log");
+    index.put("-long", "long");
+    index.put("--longoption", "longoption");
+
+    Assert.assertEquals(index.size(), 3);
+    Assert.assertEquals(index.get("-log"), "log");
+    Assert.assertEquals(index.get("-long"), "long");
+    Assert.assertNull(index.get("-lo"));
+    Assert.assertNull(index.get("-longer"));
+  }
+
+  @Test
+  public void longestPrefixWins() {
+    OptionIndex<String> index = new OptionIndex<String>();
+    index.put("-l", "l");
+    index.put("-log", "log");
+
+    Assert.assertEquals(index.findLongestPrefixOf("-log=3"), "log");
+    Assert.assertEquals(index.findLongestPrefixOf("-lo"), "l");
+    Assert.assertEquals(index.findLongestPrefixOf("-l"), "l");
+    Assert.assertNull(index.findLongestPrefixOf("-x"));
+    Assert.assertNull(index.findLongestPrefixOf(""));
+  }
+
+  @Test
+  public void manyOptions() {
+    OptionIndex<Integer> index = new OptionIndex<Integer>();
+    for (int i = 0; i < 10000; i++) {
+      index.put("-option" + i, i);
+    }
+
+    Assert.assertEquals(index.size(), 10000);
+    for (int i = 0; i < 10000; i += 7) {
+      Assert.assertEquals(index.get("-option" + i).intValue(), i);
+      Assert.assertEquals(index.findLongestPrefixOf("-option" + i + ":value").intValue(), i);
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PrefixIndexTest {
+
+  @Test
+  public void startingWith() {
+    PrefixIndex index = new PrefixIndex(Arrays.asList("commit", "add", "config", "co", "b"));
+
+    Assert.assertEquals(index.startingWith("co"), Arrays.asList("co", "commit", "config"));
+    Assert.assertEquals(index.startingWith("com"), Arrays.asList("commit"));
+    Assert.assertEquals(index.startingWith("x"), Collections.emptyList());
+    Assert.assertEquals(index.startingWith(null),
+        Arrays.asList("add", "b", "co", "commit", "config"));
+  }
+
+  @Test
+  public void successorOverflow() {
+    PrefixIndex index = new PrefixIndex(Arrays.asList("a\uffff", "a\uffffb", "b"));
+
+    Assert.assertEquals(index.startingWith("a\uffff"), Arrays.asList("a\uffff", "a\uffffb"));
+    Assert.assertEquals(index.startingWith("\uffff"), Collections.emptyList());
+  }
+
+  @Test
+  public void manyNames() {
+    List<String> names = Lists.newArrayList();
+    for (int i = 0; i < 10000; i++) {
+      names.add("-option" + i);
+    }
+    PrefixIndex index = new PrefixIndex(names);
+
+    Assert.assertEquals(index.size(), 10000);
+    Assert.assertEquals(index.startingWith("-option999"),
+        Arrays.asList("-option999", "-option9990", "-option9991", "-option9992", "-option9993",
+            "-option9994", "-option9995", "-option9996", "-option9997", "-option9998",
+            "-option9999"));
+  }
+}
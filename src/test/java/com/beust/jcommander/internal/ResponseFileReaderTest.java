@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.internal;
+
+import com.beust.jcommander.ParameterException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+public class ResponseFileReaderTest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final String CONTENT = "-host\r\nhôte\n日本語\rlast";
+  private static final List<String> LINES =
+      Arrays.asList("-host", "hôte", "日本語", "last");
+
+  private File createFile(String content, Charset charset) throws IOException {
+    File result = File.createTempFile("jcommander", ".txt");
+    result.deleteOnExit();
+    FileOutputStream out = new FileOutputStream(result);
+    out.write(content.getBytes(charset.name()));
+    out.close();
+    return result;
+  }
+
+  private List<String> readAll(ResponseFileReader reader) {
+    List<String> result = Lists.newArrayList();
+    while (reader.hasNext()) {
+      result.add(reader.next());
+    }
+    return result;
+  }
+
+  @Test
+  public void readLines() throws IOException {
+    File f = createFile(CONTENT, UTF_8);
+    Assert.assertEquals(readAll(new ResponseFileReader(f.getAbsolutePath(), UTF_8)), LINES);
+  }
+
+  /**
+   * Windows smaller than a character force the decoder to carry incomplete
+   * characters over to the next window.
+   */
+  @Test
+  public void readLinesWithSmallWindows() throws IOException {
+    File f = createFile(CONTENT, UTF_8);
+    for (int windowSize = 1; windowSize < 8; windowSize++) {
+      ResponseFileReader reader = new ResponseFileReader(f.getAbsolutePath(), UTF_8, windowSize);
+      Assert.assertEquals(readAll(reader), LINES);
+    }
+  }
+
+  @Test
+  public void explicitCharset() throws IOException {
+    Charset utf16 = Charset.forName("UTF-16");
+    File f = createFile(CONTENT, utf16);
+    Assert.assertEquals(readAll(new ResponseFileReader(f.getAbsolutePath(), utf16, 5)), LINES);
+  }
+
+  @Test
+  public void emptyFile() throws IOException {
+    File f = createFile("", UTF_8);
+    Assert.assertFalse(new ResponseFileReader(f.getAbsolutePath(), UTF_8).hasNext());
+  }
+
+  @Test
+  public void standardInput() throws IOException {
+    InputStream in = System.in;
+    try {
+      System.setIn(new ByteArrayInputStream(CONTENT.getBytes("UTF-8")));
+      Assert.assertEquals(readAll(new ResponseFileReader(ResponseFileReader.STDIN, UTF_8)), LINES);
+    } finally {
+      System.setIn(in);
+    }
+  }
+
+  @Test(expectedExceptions = ParameterException.class)
+  public void missingFile() {
+    new ResponseFileReader("/does/not/exist", UTF_8);
+  }
+}
@@ -0,0 +1,275 @@
+/**
+ * Copyright (C) 2010 the original author or authors.
+ * See the notice.md file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.beust.jcommander.shell;
+
+import com.beust.jcommander.Command;
+import com.beust.jcommander.ICommandFactory;
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.internal.Lists;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ShellTest {
+  public static class Echo implements Runnable {
+    @Parameter(names = "-n")
+    public int n = 1;
+
+    @Parameter
+    public List<String> words = Lists.newArrayList();
+
+    private final List<String> m_output;
+
+    public Echo(List<String> output) {
+      m_output = output;
+    }
+
+    public void run() {
+      m_output.add(n + ":" + words);
+    }
+  }
+
+  private static class TestShell extends Shell {
+    final List<String> output = Collections.synchronizedList(Lists.<String>newArrayList());
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch finished = new CountDownLatch(1);
+
+    @Override
+    public String getShellName() {
+      return "test";
+    }
+
+    @Override
+    public String[] getDisplayedCommands() {
+      return new String[] { "echo", "exit" };
+    }
+
+    @Override
+    public JCommander createSubCommand(String name) {
+      if ("echo".equals(name)) {
+        return new JCommander(new Echo(output));
+      }
+      if ("wait".equals(name)) {
+        return new JCommander(new Runnable() {
+          public void run() {
+            started.countDown();
+            try {
+              Thread.sleep(10000);
+              output.add("timeout");
+            } catch (InterruptedException e) {
+              output.add("interrupted");
+            }
+            finished.countDown();
+          }
+        });
+      }
+      if ("exit".equals(name)) {
+        return new JCommander(new Runnable() {
+          public void run() {
+            throw new CloseShellException();
+          }
+        });
+      }
+      return null;
+    }
+  }
+
+  @Test
+  public void executeStream() {
+    TestShell shell = new TestShell();
+    shell.executeStream(new StringReader(
+        "echo a b\n\n  echo -n 2 c\necho -x\nfoo\n# comment\necho \"d e\"\necho 'f\n"
+        + "exit\necho g\n"), 2);
+    Assert.assertEquals(shell.output, Arrays.asList("1:[a, b]", "2:[c]", "1:[d e]"));
+  }
+
+  /**
+   * Serves some lines, then blocks like a terminal until it's closed.
+   */
+  private static class BlockingReader extends Reader {
+    private final Reader m_lines;
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch closed = new CountDownLatch(1);
+    final CountDownLatch released = new CountDownLatch(1);
+
+    BlockingReader(String lines) {
+      m_lines = new StringReader(lines);
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+      int result = m_lines.read(buffer, offset, length);
+      if (result != -1) return result;
+      blocked.countDown();
+      try {
+        closed.await();
+      } catch (InterruptedException e) {
+        // Like a terminal, a blocked read isn't interrupted
+      }
+      released.countDown();
+      throw new IOException("Stream closed");
+    }
+
+    @Override
+    public void close() {
+      closed.countDown();
+    }
+  }
+
+  @Test
+  public void closeShellWhileReading() throws InterruptedException {
+    final BlockingReader reader = new BlockingReader("echo a\nexit\n");
+    TestShell shell = new TestShell() {
+      @Override
+      public JCommander createSubCommand(String name) {
+        if ("exit".equals(name)) {
+          return new JCommander(new Runnable() {
+            public void run() {
+              try {
+                reader.blocked.await(5, TimeUnit.SECONDS);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              throw new CloseShellException();
+            }
+          });
+        }
+        return super.createSubCommand(name);
+      }
+    };
+    shell.executeStream(reader, 2);
+
+    Assert.assertTrue(reader.released.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(shell.output, Arrays.asList("1:[a]"));
+  }
+
+  @Test
+  public void executeLongStream() {
+    StringBuilder input = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      input.append("echo ").append(i).append("\n");
+    }
+    TestShell shell = new TestShell();
+    shell.executeStream(new StringReader(input.toString()), 4);
+    Assert.assertEquals(shell.output.size(), 1000);
+    Assert.assertEquals(shell.output.get(999), "1:[999]");
+  }
+
+  @Test
+  public void backgroundJobs() throws InterruptedException {
+    TestShell shell = new TestShell();
+    shell.executeLine("echo a");
+    shell.executeLine("wait &");
+    Assert.assertTrue(shell.started.await(5, TimeUnit.SECONDS));
+    shell.executeLine("jobs");
+    shell.executeLine("kill 1");
+    Assert.assertTrue(shell.finished.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(shell.output, Arrays.asList("1:[a]", "interrupted"));
+  }
+
+  @Test
+  public void quotedAmpersandIsAnArgument() {
+    TestShell shell = new TestShell();
+    shell.executeLine("echo \"&\"");
+    shell.executeLine("echo a \\&");
+    Assert.assertEquals(shell.output, Arrays.asList("1:[&]", "1:[a, &]"));
+  }
+
+  @Test
+  public void commandsHideBuiltins() {
+    TestShell shell = new TestShell() {
+      @Override
+      public JCommander createSubCommand(String name) {
+        return super.createSubCommand("jobs".equals(name) ? "echo" : name);
+      }
+    };
+    shell.executeLine("jobs a");
+    shell.executeLine("fg");
+    Assert.assertEquals(shell.output, Arrays.asList("1:[a]"));
+  }
+
+  @Command(description = "Counts")
+  public static class Count implements Runnable {
+    @Parameter(names = "-n")
+    public int n = 1;
+
+    private final List<String> m_output;
+
+    public Count(List<String> output) {
+      m_output = output;
+    }
+
+    public void run() {
+      m_output.add("count:" + n);
+    }
+  }
+
+  @Test
+  public void registeredCommands() {
+    final List<String> output = Lists.newArrayList();
+    final AtomicInteger created = new AtomicInteger();
+    Shell shell = new Shell() {
+      @Override
+      public String getShellName() {
+        return "test";
+      }
+    };
+    shell.addCommand("count", new ICommandFactory() {
+      public Object createCommand() {
+        created.incrementAndGet();
+        return new Count(output);
+      }
+    }, null);
+    shell.addCommand("echo", new ICommandFactory() {
+      public Object createCommand() {
+        return new Echo(output);
+      }
+    }, "Echoes");
+    Assert.assertEquals(shell.getDisplayedCommands(), new String[] { "count", "echo" });
+
+    for (int i = 0; i < 3; i++) {
+      StringBuilder usage = new StringBuilder();
+      shell.usage(usage);
+      Assert.assertEquals(usage.toString(),
+          "\n  Commands:\n    count   Counts\n    echo    Echoes\n");
+    }
+    Assert.assertEquals(created.get(), 1);
+
+    // Each line is parsed by a new command object
+    shell.executeLine("count -n 2");
+    shell.executeLine("count");
+    Assert.assertEquals(output, Arrays.asList("count:2", "count:1"));
+
+    shell.removeCommand("count");
+    StringBuilder usage = new StringBuilder();
+    shell.usage(usage);
+    Assert.assertEquals(usage.toString(), "\n  Commands:\n    echo   Echoes\n");
+  }
+}